@@ -16,19 +16,38 @@
 
 package nl.knaw.dans.validatedansbag;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.Application;
 import io.dropwizard.forms.MultiPartBundle;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import nl.knaw.dans.validatedansbag.core.config.ChecksumConfig;
+import nl.knaw.dans.validatedansbag.core.config.RuleEngineConfig;
+import nl.knaw.dans.validatedansbag.core.config.TempFilesConfig;
+import nl.knaw.dans.validatedansbag.core.config.UploadsConfig;
+import nl.knaw.dans.validatedansbag.core.config.ValidationJobsConfig;
+import nl.knaw.dans.validatedansbag.core.config.ValidationSchedulerConfig;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.NumberedRule;
 import nl.knaw.dans.validatedansbag.core.engine.RuleEngineImpl;
 import nl.knaw.dans.validatedansbag.core.rules.RuleSets;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReaderImpl;
+import nl.knaw.dans.validatedansbag.core.service.ChecksumCache;
+import nl.knaw.dans.validatedansbag.core.service.ChecksumVerifier;
+import nl.knaw.dans.validatedansbag.core.service.ComputedDigests;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 import nl.knaw.dans.validatedansbag.core.service.DataverseServiceImpl;
 import nl.knaw.dans.validatedansbag.core.service.FileServiceImpl;
 import nl.knaw.dans.validatedansbag.core.service.FilesXmlServiceImpl;
 import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsServiceImpl;
+import nl.knaw.dans.validatedansbag.core.service.PrioritizingRuleEngineService;
+import nl.knaw.dans.validatedansbag.core.service.RuleEngineService;
 import nl.knaw.dans.validatedansbag.core.service.RuleEngineServiceImpl;
+import nl.knaw.dans.validatedansbag.core.service.TempDirectoryReaper;
+import nl.knaw.dans.validatedansbag.core.service.ValidationJobServiceImpl;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import nl.knaw.dans.validatedansbag.core.service.XmlSchemaValidatorImpl;
 import nl.knaw.dans.validatedansbag.core.validator.IdentifierValidatorImpl;
@@ -40,9 +59,19 @@ import nl.knaw.dans.validatedansbag.health.XmlSchemaHealthCheck;
 import nl.knaw.dans.validatedansbag.resources.IllegalArgumentExceptionMapper;
 import nl.knaw.dans.validatedansbag.resources.ValidateOkYamlMessageBodyWriter;
 import nl.knaw.dans.validatedansbag.resources.ValidateResource;
+import nl.knaw.dans.validatedansbag.resources.ValidationJobResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
 public class DdValidateDansBagApplication extends Application<DdValidateDansBagConfiguration> {
 
     private static final Logger log = LoggerFactory.getLogger(DdValidateDansBagApplication.class);
@@ -70,19 +99,23 @@ public class DdValidateDansBagApplication extends Application<DdValidateDansBagC
             dataverseService = new DataverseServiceImpl(configuration.getDataverse().build());
         }
 
-        var fileService = new FileServiceImpl();
-        var bagItMetadataReader = new BagItMetadataReaderImpl();
+        var uploadsConfig = configuration.getValidation().getUploads();
+        var computedDigests = new ComputedDigests();
+        var tempDirectoryReaper = buildTempDirectoryReaper(configuration.getValidation().getTempFiles(), environment);
+        var fileService = buildFileService(uploadsConfig, computedDigests, tempDirectoryReaper, environment);
+        var bagItMetadataReader = new BagItMetadataReaderImpl(buildChecksumVerifier(configuration.getValidation().getChecksums(), computedDigests, environment));
         var xmlReader = new XmlReaderImpl();
         var polygonListValidator = new PolygonListValidatorImpl();
         var originalFilepathsService = new OriginalFilepathsServiceImpl(fileService);
         var filesXmlService = new FilesXmlServiceImpl(xmlReader);
-        var xmlSchemaValidator = new XmlSchemaValidatorImpl(configuration.getValidation().getXmlSchemas().buildMap());
+        var xmlSchemasConfig = configuration.getValidation().getXmlSchemas();
+        var xmlSchemaValidator = new XmlSchemaValidatorImpl(xmlSchemasConfig.buildMap(), xmlSchemasConfig.getCacheDirectory(), xmlSchemasConfig.getLoadThreads());
 
         var licenseValidator = new LicenseValidatorImpl(dataverseService);
         var identifierValidator = new IdentifierValidatorImpl();
         var organizationIdentifierPrefixValidator = new OrganizationIdentifierPrefixValidatorImpl(configuration.getValidation().getOtherIdPrefixes());
 
-        var ruleEngine = new RuleEngineImpl();
+        var ruleEngine = buildRuleEngine(configuration.getValidation().getRuleEngine(), environment);
         var ruleSets = new RuleSets(dataverseService,
                 fileService,
                 filesXmlService,
@@ -94,17 +127,176 @@ public class DdValidateDansBagApplication extends Application<DdValidateDansBagC
                 identifierValidator,
                 polygonListValidator,
                 organizationIdentifierPrefixValidator);
-        var ruleEngineService = new RuleEngineServiceImpl(ruleEngine, fileService,
-                configuration.getDataverse() != null ? ruleSets.getDataStationSet() : ruleSets.getVaasSet());
+        var ruleEngineServiceImpl = new RuleEngineServiceImpl(ruleEngine, fileService,
+                applyRuleTimeouts(configuration.getDataverse() != null ? ruleSets.getDataStationSet() : ruleSets.getVaasSet(), configuration.getValidation().getRuleEngine()));
+        var ruleEngineService = buildScheduler(ruleEngineServiceImpl, configuration.getValidation().getScheduler());
+
+        if (uploadsConfig.isPipelineRules() && !uploadsConfig.isValidateInPlace() && uploadsConfig.getExtractionThreads() > 1) {
+            log.warn("Uploads to /validate are extracted while they are read, with a single thread, because pipelineRules is on; extractionThreads ({}) only applies to jobs",
+                uploadsConfig.getExtractionThreads());
+        }
 
         environment.jersey().register(new IllegalArgumentExceptionMapper());
-        environment.jersey().register(new ValidateResource(ruleEngineService, fileService));
+        environment.jersey().register(new ValidateResource(ruleEngineService, fileService, environment.metrics(), uploadsConfig.isPipelineRules()));
         environment.jersey().register(new ValidateOkYamlMessageBodyWriter());
 
+        var jobsConfig = configuration.getValidation().getJobs();
+        var validationJobService = new ValidationJobServiceImpl(ruleEngineService, buildJobExecutor(jobsConfig, environment), jobsConfig.getResultRetention().toJavaDuration(),
+            jobsConfig.getWorkers() + jobsConfig.getQueueSize());
+        environment.jersey().register(new ValidationJobResource(validationJobService, fileService, jobsConfig.getRetryAfter().toJavaDuration()));
+
         environment.healthChecks().register("xml-schemas", new XmlSchemaHealthCheck(xmlSchemaValidator));
         environment.healthChecks().register("dataverse", new DataverseHealthCheck(dataverseService));
     }
 
+    private RuleEngineImpl buildRuleEngine(RuleEngineConfig config, Environment environment) {
+        if (config.getThreads() == 0) {
+            // every rule is executed on the request thread, so time limits cannot be enforced
+            if (config.getRuleTimeout() != null || !config.getRuleTimeouts().isEmpty() || config.getValidationTimeout() != null) {
+                log.warn("ruleTimeout, ruleTimeouts and validationTimeout are ignored, because the rule engine has no threads of its own (threads: 0)");
+            }
+
+            return new RuleEngineImpl(Runnable::run, 1, null, null, environment.metrics());
+        }
+
+        var executor = environment.lifecycle().executorService("rule-engine-%d")
+            .minThreads(config.getThreads())
+            .maxThreads(config.getThreads())
+            .workQueue(new LinkedBlockingQueue<>(config.getQueueSize()))
+            // a rejected rule waits in the rule engine, which keeps watching its time limits; running it on the calling thread would stop that
+            .rejectionPolicy(new ThreadPoolExecutor.AbortPolicy())
+            .build();
+
+        return new RuleEngineImpl(executor, config.getThreads(), toJavaDuration(config.getRuleTimeout()), toJavaDuration(config.getValidationTimeout()),
+            environment.metrics());
+    }
+
+    private FileServiceImpl buildFileService(UploadsConfig config, ComputedDigests computedDigests, TempDirectoryReaper tempDirectoryReaper, Environment environment) {
+        var threads = config.getExtractionThreads();
+
+        if (threads == 1) {
+            return new FileServiceImpl(config.isValidateInPlace(), computedDigests, config.getDigestAlgorithms(), Runnable::run, 1, tempDirectoryReaper);
+        }
+
+        var executor = environment.lifecycle().executorService("zip-extraction-%d")
+            .minThreads(threads)
+            .maxThreads(threads)
+            .workQueue(new LinkedBlockingQueue<>())
+            .build();
+
+        return new FileServiceImpl(config.isValidateInPlace(), computedDigests, config.getDigestAlgorithms(), executor, threads, tempDirectoryReaper);
+    }
+
+    private TempDirectoryReaper buildTempDirectoryReaper(TempFilesConfig config, Environment environment) {
+        Executor executor = Runnable::run;
+
+        if (config.getReaperThreads() > 0) {
+            executor = environment.lifecycle().executorService("temp-reaper-%d")
+                .minThreads(config.getReaperThreads())
+                .maxThreads(config.getReaperThreads())
+                .workQueue(new LinkedBlockingQueue<>())
+                .build();
+        }
+
+        var reaper = new TempDirectoryReaper(config.getDirectory(), config.getJournalFile(), executor, config.getMinFreeSpace().toBytes());
+
+        environment.lifecycle().manage(new Managed() {
+
+            @Override
+            public void start() throws Exception {
+                reaper.open();
+            }
+
+            @Override
+            public void stop() throws Exception {
+                reaper.close();
+            }
+        });
+
+        var metrics = environment.metrics();
+        metrics.register(MetricRegistry.name(TempDirectoryReaper.class, "usable-space"), (Gauge<Long>) () -> {
+            try {
+                return reaper.getUsableSpace();
+            }
+            catch (IOException e) {
+                return -1L;
+            }
+        });
+        metrics.register(MetricRegistry.name(TempDirectoryReaper.class, "temp-paths"), (Gauge<Integer>) reaper::getTempPathCount);
+        metrics.register(MetricRegistry.name(TempDirectoryReaper.class, "pending-deletions"), (Gauge<Integer>) reaper::getPendingDeletions);
+
+        return reaper;
+    }
+
+    private ChecksumVerifier buildChecksumVerifier(ChecksumConfig config, ComputedDigests computedDigests, Environment environment) {
+        var bufferSize = Math.toIntExact(config.getBufferSize().toBytes());
+        var checksumCache = buildChecksumCache(config, environment);
+
+        if (config.getThreads() == 0) {
+            return new ChecksumVerifier(computedDigests, checksumCache, Runnable::run, 1, bufferSize);
+        }
+
+        // shared by all validations; the workers of concurrent validations wait in the queue for a free thread
+        var executor = environment.lifecycle().executorService("checksums-%d")
+            .minThreads(config.getThreads())
+            .maxThreads(config.getThreads())
+            .workQueue(new LinkedBlockingQueue<>())
+            .build();
+
+        return new ChecksumVerifier(computedDigests, checksumCache, executor, config.getThreads(), bufferSize);
+    }
+
+    private ChecksumCache buildChecksumCache(ChecksumConfig config, Environment environment) {
+        if (config.getCacheFile() == null) {
+            return null;
+        }
+
+        var checksumCache = new ChecksumCache(config.getCacheFile(), config.getCacheMaxFiles());
+
+        environment.lifecycle().manage(new Managed() {
+
+            @Override
+            public void start() throws Exception {
+                checksumCache.open();
+            }
+
+            @Override
+            public void stop() throws Exception {
+                checksumCache.close();
+            }
+        });
+
+        return checksumCache;
+    }
+
+    private RuleEngineService buildScheduler(RuleEngineService ruleEngineService, ValidationSchedulerConfig config) {
+        return new PrioritizingRuleEngineService(ruleEngineService, config.getMaxConcurrentValidations(),
+            Map.of(DepositType.DEPOSIT, config.getDeposit().getWeight(), DepositType.MIGRATION, config.getMigration().getWeight()),
+            Map.of(DepositType.DEPOSIT, config.getDeposit().getMaxConcurrentValidations(), DepositType.MIGRATION, config.getMigration().getMaxConcurrentValidations()));
+    }
+
+    private ExecutorService buildJobExecutor(ValidationJobsConfig config, Environment environment) {
+        // jobs that do not fit in the queue are rejected, which the resource reports as 429 Too Many Requests
+        return environment.lifecycle().executorService("validation-job-%d")
+            .minThreads(config.getWorkers())
+            .maxThreads(config.getWorkers())
+            .workQueue(new ArrayBlockingQueue<>(config.getQueueSize()))
+            .rejectionPolicy(new ThreadPoolExecutor.AbortPolicy())
+            .build();
+    }
+
+    private NumberedRule[] applyRuleTimeouts(NumberedRule[] rules, RuleEngineConfig config) {
+        return Arrays.stream(rules)
+            .map(rule -> config.getRuleTimeouts().containsKey(rule.getNumber())
+                ? rule.withTimeout(toJavaDuration(config.getRuleTimeouts().get(rule.getNumber())))
+                : rule)
+            .toArray(NumberedRule[]::new);
+    }
+
+    private java.time.Duration toJavaDuration(Duration duration) {
+        return duration == null ? null : duration.toJavaDuration();
+    }
+
     private void validateContextConfiguration(DdValidateDansBagConfiguration configuration) {
         if ((configuration.getDataverse() != null) == (configuration.getVaultCatalog() != null)) {
             throw new IllegalArgumentException("Exactly one of dataverse and vaultCatalog must be configured");
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import io.dropwizard.util.DataSize;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Getter
+@Setter
+public class ChecksumConfig {
+
+    // the number of files that are read at the same time to verify their checksums; with 0 the files are read one by one on the thread of the rule
+    @Min(0)
+    private int threads = 4;
+
+    // the size of the read buffer of every thread
+    @NotNull
+    private DataSize bufferSize = DataSize.mebibytes(1);
+
+    // the file in which checksums are kept between validations of the same bag location; without it every validation computes all checksums
+    private Path cacheFile;
+
+    // the maximum number of files in the cache; the files that were least recently used are dropped first
+    @Min(1)
+    private int cacheMaxFiles = 100000;
+}
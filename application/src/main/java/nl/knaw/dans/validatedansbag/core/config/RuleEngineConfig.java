@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+public class RuleEngineConfig {
+
+    // the number of threads used to execute independent rules concurrently, which is also the maximum number of rules of a single validation running at the same time;
+    // 0 means all rules are executed on the request thread
+    @Min(0)
+    private int threads = 0;
+
+    // the maximum number of rules waiting for a free thread; when the queue is full a rule waits in the rule engine until it can be queued
+    @Min(1)
+    private int queueSize = 1000;
+
+    // the maximum running time of a rule, after which it is interrupted; null means no limit. Only enforced when threads is larger than 0
+    private Duration ruleTimeout;
+
+    // maximum running times of specific rules, by rule number, which override ruleTimeout
+    @NotNull
+    private Map<String, Duration> ruleTimeouts = new HashMap<>();
+
+    // the maximum duration of a single validation, after which the rules still running are interrupted; null means no limit. Only enforced when threads is larger than 0
+    private Duration validationTimeout;
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import io.dropwizard.util.DataSize;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Path;
+
+@Getter
+@Setter
+public class TempFilesConfig {
+
+    // the directory in which uploads and archives are written; without it the temporary directory of the JVM is used
+    private Path directory;
+
+    // the file in which the temporary files are recorded, so that the ones left behind by a crash are deleted at the next start; without it they are not
+    private Path journalFile;
+
+    // the number of threads that delete temporary files after a validation; with 0 they are deleted on the request thread
+    @Min(0)
+    private int reaperThreads = 2;
+
+    // uploads and archives are refused while the directory has less free space than this
+    @NotNull
+    private DataSize minFreeSpace = DataSize.bytes(0);
+}
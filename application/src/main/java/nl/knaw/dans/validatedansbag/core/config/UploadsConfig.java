@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Getter
+@Setter
+public class UploadsConfig {
+
+    // whether uploaded zips are validated through a zip file system instead of being extracted; the upload is then only written to disk once
+    private boolean validateInPlace = false;
+
+    // whether rules that only read a few files, such as bag-info.txt and metadata/dataset.xml, are started while the rest of the zip is still being extracted
+    private boolean pipelineRules = false;
+
+    // the number of entries of one zip that are extracted at the same time; if more than 1, uploads are written to disk before they are extracted
+    @Min(1)
+    private int extractionThreads = 1;
+
+    // the algorithms (by their BagIt names) for which the payload is digested while it is extracted, for files that come before the manifests in the zip
+    @NotNull
+    private List<String> digestAlgorithms = List.of("md5", "sha1");
+}
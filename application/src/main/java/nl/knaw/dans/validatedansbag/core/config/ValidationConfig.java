@@ -38,5 +38,29 @@ public class ValidationConfig {
 
     @Valid
     private HttpClientConfiguration httpClient = new HttpClientConfiguration();
+
+    @Valid
+    @NotNull
+    private RuleEngineConfig ruleEngine = new RuleEngineConfig();
+
+    @Valid
+    @NotNull
+    private ValidationJobsConfig jobs = new ValidationJobsConfig();
+
+    @Valid
+    @NotNull
+    private ValidationSchedulerConfig scheduler = new ValidationSchedulerConfig();
+
+    @Valid
+    @NotNull
+    private UploadsConfig uploads = new UploadsConfig();
+
+    @Valid
+    @NotNull
+    private TempFilesConfig tempFiles = new TempFilesConfig();
+
+    @Valid
+    @NotNull
+    private ChecksumConfig checksums = new ChecksumConfig();
 }
 
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import io.dropwizard.util.Duration;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+@Setter
+public class ValidationJobsConfig {
+
+    // the number of asynchronous validations running at the same time
+    @Min(1)
+    private int workers = 2;
+
+    // the maximum number of asynchronous validations waiting for a worker; when the queue is full new jobs are refused
+    @Min(1)
+    private int queueSize = 20;
+
+    // how long the result of a completed job can be retrieved
+    @NotNull
+    private Duration resultRetention = Duration.hours(1);
+
+    // the delay suggested to clients whose job was refused because the queue was full
+    @NotNull
+    private Duration retryAfter = Duration.seconds(30);
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Getter
+@Setter
+public class ValidationSchedulerConfig {
+
+    // the maximum number of validations running at the same time, for all deposit types together
+    @Min(1)
+    private int maxConcurrentValidations = 8;
+
+    @Valid
+    @NotNull
+    private PriorityClassConfig deposit = new PriorityClassConfig(4, 8);
+
+    @Valid
+    @NotNull
+    private PriorityClassConfig migration = new PriorityClassConfig(1, 4);
+
+    @Getter
+    @Setter
+    public static class PriorityClassConfig {
+
+        // the share of the validation slots this class gets when validations of other classes are waiting as well
+        @Min(1)
+        private int weight;
+
+        // the maximum number of validations of this class running at the same time
+        @Min(1)
+        private int maxConcurrentValidations;
+
+        public PriorityClassConfig() {
+        }
+
+        public PriorityClassConfig(int weight, int maxConcurrentValidations) {
+            this.weight = weight;
+            this.maxConcurrentValidations = maxConcurrentValidations;
+        }
+    }
+}
@@ -19,8 +19,10 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,6 +53,13 @@ public class XmlSchemaConfig {
     @JsonProperty("emd.xml")
     private URI emdXml;
 
+    // the directory in which schema documents fetched over HTTP are kept, by host and path; without it they are fetched at every start
+    private Path cacheDirectory;
+
+    // the number of schemas that are loaded at the same time
+    @Min(1)
+    private int loadThreads = 6;
+
     public Map<String, URI> buildMap() {
         var map = new HashMap<String, URI>();
         map.put("dataset.xml", datasetXml);
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Something that rules read from the bag, or look up elsewhere, and that is loaded at most once per validation by memoizing it in the {@link BagValidationContext}. Rules declare
+ * the artifacts they use (see {@link nl.knaw.dans.validatedansbag.core.rules.BagValidatorRule#getInputs()}), so that the rule engine can load them in advance when it has threads
+ * to spare. Artifacts with the same key are the same artifact, whichever rule created them.
+ *
+ * @param <T> the type of the artifact
+ */
+public final class BagArtifact<T> {
+    private final String key;
+    private final List<Path> files;
+    private final Loader<T> loader;
+
+    public BagArtifact(String key, Loader<T> loader) {
+        this(key, null, loader);
+    }
+
+    /**
+     * @param key    the unique name of the artifact
+     * @param files  the files, relative to the bag directory, that the artifact is read from, or null if it is not read from a fixed set of files
+     * @param loader loads the artifact
+     */
+    public BagArtifact(String key, List<Path> files, Loader<T> loader) {
+        this.key = key;
+        this.files = files;
+        this.loader = loader;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    // null if the artifact can only be loaded once the bag is complete; an empty list if it is not read from the bag at all
+    public List<Path> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the artifact for the bag that is being validated, loading it if it has not been loaded yet.
+     *
+     * @param context the validation context
+     * @return the artifact
+     * @throws Exception the exception thrown while loading the artifact
+     */
+    public T get(BagValidationContext context) throws Exception {
+        return context.get(key, bagDir -> loader.load(context));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return key.equals(((BagArtifact<?>) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key);
+    }
+
+    @Override
+    public String toString() {
+        return "BagArtifact{" +
+            "key='" + key + '\'' +
+            '}';
+    }
+
+    // the context is passed so that an artifact can be derived from other artifacts
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(BagValidationContext context) throws Exception;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import org.w3c.dom.Node;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * State that is shared by all rules during the validation of a single bag. Artifacts that several rules need, such as the bag inventory, are loaded on first request and then
+ * handed to every other rule that asks for them, also when the rules are executed concurrently. Artifacts must therefore be safe to read from several threads at once, which a DOM
+ * is not: even reading a Xerces DOM updates the caches of its node lists. A DOM is refused as an artifact; rules that need one parse the file themselves.
+ */
+public class BagValidationContext {
+    private final Path bagDir;
+    private final boolean failFast;
+    private final boolean useChecksumCache;
+    private final Map<String, FutureTask<Object>> artifacts = new ConcurrentHashMap<>();
+    // the results of rules that were started before the bag was complete, by rule number; see RuleSpeculation
+    private final Map<String, FutureTask<RuleResult>> speculativeResults = new ConcurrentHashMap<>();
+
+    public BagValidationContext(Path bagDir) {
+        this(bagDir, false);
+    }
+
+    /**
+     * @param bagDir   the directory of the bag to validate
+     * @param failFast whether the rule engine should stop at the first rule that fails
+     */
+    public BagValidationContext(Path bagDir, boolean failFast) {
+        this(bagDir, failFast, false);
+    }
+
+    /**
+     * @param bagDir           the directory of the bag to validate
+     * @param failFast         whether the rule engine should stop at the first rule that fails
+     * @param useChecksumCache whether checksums computed in earlier validations may be used for files that have not changed since
+     */
+    public BagValidationContext(Path bagDir, boolean failFast, boolean useChecksumCache) {
+        this.bagDir = bagDir;
+        this.failFast = failFast;
+        this.useChecksumCache = useChecksumCache;
+    }
+
+    public Path getBagDir() {
+        return bagDir;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public boolean isUseChecksumCache() {
+        return useChecksumCache;
+    }
+
+    /**
+     * Returns the artifact with the given key, loading it if this is the first request for it. Concurrent requests for the same artifact wait for the first one to finish loading
+     * it. If loading fails, the exception is thrown to every waiting caller and the artifact is not cached, so a later request will try again.
+     *
+     * @param key    the unique name of the artifact; callers that use the same key must load the same type of object
+     * @param loader loads the artifact from the bag directory
+     * @param <T>    the type of the artifact
+     * @return the artifact
+     * @throws Exception the exception thrown by the loader
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, ArtifactLoader<T> loader) throws Exception {
+        var task = new FutureTask<Object>(() -> {
+            var artifact = loader.load(bagDir);
+
+            if (artifact instanceof Node) {
+                throw new IllegalStateException(String.format("Artifact %s is a DOM node, which cannot be shared between rules running concurrently", key));
+            }
+
+            return artifact;
+        });
+        var existing = artifacts.putIfAbsent(key, task);
+
+        if (existing == null) {
+            existing = task;
+            task.run();
+        }
+
+        try {
+            return (T) existing.get();
+        }
+        catch (ExecutionException e) {
+            artifacts.remove(key, existing);
+            var cause = e.getCause();
+
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
+        catch (CancellationException e) {
+            artifacts.remove(key, existing);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns an artifact of the given type that has already been loaded, without loading anything. This lets the caller of the rule engine reuse what the rules have read,
+     * for instance for metrics, after the validation has finished.
+     *
+     * @param type the type of the artifact
+     * @param <T>  the type of the artifact
+     * @return the first loaded artifact of that type, or empty if no rule has loaded one, or loading it failed
+     */
+    public <T> Optional<T> findLoaded(Class<T> type) {
+        for (var task : artifacts.values()) {
+            if (!task.isDone() || task.isCancelled()) {
+                continue;
+            }
+
+            try {
+                var artifact = task.get();
+
+                if (type.isInstance(artifact)) {
+                    return Optional.of(type.cast(artifact));
+                }
+            }
+            catch (ExecutionException e) {
+                // a failed artifact is removed by the rule that requested it; it is not a value that can be returned
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    // whether the artifact with the given key has been requested before, in which case it is loaded or being loaded
+    boolean isRequested(String key) {
+        return artifacts.containsKey(key);
+    }
+
+    void putSpeculativeResult(String number, FutureTask<RuleResult> result) {
+        speculativeResults.put(number, result);
+    }
+
+    // null if the rule was not started ahead of the rule engine
+    FutureTask<RuleResult> getSpeculativeResult(String number) {
+        return speculativeResults.get(number);
+    }
+
+    @FunctionalInterface
+    public interface ArtifactLoader<T> {
+        T load(Path bagDir) throws Exception;
+    }
+
+    @Override
+    public String toString() {
+        return "BagValidationContext{" +
+            "bagDir=" + bagDir +
+            ", failFast=" + failFast +
+            ", useChecksumCache=" + useChecksumCache +
+            ", artifacts=" + artifacts.keySet() +
+            '}';
+    }
+}
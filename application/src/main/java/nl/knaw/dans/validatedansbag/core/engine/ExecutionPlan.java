@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The rules that apply to one deposit type, sorted topologically and with their dependencies resolved to indices into the plan. A plan is immutable, so it is compiled once and
+ * then shared by all validations.
+ */
+class ExecutionPlan {
+    private final NumberedRule[] rules;
+    private final BitSet[] dependencies;
+    private final int[][] dependants;
+    private final int[] declarationOrder;
+
+    private ExecutionPlan(NumberedRule[] rules, BitSet[] dependencies, int[][] dependants, int[] declarationOrder) {
+        this.rules = rules;
+        this.dependencies = dependencies;
+        this.dependants = dependants;
+        this.declarationOrder = declarationOrder;
+    }
+
+    /**
+     * Compiles the given rules into a plan. The rules must all apply to the same deposit type and their numbers must be unique.
+     *
+     * @param rules the rules, in the order in which they were declared
+     * @return the plan
+     * @throws RuleEngineConfigurationException if a rule depends on a rule that is not in the list, on itself or (indirectly) on a rule that depends on it
+     */
+    static ExecutionPlan compile(List<NumberedRule> rules) throws RuleEngineConfigurationException {
+        var count = rules.size();
+        var indices = new HashMap<String, Integer>();
+
+        for (var i = 0; i < count; ++i) {
+            indices.put(rules.get(i).getNumber(), i);
+        }
+
+        // the dependencies and dependants of each rule, by declaration index
+        var declaredDependencies = new BitSet[count];
+        var declaredDependants = new ArrayList<List<Integer>>();
+
+        for (var i = 0; i < count; ++i) {
+            declaredDependencies[i] = new BitSet(count);
+            declaredDependants.add(new ArrayList<>());
+        }
+
+        for (var i = 0; i < count; ++i) {
+            var rule = rules.get(i);
+
+            if (rule.getDependencies() == null) {
+                continue;
+            }
+
+            for (var dependency : rule.getDependencies()) {
+                var index = indices.get(dependency);
+
+                if (index == null) {
+                    throw new RuleEngineConfigurationException(String.format(
+                        "Rule %s depends on rule %s, which does not exist", rule.getNumber(), dependency
+                    ));
+                }
+
+                if (index == i) {
+                    throw new RuleEngineConfigurationException(String.format(
+                        "Rule %s depends on itself", rule.getNumber()
+                    ));
+                }
+
+                if (!declaredDependencies[i].get(index)) {
+                    declaredDependencies[i].set(index);
+                    declaredDependants.get(index).add(i);
+                }
+            }
+        }
+
+        // Kahn's algorithm; rules that are ready at the same time keep their declaration order
+        var unresolved = new int[count];
+        var ready = new BitSet(count);
+
+        for (var i = 0; i < count; ++i) {
+            unresolved[i] = declaredDependencies[i].cardinality();
+
+            if (unresolved[i] == 0) {
+                ready.set(i);
+            }
+        }
+
+        var sorted = new int[count];
+        var sortedCount = 0;
+
+        for (var next = ready.nextSetBit(0); next >= 0; next = ready.nextSetBit(0)) {
+            ready.clear(next);
+            sorted[sortedCount++] = next;
+
+            for (var dependant : declaredDependants.get(next)) {
+                if (--unresolved[dependant] == 0) {
+                    ready.set(dependant);
+                }
+            }
+        }
+
+        if (sortedCount < count) {
+            var cyclic = new ArrayList<String>();
+
+            for (var i = 0; i < count; ++i) {
+                if (unresolved[i] > 0) {
+                    cyclic.add(rules.get(i).getNumber());
+                }
+            }
+
+            throw new RuleEngineConfigurationException(String.format(
+                "Circular dependencies found between rules: %s", String.join(", ", cyclic)
+            ));
+        }
+
+        // renumber everything to the topological order
+        var planIndex = new int[count];
+
+        for (var i = 0; i < count; ++i) {
+            planIndex[sorted[i]] = i;
+        }
+
+        var sortedRules = new NumberedRule[count];
+        var dependencies = new BitSet[count];
+        var dependants = new int[count][];
+
+        for (var i = 0; i < count; ++i) {
+            var declarationIndex = sorted[i];
+            sortedRules[i] = rules.get(declarationIndex);
+            dependencies[i] = new BitSet(count);
+
+            var dependencyIndices = declaredDependencies[declarationIndex];
+
+            for (var d = dependencyIndices.nextSetBit(0); d >= 0; d = dependencyIndices.nextSetBit(d + 1)) {
+                dependencies[i].set(planIndex[d]);
+            }
+
+            dependants[i] = declaredDependants.get(declarationIndex).stream()
+                .mapToInt(d -> planIndex[d])
+                .sorted()
+                .toArray();
+        }
+
+        return new ExecutionPlan(sortedRules, dependencies, dependants, planIndex);
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    NumberedRule getRule(int index) {
+        return rules[index];
+    }
+
+    // the indices of the rules this rule depends on; do not modify
+    BitSet getDependencies(int index) {
+        return dependencies[index];
+    }
+
+    // the indices of the rules that depend on this rule, in ascending order; do not modify
+    int[] getDependants(int index) {
+        return dependants[index];
+    }
+
+    // a fresh array with, for every rule, the number of dependencies that have not been resolved yet
+    int[] getDependencyCounts() {
+        var counts = new int[rules.length];
+
+        for (var i = 0; i < rules.length; ++i) {
+            counts[i] = dependencies[i].cardinality();
+        }
+
+        return counts;
+    }
+
+    // the plan indices of the rules in the order in which they were declared
+    int[] getDeclarationOrder() {
+        return declarationOrder;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionPlan{" +
+            "rules=" + Arrays.stream(rules).map(NumberedRule::getNumber).collect(Collectors.joining(", ")) +
+            '}';
+    }
+}
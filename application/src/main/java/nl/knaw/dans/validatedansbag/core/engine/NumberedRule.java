@@ -17,6 +17,7 @@ package nl.knaw.dans.validatedansbag.core.engine;
 
 import nl.knaw.dans.validatedansbag.core.rules.BagValidatorRule;
 
+import java.time.Duration;
 import java.util.List;
 
 public class NumberedRule {
@@ -24,12 +25,19 @@ public class NumberedRule {
     private final BagValidatorRule rule;
     private final List<String> dependencies;
     private final DepositType depositType;
+    // the time the rule may run before it is interrupted; null means the default timeout of the rule engine applies
+    private final Duration timeout;
 
-    public NumberedRule(String number, BagValidatorRule rule, DepositType depositType, List<String> dependencies) {
+    public NumberedRule(String number, BagValidatorRule rule, DepositType depositType, List<String> dependencies, Duration timeout) {
         this.number = number;
         this.rule = rule;
         this.depositType = depositType;
         this.dependencies = dependencies;
+        this.timeout = timeout;
+    }
+
+    public NumberedRule(String number, BagValidatorRule rule, DepositType depositType, List<String> dependencies) {
+        this(number, rule, depositType, dependencies, null);
     }
 
     public NumberedRule(String number, BagValidatorRule rule) {
@@ -60,6 +68,24 @@ public class NumberedRule {
         return dependencies;
     }
 
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public List<BagArtifact<?>> getInputs() {
+        return rule.getInputs();
+    }
+
+    /**
+     * Returns a copy of this rule that is interrupted by the rule engine when it has been running for longer than the given time.
+     *
+     * @param timeout the maximum running time of the rule
+     * @return the copy
+     */
+    public NumberedRule withTimeout(Duration timeout) {
+        return new NumberedRule(number, rule, depositType, dependencies, timeout);
+    }
+
     @Override
     public String toString() {
         return "NumberedRule{" +
@@ -67,6 +93,7 @@ public class NumberedRule {
                 ", rule=" + rule +
                 ", dependencies=" + dependencies +
                 ", depositType=" + depositType +
+                ", timeout=" + timeout +
                 '}';
     }
 
@@ -15,13 +15,15 @@
  */
 package nl.knaw.dans.validatedansbag.core.engine;
 
-import java.nio.file.Path;
 import java.util.List;
 
 public interface RuleEngine {
 
     void validateRuleConfiguration(NumberedRule[] rules) throws RuleEngineConfigurationException;
 
-    List<RuleValidationResult> validateRules(Path bag, NumberedRule[] rules, DepositType depositType) throws Exception;
+    List<RuleValidationResult> validateRules(BagValidationContext context, NumberedRule[] rules, DepositType depositType) throws Exception;
+
+    // starts rules while the bag is still arriving; validateRules with the same context uses their results, after which the speculation must be closed
+    RuleSpeculation speculate(BagValidationContext context, NumberedRule[] rules, DepositType depositType) throws RuleEngineConfigurationException;
 
 }
@@ -15,22 +15,113 @@
  */
 package nl.knaw.dans.validatedansbag.core.engine;
 
+import com.codahale.metrics.MetricRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class RuleEngineImpl implements RuleEngine {
     private static final Logger log = LoggerFactory.getLogger(RuleEngineImpl.class);
 
+    // how long a validation waits before it tries again to submit a rule that the executor rejected because its queue was full
+    private static final long REJECTED_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final Executor executor;
+    private final int parallelism;
+    private final Duration ruleTimeout;
+    private final Duration validationTimeout;
+    private final MetricRegistry metricRegistry;
+    private final RuleStatistics statistics = new RuleStatistics();
+
+    // compiled plans per rule set; arrays use identity equality, so every rule set instance gets its own entry
+    private final Map<NumberedRule[], Map<DepositType, ExecutionPlan>> plans = new ConcurrentHashMap<>();
+
+    public RuleEngineImpl() {
+        // executes every rule on the calling thread
+        this(Runnable::run, 1);
+    }
+
+    /**
+     * Creates a rule engine that executes rules on the given executor. A rule is submitted as soon as all of its dependencies have completed successfully, so independent rules
+     * run concurrently if the executor has more than one thread.
+     *
+     * @param executor the executor to run the rules on
+     */
+    public RuleEngineImpl(Executor executor) {
+        this(executor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a rule engine that executes rules on the given executor, with at most <code>parallelism</code> rules per validation running at the same time. The other rules that
+     * are ready to run wait in the engine, so that the order in which they are started can still be decided when the next thread becomes available. This order is based on the
+     * durations and failure rates observed in earlier validations.
+     *
+     * @param executor    the executor to run the rules on
+     * @param parallelism the maximum number of rules per validation that are submitted to the executor at the same time
+     */
+    public RuleEngineImpl(Executor executor, int parallelism) {
+        this(executor, parallelism, null, null);
+    }
+
+    /**
+     * Creates a rule engine that executes rules on the given executor, with at most <code>parallelism</code> rules per validation running at the same time, and that interrupts
+     * rules that run for too long. A rule that is interrupted gets the status TIMED_OUT and its dependants are skipped. When the whole validation takes too long, all rules that
+     * are still running are interrupted and the rules that have not started yet are cancelled.
+     * <p>
+     * Time limits can only be enforced if the executor runs the rules on other threads than the one calling {@link #validateRules}.
+     *
+     * @param executor          the executor to run the rules on
+     * @param parallelism       the maximum number of rules per validation that are submitted to the executor at the same time
+     * @param ruleTimeout       the maximum running time of rules that do not specify their own timeout, or null for no limit
+     * @param validationTimeout the maximum duration of a validation, or null for no limit
+     */
+    public RuleEngineImpl(Executor executor, int parallelism, Duration ruleTimeout, Duration validationTimeout) {
+        this(executor, parallelism, ruleTimeout, validationTimeout, new MetricRegistry());
+    }
+
+    /**
+     * Creates a rule engine like {@link #RuleEngineImpl(Executor, int, Duration, Duration)} that also registers its metrics in the given registry: a timer per rule number with
+     * the running times of the rule, and per rule number a counter for every result status.
+     *
+     * @param executor          the executor to run the rules on
+     * @param parallelism       the maximum number of rules per validation that are submitted to the executor at the same time
+     * @param ruleTimeout       the maximum running time of rules that do not specify their own timeout, or null for no limit
+     * @param validationTimeout the maximum duration of a validation, or null for no limit
+     * @param metricRegistry    the registry to register the metrics in
+     */
+    public RuleEngineImpl(Executor executor, int parallelism, Duration ruleTimeout, Duration validationTimeout, MetricRegistry metricRegistry) {
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ruleTimeout = ruleTimeout;
+        this.validationTimeout = validationTimeout;
+        this.metricRegistry = metricRegistry;
+    }
+
     @Override
     public void validateRuleConfiguration(NumberedRule[] rules) throws RuleEngineConfigurationException {
         // validate each rule number is unique
@@ -50,146 +141,468 @@ public class RuleEngineImpl implements RuleEngine {
                 "Some rules depend on other rules that do not exist: %s", String.join(", ", unresolvedDependencies)
             ));
         }
+
+        // compiling the plans also checks for circular dependencies and self-references
+        var typedPlans = new EnumMap<DepositType, ExecutionPlan>(DepositType.class);
+
+        for (var depositType : DepositType.values()) {
+            typedPlans.put(depositType, ExecutionPlan.compile(filterRulesOnDepositType(rules, depositType)));
+        }
+
+        plans.put(rules, typedPlans);
     }
 
     @Override
-    public List<RuleValidationResult> validateRules(Path bag, NumberedRule[] rules, DepositType depositType) throws Exception {
-        final var ruleResults = new HashMap<String, RuleValidationResult>();
-        final var rulesToExecute = filterRulesOnDepositType(rules, depositType);
+    public List<RuleValidationResult> validateRules(BagValidationContext context, NumberedRule[] rules, DepositType depositType) throws Exception {
+        final var plan = getExecutionPlan(rules, depositType);
+        final var results = new RuleValidationResult[plan.size()];
+        final var unresolved = plan.getDependencyCounts();
+        final var completionService = new ExecutorCompletionService<RuleValidationResult>(executor);
+        final var runningRules = new HashMap<Future<RuleValidationResult>, RunningRule>();
+        // rules that timed out but are still running because they did not respond to the interrupt; they keep their thread until they return
+        final var abandonedRules = new ArrayList<RunningRule>();
+        final var priorities = statistics.getPriorities(plan, context.isFailFast());
+        final var readyRules = new PriorityQueue<Integer>(Comparator.<Integer> comparingDouble(i -> priorities[i]).thenComparingInt(i -> i));
+        final var validationDeadline = validationTimeout == null ? null : System.nanoTime() + validationTimeout.toNanos();
+        final var prefetches = new ArrayList<Future<?>>();
+        final var prefetchedArtifacts = new HashSet<String>();
+        var stopped = false;
+        var rejected = false;
+
+        for (var i = 0; i < plan.size(); ++i) {
+            if (unresolved[i] == 0) {
+                readyRules.add(i);
+            }
+        }
 
-        // create a copy, because we will modify this list
-        var remainingRules = new ArrayList<>(rulesToExecute);
+        try {
+            while (!stopped) {
+                var now = System.nanoTime();
 
-        while (remainingRules.size() > 0) {
-            var toRemove = new HashSet<NumberedRule>();
+                if (validationDeadline != null && now - validationDeadline >= 0) {
+                    log.warn("Validation of {} did not complete within {}, interrupting the rules that are still running", context.getBagDir(), validationTimeout);
+                    timeOutRunningRules(plan, results, runningRules);
+                    stopped = true;
+                    break;
+                }
 
-            for (var rule : remainingRules) {
-                var number = rule.getNumber();
+                timeOutExpiredRules(plan, now, results, unresolved, runningRules, readyRules, abandonedRules);
+                abandonedRules.removeIf(RunningRule::isFinished);
 
-                // will never be processed, so skip it and remove it from the remaining rules
-                if (shouldBeSkipped(rule, ruleResults)) {
-                    log.trace("Skipping task {} because dependencies are not successful", rule.getNumber());
-                    ruleResults.put(number, new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SKIPPED));
-                    toRemove.add(rule);
+                if (readyRules.isEmpty() && runningRules.isEmpty()) {
+                    break;
                 }
-                else if (shouldBeIgnoredBecauseOfDepositType(rule, depositType)) {
-                    log.trace("Skipping task {} because it does not apply to this deposit (deposit type: {}, rule type: {})", rule.getNumber(), depositType, rule.getDepositType());
-                    ruleResults.put(number, new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SKIPPED));
-                    toRemove.add(rule);
-                }
-                else if (canBeExecuted(rule, ruleResults)) {
-                    log.trace("Executing task {}", rule.getNumber());
-                    var response = rule.getRule().validate(bag);
-
-                    log.trace("Task result: {}", response.getStatus());
-                    RuleValidationResult ruleValidationResult = null;
-
-                    switch (response.getStatus()) {
-                        case SUCCESS:
-                            ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SUCCESS);
-                            break;
-                        case SKIP_DEPENDENCIES:
-                            ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SUCCESS, true);
-                            break;
-                        case ERROR:
-                            ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.FAILURE, formatErrorMessages(response.getErrorMessages()));
-                            break;
-                    }
 
-                    ruleResults.put(number, ruleValidationResult);
+                // rules are submitted one at a time, so results that are already in are seen before the next rule is started (which matters in fail-fast mode)
+                var canSubmit = !readyRules.isEmpty() && runningRules.size() + abandonedRules.size() < parallelism && !rejected;
 
-                    if (response.getException() != null) {
-                        log.warn("Rule provided an exception while executing", response.getException());
+                if (readyRules.isEmpty()) {
+                    // all rules that can run are running, so use the threads that are left to load what the other rules are going to need
+                    prefetchInputs(context, plan, results, priorities, runningRules.size() + abandonedRules.size(), prefetches, prefetchedArtifacts);
+                }
+                var future = canSubmit ? completionService.poll() : waitForRule(completionService, now, validationDeadline, runningRules, rejected || !abandonedRules.isEmpty());
+                rejected = false;
+
+                if (future == null) {
+                    // either there is room for another rule, or a time limit has been reached, which is handled at the start of the next iteration
+                    if (canSubmit) {
+                        var index = readyRules.remove();
+
+                        if (!submitRule(context, plan, index, completionService, runningRules)) {
+                            // the executor is busy with other validations; the rule waits here, where the time limits are still watched, instead of running on this thread
+                            readyRules.add(index);
+                            rejected = true;
+                        }
                     }
 
-                    toRemove.add(rule);
+                    continue;
                 }
-                else {
-                    log.trace("Skipping rule {} because its dependencies have not yet executed", rule);
+
+                var runningRule = runningRules.remove(future);
+
+                // rules that timed out have been removed already, but their futures still end up in the completion service when they are cancelled
+                if (runningRule == null) {
+                    continue;
                 }
-            }
 
-            remainingRules.removeAll(toRemove);
+                var index = runningRule.getIndex();
+                results[index] = getResult(future);
 
-            if (toRemove.size() == 0) {
-                log.warn("No rules executed this round, but there are still rules to be checked; most likely a dependency configuration error!");
+                // the result of this rule may have unblocked other rules
+                resolveDependants(plan, index, results, unresolved, readyRules);
 
-                for (var rule : remainingRules) {
-                    log.warn(" - Rule {} is yet to be executed", rule);
+                if (context.isFailFast() && RuleValidationResult.RuleValidationResultStatus.FAILURE.equals(results[index].getStatus())) {
+                    log.debug("Rule {} failed, stopping validation because fail-fast mode is enabled", results[index].getNumber());
+                    stopped = true;
                 }
+            }
+        }
+        finally {
+            // only non-empty if a rule threw an exception or fail-fast mode stopped the validation, in which case the other results are of no use anymore
+            for (var future : runningRules.keySet()) {
+                future.cancel(true);
+            }
 
-                break;
+            // artifacts that are still being loaded are of no use anymore once the validation has ended
+            for (var prefetch : prefetches) {
+                prefetch.cancel(true);
             }
         }
 
+        if (stopped) {
+            cancelRemainingRules(plan, results);
+        }
+
         // TODO this does not belong here, but it would be nice to log the results of the validation
-        reportOnBag(rulesToExecute, ruleResults);
+        reportOnBag(plan, results);
+        countResults(results);
 
-        return rulesToExecute.stream()
-            .map(rule -> ruleResults.get(rule.getNumber()))
+        return Arrays.stream(plan.getDeclarationOrder())
+            .mapToObj(i -> results[i])
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
     }
 
-    // returns true if all dependencies are marked as SUCCESS
-    private boolean canBeExecuted(NumberedRule rule, Map<String, RuleValidationResult> results) {
-        if (rule.getDependencies() != null && rule.getDependencies().size() > 0) {
-            for (var dependency : rule.getDependencies()) {
-                var result = results.get(dependency);
+    @Override
+    public RuleSpeculation speculate(BagValidationContext context, NumberedRule[] rules, DepositType depositType) throws RuleEngineConfigurationException {
+        return new RuleSpeculation(context, getExecutionPlan(rules, depositType), executor, parallelism, rule -> runRule(context, rule));
+    }
+
+    private ExecutionPlan getExecutionPlan(NumberedRule[] rules, DepositType depositType) throws RuleEngineConfigurationException {
+        var typedPlans = plans.get(rules);
+
+        // rule sets that were not validated up front are compiled (and validated) on first use
+        if (typedPlans == null) {
+            validateRuleConfiguration(rules);
+            typedPlans = plans.get(rules);
+        }
+
+        return typedPlans.get(depositType);
+    }
+
+    // false if the executor rejected the rule because its queue is full
+    private boolean submitRule(BagValidationContext context, ExecutionPlan plan, int index, CompletionService<RuleValidationResult> completionService,
+        Map<Future<RuleValidationResult>, RunningRule> runningRules) {
+
+        var rule = plan.getRule(index);
+        var timeout = rule.getTimeout() != null ? rule.getTimeout() : ruleTimeout;
+        var runningRule = new RunningRule(index, timeout == null ? -1 : timeout.toNanos());
+
+        log.trace("Scheduling task {}", rule.getNumber());
 
-                // if the parent was skipped or failed, return true
-                if (result == null || RuleValidationResult.RuleValidationResultStatus.SKIPPED.equals(result.getStatus()) || RuleValidationResult.RuleValidationResultStatus.FAILURE.equals(
-                    result.getStatus())) {
-                    return false;
+        try {
+            runningRules.put(completionService.submit(() -> {
+                // the time limit of a rule starts when it starts running, not when it is waiting for a thread
+                runningRule.start();
+
+                try {
+                    return executeRule(context, rule);
                 }
-            }
+                finally {
+                    runningRule.finish();
+                }
+            }), runningRule);
+        }
+        catch (RejectedExecutionException e) {
+            log.debug("Executor is saturated, postponing rule {}", rule.getNumber());
+            return false;
         }
 
         return true;
     }
 
-    // return true if one of its dependencies was skipped, or it has failed
-    private boolean shouldBeSkipped(NumberedRule rule, Map<String, RuleValidationResult> results) {
-        if (rule.getDependencies() != null && rule.getDependencies().size() > 0) {
-            for (var dependency : rule.getDependencies()) {
-                var result = results.get(dependency);
+    // loads the inputs of the rules that are still waiting for their dependencies, most urgent rules first, on at most as many threads as are not used by rules
+    private void prefetchInputs(BagValidationContext context, ExecutionPlan plan, RuleValidationResult[] results, double[] priorities, int runningRuleCount,
+        List<Future<?>> prefetches, Set<String> prefetchedArtifacts) {
 
-                if (result != null) {
-                    // if the parent was skipped or failed, return true
-                    if (RuleValidationResult.RuleValidationResultStatus.SKIPPED.equals(result.getStatus()) || RuleValidationResult.RuleValidationResultStatus.FAILURE.equals(result.getStatus())
-                        || result.isShouldSkipDependencies()) {
-                        return true;
-                    }
+        prefetches.removeIf(Future::isDone);
+        var freeThreads = parallelism - runningRuleCount - prefetches.size();
+
+        if (freeThreads <= 0) {
+            return;
+        }
+
+        var waitingRules = IntStream.range(0, plan.size())
+            .filter(i -> results[i] == null)
+            .boxed()
+            .sorted(Comparator.<Integer> comparingDouble(i -> priorities[i]).thenComparingInt(i -> i))
+            .collect(Collectors.toList());
+
+        for (var index : waitingRules) {
+            for (var artifact : plan.getRule(index).getInputs()) {
+                if (freeThreads == 0) {
+                    return;
                 }
+
+                // artifacts that were requested before are loaded or being loaded already, possibly by a running rule
+                if (context.isRequested(artifact.getKey()) || !prefetchedArtifacts.add(artifact.getKey())) {
+                    continue;
+                }
+
+                log.trace("Prefetching {} for rule {}", artifact.getKey(), plan.getRule(index).getNumber());
+                var prefetch = new FutureTask<Void>(() -> prefetch(context, artifact), null);
+
+                try {
+                    executor.execute(prefetch);
+                }
+                catch (RejectedExecutionException e) {
+                    // prefetching is only worth it when there are threads to spare
+                    prefetchedArtifacts.remove(artifact.getKey());
+                    return;
+                }
+
+                prefetches.add(prefetch);
+                freeThreads--;
             }
         }
+    }
 
-        return false;
+    private void prefetch(BagValidationContext context, BagArtifact<?> artifact) {
+        try {
+            artifact.get(context);
+        }
+        catch (Exception e) {
+            // failures are not memoized, so the rule that needs the artifact will try again and report the error
+            log.debug("Prefetching {} failed", artifact.getKey(), e);
+        }
+    }
+
+    // waits until a rule completes or until the first time limit is reached, whichever comes first; when retrying, at most until a rule may be submitted again, which is after a
+    // rejection or when a thread may have been freed by a rule that timed out (cancelled rules do not signal the completion service when they actually return)
+    private Future<RuleValidationResult> waitForRule(CompletionService<RuleValidationResult> completionService, long now, Long validationDeadline,
+        Map<Future<RuleValidationResult>, RunningRule> runningRules, boolean retrying) throws InterruptedException {
+
+        var waitTime = validationDeadline == null ? Long.MAX_VALUE : validationDeadline - now;
+
+        if (retrying) {
+            waitTime = Math.min(waitTime, REJECTED_RETRY_NANOS);
+        }
+
+        for (var runningRule : runningRules.values()) {
+            waitTime = Math.min(waitTime, runningRule.getRemainingNanos(now));
+        }
+
+        if (waitTime == Long.MAX_VALUE) {
+            return completionService.take();
+        }
+
+        return completionService.poll(Math.max(waitTime, 0), TimeUnit.NANOSECONDS);
+    }
+
+    // interrupts the rules that have exceeded their time limit, marks them as timed out and skips their dependants; their threads are only counted as free once they have returned
+    private void timeOutExpiredRules(ExecutionPlan plan, long now, RuleValidationResult[] results, int[] unresolved, Map<Future<RuleValidationResult>, RunningRule> runningRules,
+        Queue<Integer> readyRules, List<RunningRule> abandonedRules) {
+
+        var iterator = runningRules.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var runningRule = entry.getValue();
+
+            // a rule that completed just in time keeps its result, which is picked up from the completion service
+            if (!runningRule.isStarted() || runningRule.getRemainingNanos(now) > 0 || !entry.getKey().cancel(true)) {
+                continue;
+            }
+
+            iterator.remove();
+            abandonedRules.add(runningRule);
+
+            var index = runningRule.getIndex();
+            var rule = plan.getRule(index);
+            var timeout = Duration.ofNanos(runningRule.getTimeoutNanos());
+
+            log.warn("Rule {} did not complete within {}, interrupting it", rule.getNumber(), timeout);
+            recordDuration(rule.getNumber(), now - runningRule.getStartedAt(), false);
+            results[index] = timedOut(rule, String.format("Rule did not complete within %s", timeout));
+            resolveDependants(plan, index, results, unresolved, readyRules);
+        }
+    }
+
+    // interrupts all rules that are still running because the validation as a whole took too long; rules that were still waiting for a thread are cancelled
+    private void timeOutRunningRules(ExecutionPlan plan, RuleValidationResult[] results, Map<Future<RuleValidationResult>, RunningRule> runningRules) throws Exception {
+        for (var entry : runningRules.entrySet()) {
+            var runningRule = entry.getValue();
+            var index = runningRule.getIndex();
+
+            if (entry.getKey().cancel(true)) {
+                results[index] = runningRule.isStarted()
+                    ? timedOut(plan.getRule(index), String.format("Validation did not complete within %s", validationTimeout))
+                    : new RuleValidationResult(plan.getRule(index).getNumber(), RuleValidationResult.RuleValidationResultStatus.CANCELLED);
+            }
+            else {
+                results[index] = getResult(entry.getKey());
+            }
+        }
+
+        runningRules.clear();
+    }
+
+    private RuleValidationResult timedOut(NumberedRule rule, String message) {
+        return new RuleValidationResult(rule.getNumber(), RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, message);
+    }
+
+    // queues the dependants of the given rule that have no unresolved dependencies left, or marks them (and their dependants) as skipped if the rule was not successful
+    private void resolveDependants(ExecutionPlan plan, int index, RuleValidationResult[] results, int[] unresolved, Queue<Integer> readyRules) {
+        var result = results[index];
+
+        if (blocksDependants(result)) {
+            skipDependants(plan, index, results);
+            return;
+        }
+
+        for (var dependant : plan.getDependants(index)) {
+            // a dependant may already have been skipped because one of its other dependencies was not successful
+            if (--unresolved[dependant] == 0 && results[dependant] == null) {
+                readyRules.add(dependant);
+            }
+        }
+    }
+
+    // marks every rule that has no result yet as cancelled
+    private void cancelRemainingRules(ExecutionPlan plan, RuleValidationResult[] results) {
+        for (var i = 0; i < results.length; ++i) {
+            if (results[i] == null) {
+                results[i] = new RuleValidationResult(plan.getRule(i).getNumber(), RuleValidationResult.RuleValidationResultStatus.CANCELLED);
+            }
+        }
+    }
+
+    private void skipDependants(ExecutionPlan plan, int index, RuleValidationResult[] results) {
+        var pending = new ArrayDeque<Integer>();
+        pending.push(index);
+
+        while (!pending.isEmpty()) {
+            for (var dependant : plan.getDependants(pending.pop())) {
+                if (results[dependant] == null) {
+                    var number = plan.getRule(dependant).getNumber();
+
+                    log.trace("Skipping task {} because dependencies are not successful", number);
+                    results[dependant] = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SKIPPED);
+                    pending.push(dependant);
+                }
+            }
+        }
+    }
+
+    // return true if the rule was skipped, has failed, has timed out, or has indicated that its dependants should be skipped
+    private boolean blocksDependants(RuleValidationResult result) {
+        return RuleValidationResult.RuleValidationResultStatus.SKIPPED.equals(result.getStatus())
+            || RuleValidationResult.RuleValidationResultStatus.FAILURE.equals(result.getStatus())
+            || RuleValidationResult.RuleValidationResultStatus.TIMED_OUT.equals(result.getStatus())
+            || result.isShouldSkipDependencies();
+    }
+
+    private RuleValidationResult executeRule(BagValidationContext context, NumberedRule rule) throws Exception {
+        var number = rule.getNumber();
+        var speculativeResult = context.getSpeculativeResult(number);
+        RuleResult response;
+
+        // a speculation that has been closed already cancelled the rules it did not finish
+        if (speculativeResult != null && !speculativeResult.isCancelled()) {
+            log.trace("Using the speculative result of task {}", number);
+            // runs the rule on this thread if the speculation has not started it yet, and otherwise waits for it
+            speculativeResult.run();
+            response = getResult(speculativeResult);
+        }
+        else {
+            response = runRule(context, rule);
+        }
+
+        log.trace("Task result: {}", response.getStatus());
+
+        if (response.getException() != null) {
+            log.warn("Rule provided an exception while executing", response.getException());
+        }
+
+        return toRuleValidationResult(number, response);
+    }
+
+    static RuleValidationResult toRuleValidationResult(String number, RuleResult response) {
+        RuleValidationResult ruleValidationResult = null;
+
+        switch (response.getStatus()) {
+            case SUCCESS:
+                ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SUCCESS);
+                break;
+            case SKIP_DEPENDENCIES:
+                ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.SUCCESS, true);
+                break;
+            case ERROR:
+                ruleValidationResult = new RuleValidationResult(number, RuleValidationResult.RuleValidationResultStatus.FAILURE, formatErrorMessages(response.getErrorMessages()));
+                break;
+        }
+
+        return ruleValidationResult;
+    }
+
+    private RuleResult runRule(BagValidationContext context, NumberedRule rule) throws Exception {
+        var number = rule.getNumber();
+
+        log.trace("Executing task {}", number);
+        var start = System.nanoTime();
+        var response = rule.getRule().validate(context);
+        recordDuration(number, System.nanoTime() - start, RuleResult.Status.ERROR.equals(response.getStatus()));
+
+        return response;
+    }
+
+    private void recordDuration(String number, long durationNanos, boolean failed) {
+        statistics.record(number, durationNanos, failed);
+        metricRegistry.timer(MetricRegistry.name(RuleEngineImpl.class, number)).update(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void countResults(RuleValidationResult[] results) {
+        for (var result : results) {
+            if (result != null) {
+                metricRegistry.counter(MetricRegistry.name(RuleEngineImpl.class, result.getNumber(), result.getStatus().name().toLowerCase())).inc();
+            }
+        }
+    }
+
+    // exceptions thrown by a rule are propagated to the caller, just like when the rule would have been executed on the calling thread
+    private <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw e;
+        }
     }
 
     private String padLeft(String s, int amount) {
         return String.format("%" + amount + "s", s);
     }
 
-    private void reportOnBag(List<NumberedRule> rules, Map<String, RuleValidationResult> ruleResults) {
-        var maxRuleLength = rules.stream()
-            .map(r -> r.getNumber().length())
+    private void reportOnBag(ExecutionPlan plan, RuleValidationResult[] ruleResults) {
+        var maxRuleLength = Arrays.stream(plan.getDeclarationOrder())
+            .mapToObj(index -> plan.getRule(index).getNumber().length())
             .max(Integer::compare)
             .orElse(0);
 
-        var resultsAsString = rules.stream()
-            .map(rule -> {
-                var result = ruleResults.get(rule.getNumber());
+        var resultsAsString = Arrays.stream(plan.getDeclarationOrder())
+            .mapToObj(index -> {
+                var number = plan.getRule(index).getNumber();
+                var result = ruleResults[index];
                 var resultStatus = result == null ? RuleValidationResult.RuleValidationResultStatus.SKIPPED : result.getStatus();
-                var padding = maxRuleLength - rule.getNumber().length() + 1 + resultStatus.toString().length();
+                var padding = maxRuleLength - number.length() + 1 + resultStatus.toString().length();
 
-                if (resultStatus.equals(RuleValidationResult.RuleValidationResultStatus.FAILURE)) {
+                if (resultStatus.equals(RuleValidationResult.RuleValidationResultStatus.FAILURE) || resultStatus.equals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT)) {
                     return String.format("! Rule %s: %s - %s",
-                        rule.getNumber(), padLeft(resultStatus.toString(), padding), result.getErrorMessage());
+                        number, padLeft(resultStatus.toString(), padding), result.getErrorMessage());
                 }
                 else {
                     return String.format("! Rule %s: %s",
-                        rule.getNumber(), padLeft(resultStatus.toString(), padding));
+                        number, padLeft(resultStatus.toString(), padding));
                 }
 
             })
@@ -199,7 +612,7 @@ public class RuleEngineImpl implements RuleEngine {
         log.info("Bag validation report: \n{}", resultsAsString);
     }
 
-    private String formatErrorMessages(List<String> errorMessages) {
+    private static String formatErrorMessages(List<String> errorMessages) {
         if (errorMessages.size() == 1) {
             return errorMessages.get(0);
         }
@@ -218,7 +631,7 @@ public class RuleEngineImpl implements RuleEngine {
                 .map(NumberedRule::getNumber)
                 .collect(Collectors.toSet());
 
-            // this does not check for circular dependencies or self-references
+            // circular dependencies and self-references are detected when the execution plans are compiled
             for (var rule : typedRules) {
                 if (rule.getDependencies() != null && !keys.containsAll(rule.getDependencies())) {
                     unresolved.add(rule.getNumber());
@@ -272,4 +685,60 @@ public class RuleEngineImpl implements RuleEngine {
             .filter(rule -> !shouldBeIgnoredBecauseOfDepositType(rule, depositType))
             .collect(Collectors.toList());
     }
+
+    // a rule that has been submitted to the executor, with the time at which it actually started running
+    private static class RunningRule {
+        private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final int index;
+        // negative if the rule has no time limit
+        private final long timeoutNanos;
+        private volatile boolean started;
+        private volatile long startedAt;
+        private volatile boolean finished;
+
+        RunningRule(int index, long timeoutNanos) {
+            this.index = index;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        void start() {
+            startedAt = System.nanoTime();
+            started = true;
+        }
+
+        void finish() {
+            finished = true;
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        long getTimeoutNanos() {
+            return timeoutNanos;
+        }
+
+        boolean isStarted() {
+            return started;
+        }
+
+        // true once the rule has returned, even if it was interrupted
+        boolean isFinished() {
+            return finished;
+        }
+
+        long getStartedAt() {
+            return startedAt;
+        }
+
+        // the time left before the rule must be interrupted; a rule that has not started yet cannot reach its limit before its full timeout has passed
+        long getRemainingNanos(long now) {
+            if (timeoutNanos < 0) {
+                return Long.MAX_VALUE;
+            }
+
+            return started ? startedAt + timeoutNanos - now : Math.max(timeoutNanos, MIN_WAIT_NANOS);
+        }
+    }
 }
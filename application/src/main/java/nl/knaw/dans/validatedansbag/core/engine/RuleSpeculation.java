@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Runs rules ahead of the rule engine while the bag is still arriving, for instance while an uploaded zip is being extracted. A rule is started as soon as all files that it
+ * reads through its inputs (see {@link BagArtifact#getFiles()}) have arrived. Rules without inputs, or with an input that is not read from a fixed set of files, are left to the
+ * rule engine.
+ * <p>
+ * The dependencies of a rule are not waited for, so a rule may run on a bag that its dependencies would have rejected. Its result is only used when the rule engine gets to the
+ * rule, which is when all of its dependencies have succeeded; until then, it is kept in the {@link BagValidationContext}. Exceptions thrown by the rule are kept in the same way,
+ * so they only end the validation if the rule engine would have run the rule.
+ * <p>
+ * In fail-fast mode, a speculative failure can already decide the outcome of the validation: if none of the rules that the failed rule depends on (directly or indirectly) can
+ * make the rule engine skip it, the bag is non-compliant whatever the rest of it looks like. The speculation then reports that the validation has failed, so that the caller can
+ * stop reading the bag.
+ */
+public class RuleSpeculation implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RuleSpeculation.class);
+
+    private final BagValidationContext context;
+    private final ExecutionPlan plan;
+    private final Executor executor;
+    private final int parallelism;
+    private final RuleRunner runner;
+
+    // guarded by this; the files that the rules that have not been started yet are still waiting for, by plan index
+    private final Map<Integer, Set<Path>> missingFiles = new LinkedHashMap<>();
+    private final Queue<FutureTask<RuleResult>> readyRules = new ArrayDeque<>();
+    private final List<FutureTask<RuleResult>> startedRules = new ArrayList<>();
+    private final FutureTask<RuleResult>[] tasks;
+    // the plan indices of the rules whose failure is certain to end up in the result
+    private final BitSet certainFailures;
+    private final List<Runnable> closeActions = new ArrayList<>();
+    private int running;
+    private boolean closed;
+
+    private volatile boolean failed;
+
+    @SuppressWarnings("unchecked")
+    RuleSpeculation(BagValidationContext context, ExecutionPlan plan, Executor executor, int parallelism, RuleRunner runner) {
+        this.context = context;
+        this.plan = plan;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.runner = runner;
+        this.tasks = new FutureTask[plan.size()];
+        this.certainFailures = new BitSet(plan.size());
+
+        for (var i = 0; i < plan.size(); ++i) {
+            var files = getRequiredFiles(plan.getRule(i));
+
+            if (files != null) {
+                missingFiles.put(i, files);
+            }
+        }
+    }
+
+    /**
+     * Starts the rules that were only waiting for this file. The file must have been written completely.
+     *
+     * @param file the file, relative to the bag directory
+     */
+    public synchronized void fileArrived(Path file) {
+        if (closed) {
+            return;
+        }
+
+        var normalized = file.normalize();
+        var iterator = missingFiles.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            entry.getValue().remove(normalized);
+
+            if (entry.getValue().isEmpty()) {
+                iterator.remove();
+                schedule(entry.getKey());
+            }
+        }
+
+        startReadyRules();
+    }
+
+    /**
+     * Whether a rule has failed in a way that makes the bag non-compliant, whatever the results of the other rules. Only in fail-fast mode, because otherwise the caller wants
+     * the results of all rules.
+     *
+     * @return true if the validation can be stopped
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Returns the results to report when the validation is stopped because {@link #isFailed()}: the failures that are certain, and all other rules as cancelled.
+     *
+     * @return the results, in the order in which the rules were declared
+     */
+    public synchronized List<RuleValidationResult> getFailedResults() {
+        return Arrays.stream(plan.getDeclarationOrder())
+            .mapToObj(i -> certainFailures.get(i)
+                ? RuleEngineImpl.toRuleValidationResult(plan.getRule(i).getNumber(), getCompletedResult(i))
+                : new RuleValidationResult(plan.getRule(i).getNumber(), RuleValidationResult.RuleValidationResultStatus.CANCELLED))
+            .collect(Collectors.toList());
+    }
+
+    // the number of rules that have been started or are about to be
+    synchronized int getSpeculatedRuleCount() {
+        return startedRules.size() + readyRules.size();
+    }
+
+    /**
+     * Registers an action to run when the speculation is closed, or right away if it already is.
+     *
+     * @param action the action
+     */
+    public synchronized void onClose(Runnable action) {
+        if (closed) {
+            action.run();
+            return;
+        }
+
+        closeActions.add(action);
+    }
+
+    /**
+     * Interrupts the rules that are still running and drops the ones that have not been started. Results that the rule engine has not picked up by now are of no use anymore.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        missingFiles.clear();
+
+        for (var rule : readyRules) {
+            rule.cancel(false);
+        }
+
+        for (var rule : startedRules) {
+            rule.cancel(true);
+        }
+
+        readyRules.clear();
+        closeActions.forEach(Runnable::run);
+        closeActions.clear();
+    }
+
+    private void schedule(int index) {
+        var rule = plan.getRule(index);
+        log.trace("Speculatively scheduling task {}", rule.getNumber());
+
+        var task = new FutureTask<>(() -> runner.run(rule));
+        tasks[index] = task;
+        context.putSpeculativeResult(rule.getNumber(), task);
+        readyRules.add(task);
+    }
+
+    // must be called while holding the lock
+    private void startReadyRules() {
+        while (running < parallelism && !readyRules.isEmpty()) {
+            var task = readyRules.remove();
+            startedRules.add(task);
+            running++;
+
+            // a task that the rule engine has run itself in the meantime does nothing here
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    }
+                    finally {
+                        ruleFinished();
+                    }
+                });
+            }
+            catch (RejectedExecutionException e) {
+                // the executor is busy; the rule is tried again when another speculative rule finishes, or else run by the rule engine itself
+                startedRules.remove(task);
+                running--;
+                readyRules.add(task);
+                return;
+            }
+        }
+    }
+
+    private synchronized void ruleFinished() {
+        running--;
+
+        if (closed) {
+            return;
+        }
+
+        if (context.isFailFast() && !failed) {
+            checkForCertainFailures();
+        }
+
+        startReadyRules();
+    }
+
+    // must be called while holding the lock
+    private void checkForCertainFailures() {
+        for (var i = 0; i < tasks.length; ++i) {
+            var result = getCompletedResult(i);
+
+            if (result != null && RuleResult.Status.ERROR.equals(result.getStatus()) && !canBeSkipped(i)) {
+                log.debug("Rule {} failed before the bag was complete, and none of its dependencies can skip it", plan.getRule(i).getNumber());
+                certainFailures.set(i);
+                failed = true;
+            }
+        }
+    }
+
+    // whether one of the rules that the rule depends on, directly or indirectly, can make the rule engine skip it without reporting a failure
+    private boolean canBeSkipped(int index) {
+        var visited = new BitSet(plan.size());
+        var pending = new ArrayDeque<Integer>();
+        pending.push(index);
+
+        while (!pending.isEmpty()) {
+            var dependencies = plan.getDependencies(pending.pop());
+
+            for (var d = dependencies.nextSetBit(0); d >= 0; d = dependencies.nextSetBit(d + 1)) {
+                if (visited.get(d)) {
+                    continue;
+                }
+
+                visited.set(d);
+
+                // a dependency that has not skipped its dependants, or cannot, either succeeds or fails itself
+                var result = getCompletedResult(d);
+                var canSkip = result == null
+                    ? plan.getRule(d).getRule().canSkipDependants()
+                    : RuleResult.Status.SKIP_DEPENDENCIES.equals(result.getStatus());
+
+                if (canSkip) {
+                    return true;
+                }
+
+                pending.push(d);
+            }
+        }
+
+        return false;
+    }
+
+    // null if the rule was not speculated, has not completed yet, or threw an exception
+    private RuleResult getCompletedResult(int index) {
+        var task = tasks[index];
+
+        if (task == null || !task.isDone() || task.isCancelled()) {
+            return null;
+        }
+
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    // null if the rule does not declare a fixed set of files that it reads
+    private static Set<Path> getRequiredFiles(NumberedRule rule) {
+        var inputs = rule.getInputs();
+
+        if (inputs == null || inputs.isEmpty()) {
+            return null;
+        }
+
+        var files = new HashSet<Path>();
+
+        for (var input : inputs) {
+            if (input.getFiles() == null) {
+                return null;
+            }
+
+            for (var file : input.getFiles()) {
+                files.add(file.normalize());
+            }
+        }
+
+        return files;
+    }
+
+    @FunctionalInterface
+    interface RuleRunner {
+        RuleResult run(NumberedRule rule) throws Exception;
+    }
+}
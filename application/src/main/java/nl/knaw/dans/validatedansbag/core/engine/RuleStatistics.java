@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a rolling profile of the duration and failure rate of every rule, as exponentially weighted moving averages over the validations done so far. The rule engine uses it to
+ * decide which of the rules that are ready to run should go first.
+ */
+class RuleStatistics {
+    // weight of the newest observation
+    private static final double ALPHA = 0.2;
+
+    // assumed for rules that have not been executed yet, so that they are neither favoured nor postponed too much
+    private static final double DEFAULT_DURATION_NANOS = 1_000_000;
+    private static final double DEFAULT_FAILURE_RATE = 0.1;
+
+    // keeps rules that never failed orderable by their duration
+    private static final double MIN_FAILURE_RATE = 0.001;
+
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+
+    void record(String number, long durationNanos, boolean failed) {
+        // compute is atomic per key, so concurrent updates of the same profile do not get lost
+        profiles.compute(number, (n, profile) -> profile == null
+            ? new Profile(durationNanos, failed ? 1 : 0)
+            : profile.update(durationNanos, failed ? 1 : 0));
+    }
+
+    double getExpectedDurationNanos(String number) {
+        var profile = profiles.get(number);
+        return profile == null ? DEFAULT_DURATION_NANOS : profile.getDuration();
+    }
+
+    double getFailureRate(String number) {
+        var profile = profiles.get(number);
+        return Math.max(MIN_FAILURE_RATE, profile == null ? DEFAULT_FAILURE_RATE : profile.getFailureRate());
+    }
+
+    /**
+     * Computes the order in which the rules in the plan should be started when several of them are ready, as one number per rule; lower goes first. In fail-fast mode the cheapest
+     * rules that are most likely to fail go first, so that a broken bag is rejected as soon as possible. Otherwise the rules on the longest chain of dependencies go first, so
+     * that the validation as a whole finishes as soon as possible.
+     *
+     * @param plan     the plan to compute the priorities for
+     * @param failFast whether the validation stops at the first failure
+     * @return the priority of every rule, by plan index
+     */
+    double[] getPriorities(ExecutionPlan plan, boolean failFast) {
+        var priorities = new double[plan.size()];
+
+        if (failFast) {
+            for (var i = 0; i < plan.size(); ++i) {
+                var number = plan.getRule(i).getNumber();
+                priorities[i] = getExpectedDurationNanos(number) / getFailureRate(number);
+            }
+        }
+        else {
+            // dependants always come later in the plan, so walking it backwards visits them before the rules they depend on
+            for (var i = plan.size() - 1; i >= 0; --i) {
+                var longestChain = 0.0;
+
+                for (var dependant : plan.getDependants(i)) {
+                    longestChain = Math.max(longestChain, -priorities[dependant]);
+                }
+
+                priorities[i] = -(getExpectedDurationNanos(plan.getRule(i).getNumber()) + longestChain);
+            }
+        }
+
+        return priorities;
+    }
+
+    private static class Profile {
+        private volatile double duration;
+        private volatile double failureRate;
+
+        Profile(double duration, double failureRate) {
+            this.duration = duration;
+            this.failureRate = failureRate;
+        }
+
+        Profile update(double durationNanos, double failed) {
+            duration += ALPHA * (durationNanos - duration);
+            failureRate += ALPHA * (failed - failureRate);
+            return this;
+        }
+
+        double getDuration() {
+            return duration;
+        }
+
+        double getFailureRate() {
+            return failureRate;
+        }
+    }
+}
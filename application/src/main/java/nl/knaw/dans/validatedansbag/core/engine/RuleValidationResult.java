@@ -66,7 +66,11 @@ public class RuleValidationResult {
     public enum RuleValidationResultStatus {
         SUCCESS,
         FAILURE,
-        SKIPPED
+        SKIPPED,
+        // the validation was stopped at the first failure (fail-fast mode) before this rule completed
+        CANCELLED,
+        // the rule did not complete within its own time limit or within the time limit of the validation
+        TIMED_OUT
     }
 
     @Override
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.rules;
+
+import gov.loc.repository.bagit.domain.Bag;
+import gov.loc.repository.bagit.domain.Metadata;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
+import nl.knaw.dans.validatedansbag.core.service.BagInventory;
+import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
+import nl.knaw.dans.validatedansbag.core.service.DatasetXmlSummary;
+import nl.knaw.dans.validatedansbag.core.service.DataverseService;
+import nl.knaw.dans.validatedansbag.core.service.FileService;
+import nl.knaw.dans.validatedansbag.core.service.FilesXmlService;
+import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsService;
+import nl.knaw.dans.validatedansbag.core.service.XmlReader;
+import nl.knaw.dans.validatedansbag.core.service.XmlSchemaValidator;
+import org.xml.sax.SAXParseException;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The artifacts that are read by more than one rule. Each of them is loaded through the services of the rule that asks for it first, and then memoized in the
+ * {@link BagValidationContext} for the other rules. Rules list the artifacts they use in {@link BagValidatorRule#getInputs()}.
+ */
+final class BagArtifacts {
+    static final Path DATASET_XML = Path.of("metadata/dataset.xml");
+    static final Path PAYLOAD_DIR = Path.of("data");
+    static final List<Path> BAG_INFO_FILES = List.of(Path.of("bagit.txt"), Path.of("bag-info.txt"));
+
+    private BagArtifacts() {
+    }
+
+    // the values of dataset.xml that the dataset rules look at, read in one streaming pass
+    static BagArtifact<DatasetXmlSummary> datasetXmlSummary(XmlReader xmlReader) {
+        return new BagArtifact<>("dataset.xml:summary", List.of(DATASET_XML), context -> xmlReader.readDatasetXmlSummary(BagPaths.resolve(context.getBagDir(), DATASET_XML)));
+    }
+
+    // the schema errors in the XML file at the given path, relative to the bag directory; the file is validated while it is read, without building a DOM
+    static BagArtifact<List<SAXParseException>> xmlSchemaErrors(XmlSchemaValidator xmlSchemaValidator, Path file, String schema) {
+        return new BagArtifact<>("xml-schema:" + schema + ":" + file, List.of(file),
+            context -> xmlSchemaValidator.validateFile(BagPaths.resolve(context.getBagDir(), file), schema));
+    }
+
+    static BagArtifact<List<Path>> filesXmlFilepaths(FilesXmlService filesXmlService) {
+        return new BagArtifact<>("files.xml:filepaths", context -> filesXmlService.readFilepaths(context.getBagDir()).collect(Collectors.toList()));
+    }
+
+    // the bag-info.txt fields and the manifests
+    static BagArtifact<Optional<Bag>> bag(BagItMetadataReader bagItMetadataReader) {
+        return new BagArtifact<>("bag", context -> bagItMetadataReader.getBag(context.getBagDir()));
+    }
+
+    // only the bag-info.txt fields, which can be read before the manifests and the payload have arrived
+    static BagArtifact<Metadata> bagInfo(BagItMetadataReader bagItMetadataReader) {
+        return new BagArtifact<>("bag-info", BAG_INFO_FILES, context -> bagItMetadataReader.getBagInfo(context.getBagDir()));
+    }
+
+    // everything in the bag, listed once for all rules
+    static BagArtifact<BagInventory> inventory(FileService fileService) {
+        return new BagArtifact<>("inventory", context -> fileService.getInventory(context.getBagDir()));
+    }
+
+    // the files in the given directory, relative to the bag directory, and its subdirectories; for the payload directory this is the payload inventory
+    static BagArtifact<List<Path>> allFiles(FileService fileService, Path dir) {
+        return new BagArtifact<>("files:" + dir, context -> inventory(fileService).get(context).getFiles(dir));
+    }
+
+    static BagArtifact<List<Path>> allFilesAndDirectories(FileService fileService, Path dir) {
+        return new BagArtifact<>("files-and-directories:" + dir, context -> inventory(fileService).get(context).getFilesAndDirectories(dir));
+    }
+
+    static BagArtifact<Map<Path, Path>> mappingsFromOriginalToRenamed(OriginalFilepathsService originalFilepathsService) {
+        return new BagArtifact<>("original-filepaths:original-to-renamed", context -> originalFilepathsService.getMappingsFromOriginalToRenamed(context.getBagDir()));
+    }
+
+    static BagArtifact<Integer> maxEmbargoDurationInMonths(DataverseService dataverseService) {
+        return new BagArtifact<>("dataverse:max-embargo-duration-in-months", List.of(),
+            context -> Integer.parseInt(dataverseService.getMaxEmbargoDurationInMonths().getData().getMessage()));
+    }
+
+    static DatasetXmlSummary getDatasetXmlSummary(BagValidationContext context, XmlReader xmlReader) throws Exception {
+        return datasetXmlSummary(xmlReader).get(context);
+    }
+
+    static List<SAXParseException> getXmlSchemaErrors(BagValidationContext context, XmlSchemaValidator xmlSchemaValidator, Path file, String schema) throws Exception {
+        return xmlSchemaErrors(xmlSchemaValidator, file, schema).get(context);
+    }
+
+    static List<Path> getFilesXmlFilepaths(BagValidationContext context, FilesXmlService filesXmlService) throws Exception {
+        return filesXmlFilepaths(filesXmlService).get(context);
+    }
+
+    static Optional<Bag> getBag(BagValidationContext context, BagItMetadataReader bagItMetadataReader) throws Exception {
+        return bag(bagItMetadataReader).get(context);
+    }
+
+    // same as BagItMetadataReader.getField, but without reading the bag again
+    static List<String> getBagInfoField(BagValidationContext context, BagItMetadataReader bagItMetadataReader, String field) throws Exception {
+        return Optional.ofNullable(bagInfo(bagItMetadataReader).get(context).get(field))
+            .orElse(List.of());
+    }
+
+    static String getSingleBagInfoField(BagValidationContext context, BagItMetadataReader bagItMetadataReader, String field) throws Exception {
+        return getBagInfoField(context, bagItMetadataReader, field)
+            .stream()
+            .findFirst()
+            .orElse(null);
+    }
+
+    // the directory is relative to the bag directory; the files are returned as absolute paths
+    static List<Path> getAllFiles(BagValidationContext context, FileService fileService, Path dir) throws Exception {
+        return allFiles(fileService, dir).get(context);
+    }
+
+    static List<Path> getAllFilesAndDirectories(BagValidationContext context, FileService fileService, Path dir) throws Exception {
+        return allFilesAndDirectories(fileService, dir).get(context);
+    }
+
+    static Map<Path, Path> getMappingsFromOriginalToRenamed(BagValidationContext context, OriginalFilepathsService originalFilepathsService) throws Exception {
+        return mappingsFromOriginalToRenamed(originalFilepathsService).get(context);
+    }
+}
@@ -17,6 +17,7 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 
 import lombok.AllArgsConstructor;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 
@@ -28,8 +29,14 @@ public class BagContainsDir implements BagValidatorRule {
     private final FileService fileService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var target = path.resolve(dir);
+    public boolean canSkipDependants() {
+        return false;
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var target = BagPaths.resolve(path, dir);
 
         if (!fileService.isDirectory(target)) {
             return RuleResult.error(String.format("Path '%s' is not a directory", dir));
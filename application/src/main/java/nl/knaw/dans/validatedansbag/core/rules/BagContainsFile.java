@@ -17,6 +17,7 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 
@@ -30,8 +31,14 @@ public class BagContainsFile implements BagValidatorRule {
     private final FileService fileService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var target = path.resolve(file);
+    public boolean canSkipDependants() {
+        return false;
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var target = BagPaths.resolve(path, file);
 
         if (!fileService.isFile(target)) {
             return RuleResult.error(String.format("Path '%s' is not a file", file));
@@ -17,11 +17,14 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,16 +34,22 @@ public class BagDirContainsNothingElseThan implements BagValidatorRule {
     private final String[] paths;
     private final FileService fileService;
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var basePath = path.resolve(dir);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.allFilesAndDirectories(fileService, dir));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var basePath = BagPaths.resolve(path, dir);
         var allowed = Arrays.stream(paths)
                 .map(Path::of)
                 .collect(Collectors.toSet());
 
-        var allItems = fileService.getAllFilesAndDirectories(basePath)
+        var allItems = BagArtifacts.getAllFilesAndDirectories(context, fileService, dir)
                 .stream()
                 .filter(p -> !basePath.equals(p))
-                .map(basePath::relativize)
+                .map(p -> BagPaths.relativize(basePath, p))
                 .filter(p -> !allowed.contains(p))
                 // filter out the parent path
                 .collect(Collectors.toSet());
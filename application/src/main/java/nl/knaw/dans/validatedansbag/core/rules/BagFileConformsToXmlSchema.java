@@ -17,14 +17,12 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
-import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import nl.knaw.dans.validatedansbag.core.service.XmlSchemaValidator;
-import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -33,16 +31,24 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BagFileConformsToXmlSchema implements BagValidatorRule {
     protected final Path file;
-    private final XmlReader xmlReader;
     protected final String schema;
     private final XmlSchemaValidator xmlSchemaValidator;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.xmlSchemaErrors(xmlSchemaValidator, file, schema));
+    }
+
+    @Override
+    public boolean canSkipDependants() {
+        return false;
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
         try {
-            var fileName = path.resolve(file);
-            log.debug("Validating {} against schema {}", fileName, schema);
-            var errors = validateXmlFile(fileName, schema);
+            log.debug("Validating {} against schema {}", BagPaths.resolve(context.getBagDir(), file), schema);
+            var errors = validateXmlFile(context, schema);
 
             if (errors.size() > 0) {
                 var msg = String.format("%s does not conform to %s: \n%s",
@@ -57,9 +63,8 @@ public class BagFileConformsToXmlSchema implements BagValidatorRule {
         return RuleResult.ok();
     }
 
-    private List<String> validateXmlFile(Path file, String schema) throws ParserConfigurationException, IOException, SAXException {
-        var document = xmlReader.readXmlFile(file);
-        var results = xmlSchemaValidator.validateDocument(document, schema);
+    private List<String> validateXmlFile(BagValidationContext context, String schema) throws Exception {
+        var results = BagArtifacts.getXmlSchemaErrors(context, xmlSchemaValidator, file, schema);
 
         return results.stream()
                 .map(Throwable::getLocalizedMessage)
@@ -19,10 +19,12 @@ import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.validatedansbag.core.BagNotFoundException;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 @AllArgsConstructor
@@ -30,8 +32,14 @@ public class BagHasOtherManifestsThanOnlyMd5 implements BagValidatorRule {
     private final BagItMetadataReader bagItMetadataReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var bag = bagItMetadataReader.getBag(path).orElseThrow(
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bag(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var bag = BagArtifacts.getBag(context, bagItMetadataReader).orElseThrow(
                 () -> new BagNotFoundException(String.format("Bag on path %s could not be opened", path)));
 
         var manifests = bagItMetadataReader.getBagManifests(bag);
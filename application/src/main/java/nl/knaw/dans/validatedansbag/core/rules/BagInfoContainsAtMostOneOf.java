@@ -17,10 +17,12 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 @AllArgsConstructor
@@ -29,8 +31,14 @@ public class BagInfoContainsAtMostOneOf implements BagValidatorRule {
     private final BagItMetadataReader bagItMetadataReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var items = bagItMetadataReader.getField(path, key);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var items = BagArtifacts.getBagInfoField(context, bagItMetadataReader, key);
         log.debug("Found {} results in bag {} for field {}", items, path, key);
 
         switch (items.size()) {
@@ -17,12 +17,14 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import org.joda.time.DateTime;
 import org.joda.time.format.ISODateTimeFormat;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 @AllArgsConstructor
@@ -30,8 +32,13 @@ public class BagInfoCreatedElementIsIso8601Date implements BagValidatorRule {
     private final BagItMetadataReader bagItMetadataReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var created = bagItMetadataReader.getSingleField(path, "Created");
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var created = BagArtifacts.getSingleBagInfoField(context, bagItMetadataReader, "Created");
 
         try {
             log.debug("Trying to parse date {} to see if it is valid", created);
@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 @AllArgsConstructor
@@ -30,14 +32,25 @@ public class BagInfoExistsAndIsWellformed implements BagValidatorRule {
     private final FileService fileService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        if (!fileService.isFile(path.resolve(Path.of("bag-info.txt")))) {
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bag(bagItMetadataReader));
+    }
+
+    @Override
+    public boolean canSkipDependants() {
+        return false;
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        if (!fileService.isFile(path.resolve("bag-info.txt"))) {
             return RuleResult.error("bag-info.txt does not exist");
         }
 
         try {
             log.debug("Reading bag metadata from {}", path);
-            bagItMetadataReader.getBag(path).orElseThrow();
+            BagArtifacts.getBag(context, bagItMetadataReader).orElseThrow();
             return RuleResult.ok();
         } catch (Exception e) {
             return RuleResult.error(String.format(
@@ -17,12 +17,14 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Path;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -32,8 +34,13 @@ public class BagInfoIsVersionOfIsValidUrnUuid implements BagValidatorRule {
     private final BagItMetadataReader bagItMetadataReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var items = bagItMetadataReader.getField(path, "Is-Version-Of");
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var items = BagArtifacts.getBagInfoField(context, bagItMetadataReader, "Is-Version-Of");
 
         var invalidUrns = items.stream().filter(item -> {
                     log.debug("Validating if {} is a valid URN UUID ", item);
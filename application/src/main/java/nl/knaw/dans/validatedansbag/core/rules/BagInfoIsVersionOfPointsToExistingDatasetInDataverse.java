@@ -16,11 +16,13 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 public class BagInfoIsVersionOfPointsToExistingDatasetInDataverse extends DataverseRuleBase implements BagValidatorRule {
@@ -33,13 +35,18 @@ public class BagInfoIsVersionOfPointsToExistingDatasetInDataverse extends Datave
 
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var isVersionOf = bagItMetadataReader.getSingleField(path, "Is-Version-Of");
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader), datasetIsVersionOf(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var isVersionOf = BagArtifacts.getSingleBagInfoField(context, bagItMetadataReader, "Is-Version-Of");
 
         log.trace("Using Is-Version-Of value '{}' to find a matching dataset", isVersionOf);
 
         if (isVersionOf != null) {
-            var dataset = getDatasetIsVersionOf(isVersionOf);
+            var dataset = datasetIsVersionOf(bagItMetadataReader).get(context);
 
             if (dataset.isEmpty()) {
                 log.debug("Dataset with sword token '{}' not found", isVersionOf);
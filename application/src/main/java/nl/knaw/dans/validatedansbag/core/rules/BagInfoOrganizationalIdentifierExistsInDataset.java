@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.dataverse.model.dataset.PrimitiveSingleValueField;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 
-import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -35,16 +37,20 @@ public class BagInfoOrganizationalIdentifierExistsInDataset extends DataverseRul
     }
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var isVersionOf = bagItMetadataReader.getSingleField(path, "Is-Version-Of");
-        var dataset = getDatasetIsVersionOf(isVersionOf);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader), datasetIsVersionOf(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var dataset = datasetIsVersionOf(bagItMetadataReader).get(context);
 
         if (dataset.isEmpty()) {
             return RuleResult.error("Expected a dataset, but got nothing");
         }
 
         // (b) dansOtherId must match Has-Organizational-Identifier (or both are null)
-        var orgIdentifier = bagItMetadataReader.getSingleField(path, "Has-Organizational-Identifier");
+        var orgIdentifier = BagArtifacts.getSingleBagInfoField(context, bagItMetadataReader, "Has-Organizational-Identifier");
 
         var otherId = Optional.ofNullable(dataset.get().getLatestVersion().getMetadataBlocks())
                 .map(m -> m.get("dansDataVaultMetadata"))
@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.validator.OrganizationIdentifierPrefixValidator;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @AllArgsConstructor
 @Slf4j
@@ -30,8 +32,13 @@ public class BagInfoOrganizationalIdentifierPrefixIsValid implements BagValidato
     private final OrganizationIdentifierPrefixValidator organizationIdentifierPrefixValidator;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var hasOrganizationalIdentifier = bagItMetadataReader.getSingleField(path, "Has-Organizational-Identifier");
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bagInfo(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var hasOrganizationalIdentifier = BagArtifacts.getSingleBagInfoField(context, bagItMetadataReader, "Has-Organizational-Identifier");
 
         log.debug("Checking prefix on organizational identifier '{}'", hasOrganizationalIdentifier);
 
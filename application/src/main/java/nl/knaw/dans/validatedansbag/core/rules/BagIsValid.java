@@ -25,11 +25,13 @@ import gov.loc.repository.bagit.exceptions.MissingPayloadManifestException;
 import gov.loc.repository.bagit.exceptions.VerificationException;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 
 import java.nio.file.NoSuchFileException;
-import java.nio.file.Path;
+import java.util.List;
 
 @Slf4j
 @AllArgsConstructor
@@ -38,10 +40,30 @@ public class BagIsValid implements BagValidatorRule {
 
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
+    public boolean canSkipDependants() {
+        return false;
+    }
+
+    @Override
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.bag(bagItMetadataReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
         try {
             log.debug("Verifying bag {}", path);
-            bagItMetadataReader.verifyBag(path);
+            var bag = BagArtifacts.getBag(context, bagItMetadataReader);
+
+            if (bag.isPresent()) {
+                bagItMetadataReader.verifyBag(bag.get(), context.isUseChecksumCache());
+            }
+            else {
+                // reading the bag again is the only way to find out why it could not be read
+                bagItMetadataReader.verifyBag(path, context.isUseChecksumCache());
+            }
+
             log.debug("Bag {} is valid", path);
             return RuleResult.ok();
         }
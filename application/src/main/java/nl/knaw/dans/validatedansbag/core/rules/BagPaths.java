@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.rules;
+
+import java.nio.file.Path;
+
+/**
+ * Conversions between the paths inside a bag and the bag-relative paths that the rules are configured with or read from the metadata. A bag is not necessarily on the default file
+ * system (an uploaded zip is validated through a zip file system), and paths of different file systems can neither be resolved against each other nor compared, so these go
+ * through their string form.
+ */
+final class BagPaths {
+
+    private BagPaths() {
+    }
+
+    // the file in the bag at the given bag-relative path
+    static Path resolve(Path bagDir, Path relative) {
+        return bagDir.resolve(relative.toString());
+    }
+
+    // the path of the file relative to the directory, on the default file system, so that it can be compared with paths from the configuration and the metadata
+    static Path relativize(Path dir, Path file) {
+        return Path.of(dir.relativize(file).toString());
+    }
+}
@@ -15,12 +15,23 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 
-import java.nio.file.Path;
+import java.util.List;
 
 @FunctionalInterface
 public interface BagValidatorRule {
-    RuleResult validate(Path path) throws Exception;
+    RuleResult validate(BagValidationContext context) throws Exception;
 
+    // the artifacts this rule reads through the validation context; the rule engine may load them before the rule runs
+    default List<BagArtifact<?>> getInputs() {
+        return List.of();
+    }
+
+    // whether the rule may return SKIP_DEPENDENCIES; if not, a rule that depends on it either runs or is skipped because a rule failed
+    default boolean canSkipDependants() {
+        return true;
+    }
 }
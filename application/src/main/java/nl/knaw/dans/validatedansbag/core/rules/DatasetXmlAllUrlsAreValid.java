@@ -17,12 +17,14 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
+import nl.knaw.dans.validatedansbag.core.service.DatasetXmlSummary;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -36,25 +38,26 @@ public class DatasetXmlAllUrlsAreValid implements BagValidatorRule {
     private final XmlReader xmlReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-
-        var hrefNodes = xmlReader.xpathToStreamOfStrings(document, "//*/@href");
-        var schemeURINodes = xmlReader.xpathToStreamOfStrings(document, "//ddm:subject/@schemeURI");
-        var valueURINodes = xmlReader.xpathToStreamOfStrings(document, "//ddm:subject/@valueURI");
-
-        var expr = List.of(
-                "//*[@xsi:type='dcterms:URI']",
-                "//*[@xsi:type='dcterms:URL']",
-                "//*[@xsi:type='URI']",
-                "//*[@xsi:type='URL']",
-                "//*[@scheme='dcterms:URI']",
-                "//*[@scheme='dcterms:URL']",
-                "//*[@scheme='URI']",
-                "//*[@scheme='URL']"
-        );
-
-        var elementSelectors = xmlReader.xpathsToStreamOfStrings(document, expr);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+
+        var hrefNodes = summary.getHrefs().stream();
+        var schemeURINodes = summary.getSubjectSchemeUris().stream();
+        var valueURINodes = summary.getSubjectValueUris().stream();
+
+        // the elements with each of these types, in this order, as the XPath expressions //*[@xsi:type='...'] and //*[@scheme='...'] used to select them
+        var types = List.of("dcterms:URI", "dcterms:URL", "URI", "URL");
+        var uriElements = summary.getUriElements();
+
+        var elementSelectors = Stream.concat(
+                types.stream().flatMap(type -> uriElements.stream().filter(e -> type.equals(e.getXsiType()))),
+                types.stream().flatMap(type -> uriElements.stream().filter(e -> type.equals(e.getScheme()))))
+                .map(DatasetXmlSummary.TypedElement::getText);
 
         var errors = Stream.of(hrefNodes, schemeURINodes, valueURINodes, elementSelectors)
                 .flatMap(i -> i)
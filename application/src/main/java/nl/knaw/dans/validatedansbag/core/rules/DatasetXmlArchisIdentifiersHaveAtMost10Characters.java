@@ -17,10 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
+import nl.knaw.dans.validatedansbag.core.service.DatasetXmlSummary;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -29,12 +32,18 @@ import java.util.stream.Collectors;
 public class DatasetXmlArchisIdentifiersHaveAtMost10Characters implements BagValidatorRule {
     private final XmlReader xmlReader;
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
 
         // points
-        var expr = "/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type = 'id-type:ARCHIS-ZAAK-IDENTIFICATIE']";
-        var match = xmlReader.xpathToStreamOfStrings(document, expr)
+        var match = summary.getIdentifiers().stream()
+                .filter(identifier -> "id-type:ARCHIS-ZAAK-IDENTIFICATIE".equals(identifier.getXsiType()))
+                .map(DatasetXmlSummary.TypedElement::getText)
                 .filter(Objects::nonNull)
                 .peek(text -> log.trace("Validating element text '{}' for maximum length", text))
                 .filter(text -> text.length() > 10)
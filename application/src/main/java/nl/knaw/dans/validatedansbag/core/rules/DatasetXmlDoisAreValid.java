@@ -17,10 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
+import nl.knaw.dans.validatedansbag.core.service.DatasetXmlSummary;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
+import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -32,12 +35,18 @@ public class DatasetXmlDoisAreValid implements BagValidatorRule {
     private final XmlReader xmlReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-        var idTypePrefix = document.lookupPrefix(XmlReader.NAMESPACE_ID_TYPE);
-        var expr = String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:identifier[@xsi:type=\"%s:DOI\"]", idTypePrefix);
-        var nodes = xmlReader.xpathToStreamOfStrings(document, expr);
-        var invalidDois = nodes
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+        var idTypePrefix = summary.lookupPrefix(XmlReader.NAMESPACE_ID_TYPE);
+        var xsiType = String.format("%s:DOI", idTypePrefix);
+        var invalidDois = summary.getIdentifiers().stream()
+                .filter(identifier -> xsiType.equals(identifier.getXsiType()))
+                .map(DatasetXmlSummary.TypedElement::getText)
                 .peek(node -> log.trace("Validating if {} matches pattern {}", node, doiPattern))
                 .filter((text) -> !doiPattern.matcher(text).matches())
                 .collect(Collectors.joining(", "));
@@ -16,13 +16,14 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import org.joda.time.DateTime;
 
-import java.nio.file.Path;
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Slf4j
 public class DatasetXmlEmbargoPeriodWithinLimits extends DataverseRuleBase implements BagValidatorRule {
@@ -34,17 +35,20 @@ public class DatasetXmlEmbargoPeriodWithinLimits extends DataverseRuleBase imple
     }
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var months = Integer.parseInt(dataverseService.getMaxEmbargoDurationInMonths().getData().getMessage());
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-        var expr = "/ddm:DDM/ddm:profile/ddm:available";
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.maxEmbargoDurationInMonths(dataverseService), BagArtifacts.datasetXmlSummary(xmlReader));
+    }
 
-        var nodes = xmlReader.xpathToStream(document, expr).collect(Collectors.toList());
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var months = BagArtifacts.maxEmbargoDurationInMonths(dataverseService).get(context);
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+        var nodes = summary.getAvailable();
         if (nodes.isEmpty()) {
             return RuleResult.ok();
         }
 
-        DateTime embargoDate = DateTime.parse(nodes.get(0).getTextContent());
+        DateTime embargoDate = DateTime.parse(nodes.get(0));
         if (embargoDate.isBefore(new DateTime(DateTime.now().plusMonths(months)))) {
             return RuleResult.ok();
         } else {
@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -31,17 +33,19 @@ public class DatasetXmlGmlPointsHaveAtLeastTwoValues implements BagValidatorRule
     private final XmlReader xmlReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
 
-        // points
-        var expr = "//gml:Point/gml:pos | //gml:lowerCorner | //gml:upperCorner";
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
 
-        var errors = xmlReader.xpathToStream(document, expr)
+        // points
+        var errors = summary.getPoints().stream()
                 .map(value -> {
-                    var attr = value.getParentNode().getAttributes().getNamedItem("srsName");
-                    var text = value.getTextContent();
-                    var isRD = attr != null && "urn:ogc:def:crs:EPSG::28992".equals(attr.getTextContent());
+                    var text = value.getText();
+                    var isRD = "urn:ogc:def:crs:EPSG::28992".equals(value.getSrsName());
 
                     log.trace("Validating point {} (isRD: {})", text, isRD);
 
@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import nl.knaw.dans.validatedansbag.core.validator.PolygonListValidator;
 
-import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,12 +33,14 @@ public class DatasetXmlGmlPolygonPosListIsWellFormed implements BagValidatorRule
     private final PolygonListValidator polygonListValidator;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-        var expr = "//dcx-gml:spatial//gml:posList";//*[local-name() = 'posList']";
-        var nodes = xmlReader.xpathToStreamOfStrings(document, expr);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
 
-        var match = nodes
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+        var match = summary.getSpatialPosLists().stream()
                 .peek(posList -> log.trace("Validation posList value {}", posList))
                 .map(polygonListValidator::validatePolygonList)
                 .filter(e -> !e.isValid())
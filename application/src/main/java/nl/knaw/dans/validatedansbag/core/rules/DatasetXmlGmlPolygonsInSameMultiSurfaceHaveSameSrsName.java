@@ -17,11 +17,12 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
-import java.util.Objects;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,27 +31,16 @@ public class DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName implements B
     private final XmlReader xmlReader;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-        var expr = "//gml:MultiSurface";
-        var nodes = xmlReader.xpathToStream(document, expr);
-        var match = nodes.filter(node -> {
-                    try {
-                        var srsNames = xmlReader.xpathToStreamOfStrings(node, ".//gml:Polygon/@srsName")
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toSet());
-
-                        log.trace("Found unique srsName values: {}", srsNames);
-                        if (srsNames.size() > 1) {
-                            return true;
-                        }
-                    } catch (Throwable e) {
-                        log.error("Error checking srsNames attribute", e);
-                        return true;
-                    }
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
 
-                    return false;
-                })
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+        var match = summary.getMultiSurfaceSrsNames().stream()
+                .peek(srsNames -> log.trace("Found unique srsName values: {}", srsNames))
+                .filter(srsNames -> srsNames.size() > 1)
                 .collect(Collectors.toList());
 
         log.debug("Invalid MultiSurface elements that contain polygons with different srsNames: {}", match);
@@ -16,11 +16,10 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
-
 @Slf4j
 public class DatasetXmlHasRightsHolderInElement extends DatasetXmlHasRightsHolderRuleBase implements BagValidatorRule {
 
@@ -29,10 +28,10 @@ public class DatasetXmlHasRightsHolderInElement extends DatasetXmlHasRightsHolde
     }
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
 
-        var rightsHolder = getRightsHolderInElement(document);
+        var rightsHolder = getRightsHolderInElement(summary);
 
         if (rightsHolder.isEmpty()) {
             return RuleResult.error("No RightsHolder found in <dcterms:rightsHolder> element");
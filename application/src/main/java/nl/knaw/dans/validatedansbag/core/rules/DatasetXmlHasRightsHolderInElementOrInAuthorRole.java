@@ -16,11 +16,10 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 
-import java.nio.file.Path;
-
 @Slf4j
 public class DatasetXmlHasRightsHolderInElementOrInAuthorRole extends DatasetXmlHasRightsHolderRuleBase implements BagValidatorRule {
 
@@ -29,11 +28,11 @@ public class DatasetXmlHasRightsHolderInElementOrInAuthorRole extends DatasetXml
     }
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
 
-        var inRole = getRightsHolderInAuthor(document);
-        var rightsHolder = getRightsHolderInElement(document);
+        var inRole = getRightsHolderInAuthor(summary);
+        var rightsHolder = getRightsHolderInElement(summary);
         log.debug("Results for rights holder search, inRole {}, in rightsHolder element {}", inRole, rightsHolder);
 
         if (inRole.isEmpty() && rightsHolder.isEmpty()) {
@@ -17,10 +17,11 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.service.DatasetXmlSummary;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
-import org.w3c.dom.Document;
 
-import javax.xml.xpath.XPathExpressionException;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -29,16 +30,20 @@ import java.util.Optional;
 public class DatasetXmlHasRightsHolderRuleBase {
     protected final XmlReader xmlReader;
 
-    protected Optional<String> getRightsHolderInElement(Document document) throws XPathExpressionException {
-        return xmlReader.xpathToStreamOfStrings(document, "/ddm:DDM/ddm:dcmiMetadata//dcterms:rightsHolder")
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    protected Optional<String> getRightsHolderInElement(DatasetXmlSummary summary) {
+        return summary.getRightsHolders().stream()
                 .filter(Objects::nonNull)
                 .map(String::trim)
                 .filter(s -> !s.isEmpty())
                 .findFirst();
     }
 
-    protected Optional<String> getRightsHolderInAuthor(Document document) throws XPathExpressionException {
-        return xmlReader.xpathToStreamOfStrings(document, "//dcx-dai:author/dcx-dai:role")
+    protected Optional<String> getRightsHolderInAuthor(DatasetXmlSummary summary) {
+        return summary.getAuthorRoles().stream()
                 .filter(Objects::nonNull)
                 .map(String::trim)
                 .filter(value -> value.equals("RightsHolder"))
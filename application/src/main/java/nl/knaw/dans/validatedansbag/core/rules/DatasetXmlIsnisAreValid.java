@@ -17,11 +17,13 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import nl.knaw.dans.validatedansbag.core.validator.IdentifierValidator;
 
-import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,10 +33,14 @@ public class DatasetXmlIsnisAreValid implements BagValidatorRule {
     private final IdentifierValidator identifierValidator;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
-        var expr = "//dcx-dai:ISNI";
-        var match = xmlReader.xpathToStreamOfStrings(document, expr)
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
+        var match = summary.getIsnis().stream()
                 .peek(id -> log.trace("Validating if {} is a valid ISNI", id))
                 .filter((id) -> !identifierValidator.validateIsni(id))
                 .collect(Collectors.toList());
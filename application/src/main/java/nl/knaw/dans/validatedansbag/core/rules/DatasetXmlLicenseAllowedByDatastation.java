@@ -18,13 +18,15 @@ package nl.knaw.dans.validatedansbag.core.rules;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.dataverse.DataverseException;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import nl.knaw.dans.validatedansbag.core.validator.LicenseValidator;
 
 import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -34,14 +36,20 @@ public class DatasetXmlLicenseAllowedByDatastation implements BagValidatorRule {
     private final LicenseValidator licenseValidator;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var document = xmlReader.readXmlFile(path.resolve("metadata/dataset.xml"));
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(BagArtifacts.datasetXmlSummary(xmlReader));
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var summary = BagArtifacts.getDatasetXmlSummary(context, xmlReader);
         // converts a namespace uri into a prefix that is used in the document
-        var prefix = document.lookupPrefix(XmlReader.NAMESPACE_DCTERMS);
-        var expr = String.format("/ddm:DDM/ddm:dcmiMetadata/dcterms:license[@xsi:type='%s:URI']", prefix);
+        var prefix = summary.lookupPrefix(XmlReader.NAMESPACE_DCTERMS);
+        var xsiType = String.format("%s:URI", prefix);
 
-        var validNodes = xmlReader.xpathToStream(document, expr)
-                .filter(item -> licenseValidator.isValidUri(item.getTextContent()))
+        var validNodes = summary.getLicenses().stream()
+                .filter(item -> xsiType.equals(item.getXsiType()))
+                .filter(item -> licenseValidator.isValidUri(item.getText()))
                 .collect(Collectors.toList());
 
         log.debug("Nodes found with valid URI's: {}", validNodes.size());
@@ -50,7 +58,7 @@ public class DatasetXmlLicenseAllowedByDatastation implements BagValidatorRule {
 
         for (var node : validNodes) {
             var isValid = false;
-            var text = node.getTextContent();
+            var text = node.getText();
 
             log.debug("Validating if {} is a valid license in data station", text);
             try {
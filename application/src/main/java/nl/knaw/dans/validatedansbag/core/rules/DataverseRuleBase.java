@@ -20,6 +20,8 @@ import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import nl.knaw.dans.lib.dataverse.model.dataset.DatasetLatestVersion;
 import nl.knaw.dans.lib.dataverse.model.search.DatasetResultItem;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 
 import java.io.IOException;
@@ -30,6 +32,14 @@ import java.util.Optional;
 public class DataverseRuleBase {
     protected final DataverseService dataverseService;
 
+    // the dataset that Is-Version-Of in bag-info.txt points to, or nothing if the bag has no Is-Version-Of; looked up in Dataverse only once per validation
+    protected BagArtifact<Optional<DatasetLatestVersion>> datasetIsVersionOf(BagItMetadataReader bagItMetadataReader) {
+        return new BagArtifact<>("dataverse:is-version-of", BagArtifacts.BAG_INFO_FILES, context -> {
+            var isVersionOf = BagArtifacts.getSingleBagInfoField(context, bagItMetadataReader, "Is-Version-Of");
+            return isVersionOf == null ? Optional.empty() : getDatasetIsVersionOf(isVersionOf);
+        });
+    }
+
     protected Optional<DatasetLatestVersion> getDatasetIsVersionOf(String isVersionOf) throws IOException, DataverseException {
         if (isVersionOf.startsWith("urn:uuid:")) {
             var swordToken = "sword:" + isVersionOf.substring("urn:uuid:".length());
@@ -17,18 +17,17 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 import nl.knaw.dans.validatedansbag.core.service.FilesXmlService;
 import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsService;
 import org.apache.commons.collections4.CollectionUtils;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -41,8 +40,17 @@ public class FilesXmlFilePathAttributesContainLocalBagPathAndNonPayloadFilesAreN
     private final OriginalFilepathsService originalFilepathsService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var missingInFilesXml = filesXmlDescribesOnlyPayloadFiles(path);
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(
+                BagArtifacts.filesXmlFilepaths(filesXmlService),
+                BagArtifacts.allFiles(fileService, BagArtifacts.PAYLOAD_DIR),
+                BagArtifacts.mappingsFromOriginalToRenamed(originalFilepathsService)
+        );
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var missingInFilesXml = filesXmlDescribesOnlyPayloadFiles(context);
 
         if (missingInFilesXml.size() > 0) {
             var paths = missingInFilesXml.stream().map(Path::toString).collect(Collectors.joining(", "));
@@ -52,20 +60,21 @@ public class FilesXmlFilePathAttributesContainLocalBagPathAndNonPayloadFilesAreN
         return RuleResult.ok();
     }
 
-    Set<Path> filesXmlDescribesOnlyPayloadFiles(Path path) throws ParserConfigurationException, IOException, SAXException, XPathExpressionException {
+    Set<Path> filesXmlDescribesOnlyPayloadFiles(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
         var dataPath = path.resolve("data");
 
         // find all files that exist on disk
-        var bagPaths = fileService.getAllFiles(dataPath)
+        var bagPaths = BagArtifacts.getAllFiles(context, fileService, BagArtifacts.PAYLOAD_DIR)
                 .stream()
-                .map(path::relativize)
+                .map(p -> BagPaths.relativize(path, p))
                 .collect(Collectors.toSet());
 
         log.trace("Paths that exist on path {}: {}", dataPath, bagPaths);
 
-        var bagPathMapping = originalFilepathsService.getMappingsFromOriginalToRenamed(path);
+        var bagPathMapping = BagArtifacts.getMappingsFromOriginalToRenamed(context, originalFilepathsService);
 
-        var xmlPaths = filesXmlService.readFilepaths(path)
+        var xmlPaths = BagArtifacts.getFilesXmlFilepaths(context, filesXmlService).stream()
                 .map(Path::normalize)
                 .map(p -> Optional.ofNullable(bagPathMapping.get(p)).orElse(p))
                 .collect(Collectors.toSet());
@@ -17,19 +17,18 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 import nl.knaw.dans.validatedansbag.core.service.FilesXmlService;
 import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsService;
 import org.apache.commons.collections4.CollectionUtils;
-import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPathExpressionException;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -43,10 +42,19 @@ public class FilesXmlNoDuplicateFilesAndEveryPayloadFileIsDescribed implements B
     private final OriginalFilepathsService originalFilepathsService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(
+                BagArtifacts.filesXmlFilepaths(filesXmlService),
+                BagArtifacts.allFiles(fileService, BagArtifacts.PAYLOAD_DIR),
+                BagArtifacts.mappingsFromOriginalToRenamed(originalFilepathsService)
+        );
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
         var errors = new ArrayList<String>();
 
-        var duplicates = filesXmlNoDuplicates(path);
+        var duplicates = filesXmlNoDuplicates(context);
 
         // There MUST NOT be more than one file element corresponding to a payload file
         if (duplicates.size() > 0) {
@@ -54,7 +62,7 @@ public class FilesXmlNoDuplicateFilesAndEveryPayloadFileIsDescribed implements B
             errors.add(String.format("files.xml: duplicate entries found: {%s}", paths));
         }
 
-        var missingPayloadFiles = filesXmlDescribesAllPayloadFiles(path);
+        var missingPayloadFiles = filesXmlDescribesAllPayloadFiles(context);
 
         // every payload file MUST be described by a file element.
         if (missingPayloadFiles.size() > 0) {
@@ -69,9 +77,9 @@ public class FilesXmlNoDuplicateFilesAndEveryPayloadFileIsDescribed implements B
         return RuleResult.ok();
     }
 
-    Set<Path> filesXmlNoDuplicates(Path path) throws IOException, XPathExpressionException, ParserConfigurationException, SAXException {
+    Set<Path> filesXmlNoDuplicates(BagValidationContext context) throws Exception {
         // list all duplicate entries in files.xml
-        return filesXmlService.readFilepaths(path)
+        return BagArtifacts.getFilesXmlFilepaths(context, filesXmlService).stream()
                 .collect(Collectors.groupingBy(Path::normalize))
                 .entrySet()
                 .stream()
@@ -80,20 +88,21 @@ public class FilesXmlNoDuplicateFilesAndEveryPayloadFileIsDescribed implements B
                 .collect(Collectors.toSet());
     }
 
-    Set<Path> filesXmlDescribesAllPayloadFiles(Path path) throws ParserConfigurationException, IOException, SAXException, XPathExpressionException {
+    Set<Path> filesXmlDescribesAllPayloadFiles(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
         var dataPath = path.resolve("data");
 
         // find all files that exist on disk
-        var bagPaths = fileService.getAllFiles(dataPath)
+        var bagPaths = BagArtifacts.getAllFiles(context, fileService, BagArtifacts.PAYLOAD_DIR)
                 .stream()
-                .map(path::relativize)
+                .map(p -> BagPaths.relativize(path, p))
                 .collect(Collectors.toSet());
 
         log.trace("Paths that exist on path {}: {}", dataPath, bagPaths);
 
-        var bagPathMapping = originalFilepathsService.getMappingsFromOriginalToRenamed(path);
+        var bagPathMapping = BagArtifacts.getMappingsFromOriginalToRenamed(context, originalFilepathsService);
 
-        var xmlPaths = filesXmlService.readFilepaths(path)
+        var xmlPaths = BagArtifacts.getFilesXmlFilepaths(context, filesXmlService).stream()
                 .map(Path::normalize)
                 .map(p -> Optional.ofNullable(bagPathMapping.get(p)).orElse(p))
                 .collect(Collectors.toSet());
@@ -16,9 +16,9 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
-import nl.knaw.dans.validatedansbag.core.service.XmlReader;
 import nl.knaw.dans.validatedansbag.core.service.XmlSchemaValidator;
 
 import java.nio.file.Path;
@@ -27,18 +27,24 @@ import java.nio.file.Path;
 public class OptionalBagFileConformsToXmlSchema extends BagFileConformsToXmlSchema {
     private final FileService fileService;
 
-    public OptionalBagFileConformsToXmlSchema(Path file, XmlReader reader, String schema, XmlSchemaValidator validator, FileService fileService) {
-        super(file, reader, schema, validator);
+    public OptionalBagFileConformsToXmlSchema(Path file, String schema, XmlSchemaValidator validator, FileService fileService) {
+        super(file, schema, validator);
         this.fileService = fileService;
     }
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
-        var fileName = path.resolve(file);
+    public boolean canSkipDependants() {
+        return true;
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+        var fileName = BagPaths.resolve(path, file);
 
         if (fileService.exists(fileName)) {
             log.debug("Validating {} against schema {}", fileName, schema);
-            return super.validate(path);
+            return super.validate(context);
         } else {
             return RuleResult.skipDependencies();
         }
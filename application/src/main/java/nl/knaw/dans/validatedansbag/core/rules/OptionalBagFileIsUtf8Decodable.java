@@ -17,6 +17,7 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 
@@ -31,9 +32,10 @@ public class OptionalBagFileIsUtf8Decodable implements BagValidatorRule {
     private final FileService fileService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
         try {
-            var target = path.resolve(filename);
+            var target = BagPaths.resolve(path, filename);
 
             if (fileService.exists(target)) {
                 fileService.readFileContents(target, StandardCharsets.UTF_8);
@@ -17,6 +17,8 @@ package nl.knaw.dans.validatedansbag.core.rules;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagArtifact;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 import nl.knaw.dans.validatedansbag.core.service.FilesXmlService;
@@ -24,6 +26,7 @@ import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsService;
 import org.apache.commons.collections4.CollectionUtils;
 
 import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @AllArgsConstructor
@@ -34,7 +37,18 @@ public class OptionalOriginalFilePathsIsComplete implements BagValidatorRule {
     private final FilesXmlService filesXmlService;
 
     @Override
-    public RuleResult validate(Path path) throws Exception {
+    public List<BagArtifact<?>> getInputs() {
+        return List.of(
+                BagArtifacts.filesXmlFilepaths(filesXmlService),
+                BagArtifacts.allFiles(fileService, BagArtifacts.PAYLOAD_DIR),
+                BagArtifacts.mappingsFromOriginalToRenamed(originalFilepathsService)
+        );
+    }
+
+    @Override
+    public RuleResult validate(BagValidationContext context) throws Exception {
+        var path = context.getBagDir();
+
         if (!originalFilepathsService.exists(path)) {
             return RuleResult.skipDependencies();
         }
@@ -42,17 +56,17 @@ public class OptionalOriginalFilePathsIsComplete implements BagValidatorRule {
         var mapping = originalFilepathsService.getMapping(path);
 
         // the files defined in metadata/files.xml
-        var fileXmlPaths = filesXmlService.readFilepaths(path)
+        var fileXmlPaths = BagArtifacts.getFilesXmlFilepaths(context, filesXmlService).stream()
                 .collect(Collectors.toSet());
 
         log.trace("Paths in files.xml: {}", fileXmlPaths);
 
         // the files on disk
         var dataPath = path.resolve("data");
-        var actualFiles = fileService.getAllFiles(dataPath)
+        var actualFiles = BagArtifacts.getAllFiles(context, fileService, BagArtifacts.PAYLOAD_DIR)
                 .stream()
                 .filter(i -> !dataPath.equals(i))
-                .map(path::relativize)
+                .map(p -> BagPaths.relativize(path, p))
                 .collect(Collectors.toSet());
 
         log.trace("Paths inside {}: {}", dataPath, fileXmlPaths);
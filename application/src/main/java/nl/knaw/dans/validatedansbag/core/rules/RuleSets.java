@@ -146,7 +146,7 @@ public class RuleSets {
                 // 3 Metadata requirements¶
 
                 // 3.1 metadata/dataset.xml¶
-                new NumberedRule("3.1.1", new BagFileConformsToXmlSchema(datasetPath, xmlReader, "dataset.xml", xmlSchemaValidator), List.of("1.1.1", "2.2(a)")),
+                new NumberedRule("3.1.1", new BagFileConformsToXmlSchema(datasetPath, "dataset.xml", xmlSchemaValidator), List.of("1.1.1", "2.2(a)")),
                 new NumberedRule("3.1.2", new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(xmlReader, licenseValidator), List.of("3.1.1")),
 
                 new NumberedRule("3.1.3(a)", new DatasetXmlDaisAreValid(xmlReader, identifierValidator), List.of("3.1.1")),
@@ -163,7 +163,7 @@ public class RuleSets {
                 new NumberedRule("3.1.10", new DatasetXmlDoesNotHaveRightHolderInAuthorRole(xmlReader), DepositType.DEPOSIT, List.of("3.1.1")),
 
                 // 3.2 metadata/files.xml
-                new NumberedRule("3.2.1", new BagFileConformsToXmlSchema(metadataFilesPath, xmlReader, "files.xml", xmlSchemaValidator), List.of("1.1.1", "2.2(b)")),
+                new NumberedRule("3.2.1", new BagFileConformsToXmlSchema(metadataFilesPath, "files.xml", xmlSchemaValidator), List.of("1.1.1", "2.2(b)")),
                 new NumberedRule("3.2.2", new FilesXmlFilePathAttributesContainLocalBagPathAndNonPayloadFilesAreNotDescribed(fileService, filesXmlService, originalFilepathService), List.of("3.2.1")),
                 new NumberedRule("3.2.3", new FilesXmlNoDuplicateFilesAndEveryPayloadFileIsDescribed(filesXmlService, fileService, originalFilepathService), List.of("3.2.1")),
 
@@ -172,10 +172,10 @@ public class RuleSets {
                 new NumberedRule("3.3.2", new OptionalOriginalFilePathsIsComplete(originalFilepathService, fileService, filesXmlService), List.of("3.3.1")),
 
                 // 3.4 Migration-only metadata¶
-                new NumberedRule("3.4.1-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/depositor-info/agreements.xml"), xmlReader, "agreements.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
-                new NumberedRule("3.4.2-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/amd.xml"), xmlReader, "amd.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
-                new NumberedRule("3.4.3-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/emd.xml"), xmlReader, "emd.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
-                new NumberedRule("3.4.4-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/provenance.xml"), xmlReader, "provenance.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION));
+                new NumberedRule("3.4.1-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/depositor-info/agreements.xml"), "agreements.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
+                new NumberedRule("3.4.2-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/amd.xml"), "amd.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
+                new NumberedRule("3.4.3-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/emd.xml"), "emd.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION),
+                new NumberedRule("3.4.4-MIGRATION", new OptionalBagFileConformsToXmlSchema(Path.of("metadata/provenance.xml"), "provenance.xml", xmlSchemaValidator, fileService), DepositType.MIGRATION));
     }
 
     private List<NumberedRule> getDataStationOnlyRules() {
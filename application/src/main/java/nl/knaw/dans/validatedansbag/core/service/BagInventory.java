@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The files and directories in a bag with their attributes, as found by a single walk of the bag directory. The rules of a validation share one inventory, so that the bag is
+ * only listed once, and look up entries by their path relative to the bag directory or by the directory they are in.
+ */
+public class BagInventory {
+    private final Path root;
+    // by path relative to the root, with '/' as separator; the root itself is ""
+    private final NavigableMap<String, Entry> entries = new TreeMap<>();
+
+    public BagInventory(Path root, Collection<Entry> entries) {
+        this.root = root;
+
+        for (var entry : entries) {
+            this.entries.put(toKey(root.relativize(entry.getPath())), entry);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public Optional<Entry> get(Path relativePath) {
+        return Optional.ofNullable(entries.get(toKey(relativePath)));
+    }
+
+    /**
+     * Returns the regular files in the directory and its subdirectories, as {@link java.nio.file.Files#walk} would find them.
+     *
+     * @param relativeDir the directory, relative to the root
+     * @return the files, as paths that include the root
+     * @throws NoSuchFileException if the directory does not exist
+     */
+    public List<Path> getFiles(Path relativeDir) throws NoSuchFileException {
+        return getEntries(relativeDir).stream()
+            .filter(Entry::isRegularFile)
+            .map(Entry::getPath)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the directory itself and everything in it and its subdirectories, as {@link java.nio.file.Files#walk} would find them.
+     *
+     * @param relativeDir the directory, relative to the root
+     * @return the files and directories, as paths that include the root
+     * @throws NoSuchFileException if the directory does not exist
+     */
+    public List<Path> getFilesAndDirectories(Path relativeDir) throws NoSuchFileException {
+        return getEntries(relativeDir).stream()
+            .map(Entry::getPath)
+            .collect(Collectors.toList());
+    }
+
+    public int getFileCount() {
+        return (int) entries.values().stream().filter(Entry::isRegularFile).count();
+    }
+
+    public long getTotalSize() {
+        return entries.values().stream().filter(Entry::isRegularFile).mapToLong(Entry::getSize).sum();
+    }
+
+    private Collection<Entry> getEntries(Path relativeDir) throws NoSuchFileException {
+        var key = toKey(relativeDir);
+        var dir = entries.get(key);
+
+        if (dir == null) {
+            throw new NoSuchFileException(root.resolve(relativeDir.toString()).toString());
+        }
+
+        if (key.isEmpty()) {
+            return entries.values();
+        }
+
+        var result = new ArrayList<Entry>();
+        result.add(dir);
+        // '0' is the character after '/', so this is everything below the directory
+        result.addAll(entries.subMap(key + "/", true, key + "0", false).values());
+        return result;
+    }
+
+    private static String toKey(Path relativePath) {
+        var key = relativePath.normalize().toString().replace('\\', '/');
+        return key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+    }
+
+    public static class Entry {
+        private final Path path;
+        private final boolean regularFile;
+        private final long size;
+        private final FileTime lastModifiedTime;
+
+        public Entry(Path path, boolean regularFile, long size, FileTime lastModifiedTime) {
+            this.path = path;
+            this.regularFile = regularFile;
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        public Entry(Path path, BasicFileAttributes attributes) {
+            this(path, attributes.isRegularFile(), attributes.size(), attributes.lastModifiedTime());
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public boolean isRegularFile() {
+            return regularFile;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public FileTime getLastModifiedTime() {
+            return lastModifiedTime;
+        }
+    }
+}
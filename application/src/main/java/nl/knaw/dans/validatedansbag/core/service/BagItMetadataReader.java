@@ -17,8 +17,10 @@ package nl.knaw.dans.validatedansbag.core.service;
 
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.domain.Manifest;
+import gov.loc.repository.bagit.domain.Metadata;
 import gov.loc.repository.bagit.exceptions.CorruptChecksumException;
 import gov.loc.repository.bagit.exceptions.FileNotInPayloadDirectoryException;
+import gov.loc.repository.bagit.exceptions.InvalidBagMetadataException;
 import gov.loc.repository.bagit.exceptions.InvalidBagitFileFormatException;
 import gov.loc.repository.bagit.exceptions.MaliciousPathException;
 import gov.loc.repository.bagit.exceptions.MissingBagitFileException;
@@ -38,10 +40,18 @@ public interface BagItMetadataReader {
 
     Optional<Bag> getBag(Path path);
 
-    void verifyBag(Path path) throws MaliciousPathException, UnsupportedAlgorithmException, InvalidBagitFileFormatException, IOException, MissingPayloadManifestException,
+    // only reads bagit.txt and bag-info.txt, so it also works for a bag of which the manifests and the payload have not been written yet
+    Metadata getBagInfo(Path bagDir) throws IOException, UnparsableVersionException, InvalidBagMetadataException, InvalidBagitFileFormatException;
+
+    // with useChecksumCache, checksums from the checksum cache are used for files that have not changed since they were computed
+    void verifyBag(Path path, boolean useChecksumCache) throws MaliciousPathException, UnsupportedAlgorithmException, InvalidBagitFileFormatException, IOException, MissingPayloadManifestException,
         MissingPayloadDirectoryException, FileNotInPayloadDirectoryException, InterruptedException, MissingBagitFileException, CorruptChecksumException, VerificationException,
         UnparsableVersionException;
 
+    // the same as verifyBag(Path, boolean), for a bag that has been read already
+    void verifyBag(Bag bag, boolean useChecksumCache) throws IOException, MissingPayloadManifestException, MissingPayloadDirectoryException, FileNotInPayloadDirectoryException,
+        InterruptedException, MissingBagitFileException, CorruptChecksumException, VerificationException;
+
     List<String> getField(Path bagDir, String field);
 
     String getSingleField(Path bagDir, String field);
@@ -17,8 +17,10 @@ package nl.knaw.dans.validatedansbag.core.service;
 
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.domain.Manifest;
+import gov.loc.repository.bagit.domain.Metadata;
 import gov.loc.repository.bagit.exceptions.CorruptChecksumException;
 import gov.loc.repository.bagit.exceptions.FileNotInPayloadDirectoryException;
+import gov.loc.repository.bagit.exceptions.InvalidBagMetadataException;
 import gov.loc.repository.bagit.exceptions.InvalidBagitFileFormatException;
 import gov.loc.repository.bagit.exceptions.MaliciousPathException;
 import gov.loc.repository.bagit.exceptions.MissingBagitFileException;
@@ -28,6 +30,8 @@ import gov.loc.repository.bagit.exceptions.UnparsableVersionException;
 import gov.loc.repository.bagit.exceptions.UnsupportedAlgorithmException;
 import gov.loc.repository.bagit.exceptions.VerificationException;
 import gov.loc.repository.bagit.reader.BagReader;
+import gov.loc.repository.bagit.reader.BagitTextFileReader;
+import gov.loc.repository.bagit.reader.MetadataReader;
 import gov.loc.repository.bagit.verify.BagVerifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +45,16 @@ import java.util.Set;
 public class BagItMetadataReaderImpl implements BagItMetadataReader {
     private static final Logger log = LoggerFactory.getLogger(BagItMetadataReaderImpl.class);
 
+    private final ChecksumVerifier checksumVerifier;
+
+    public BagItMetadataReaderImpl() {
+        this(new ChecksumVerifier(new ComputedDigests()));
+    }
+
+    public BagItMetadataReaderImpl(ChecksumVerifier checksumVerifier) {
+        this.checksumVerifier = checksumVerifier;
+    }
+
     @Override
     public Optional<Bag> getBag(Path path) {
         try {
@@ -52,22 +66,40 @@ public class BagItMetadataReaderImpl implements BagItMetadataReader {
     }
 
     @Override
-    public void verifyBag(Path path)
+    public Metadata getBagInfo(Path bagDir) throws IOException, UnparsableVersionException, InvalidBagMetadataException, InvalidBagitFileFormatException {
+        // the same steps as BagReader takes for bag-info.txt
+        var encoding = BagitTextFileReader.readBagitTextFile(bagDir.resolve("bagit.txt")).getValue();
+        var metadata = new Metadata();
+        metadata.addAll(MetadataReader.readBagMetadata(bagDir, encoding));
+
+        return metadata;
+    }
+
+    @Override
+    public void verifyBag(Path path, boolean useChecksumCache)
         throws MaliciousPathException, UnsupportedAlgorithmException, InvalidBagitFileFormatException, IOException, MissingPayloadManifestException,
         MissingPayloadDirectoryException, FileNotInPayloadDirectoryException, InterruptedException, MissingBagitFileException, CorruptChecksumException, VerificationException,
         UnparsableVersionException {
 
-        var bag = new BagReader().read(path);
+        verifyBag(new BagReader().read(path), useChecksumCache);
+    }
+
+    @Override
+    public void verifyBag(Bag bag, boolean useChecksumCache) throws IOException, MissingPayloadManifestException, MissingPayloadDirectoryException,
+        FileNotInPayloadDirectoryException, InterruptedException, MissingBagitFileException, CorruptChecksumException, VerificationException {
+
+        var path = bag.getRootDir();
 
         try (var verifier = new BagVerifier()) {
             var ignoreHiddenFiles = false;
 
             log.trace("Verifying bag is complete on path {}", path);
             verifier.isComplete(bag, ignoreHiddenFiles);
-
-            log.trace("Verifying bag is valid on path {}", path);
-            verifier.isValid(bag, ignoreHiddenFiles);
         }
+
+        // the same checks as BagVerifier.isValid, but reading the files in parallel and only once
+        log.trace("Verifying bag is valid on path {}", path);
+        checksumVerifier.verify(bag, useChecksumCache);
     }
 
     @Override
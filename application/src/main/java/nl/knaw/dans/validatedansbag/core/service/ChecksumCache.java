@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Digests of files on local storage that have been computed before, so that a bag that is validated again does not have to be read again. A digest is only used while the size,
+ * modification time and file key (the inode on Unix) of the file are the same as when it was computed. A file that is rewritten in place with content of the same size, within
+ * the granularity of the modification time of the file system, therefore keeps its old digest; clients that cannot rule this out bypass the cache.
+ * <p>
+ * At most a fixed number of files is kept; when more are added, the files that were least recently used are dropped. The cache is kept in a tab-separated file. New digests are
+ * appended to it as they are computed, and the file is rewritten with only the entries that are still in memory when the cache is opened and whenever the appended lines
+ * outnumber them.
+ */
+public class ChecksumCache {
+    private static final Logger log = LoggerFactory.getLogger(ChecksumCache.class);
+
+    static final int DEFAULT_MAX_FILES = 100_000;
+
+    private final Path cacheFile;
+    private final int maxFiles;
+    // in order of use, least recently used first
+    private final Map<Path, Entry> entries;
+    private BufferedWriter writer;
+    // the number of lines in the cache file, and the number at which it is rewritten
+    private long linesInFile;
+    private long compactAt;
+
+    public ChecksumCache(Path cacheFile) {
+        this(cacheFile, DEFAULT_MAX_FILES);
+    }
+
+    /**
+     * @param cacheFile the file in which the cache is kept
+     * @param maxFiles  the maximum number of files to keep digests of
+     */
+    public ChecksumCache(Path cacheFile, int maxFiles) {
+        this.cacheFile = cacheFile;
+        this.maxFiles = maxFiles;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> eldest) {
+                return size() > maxFiles;
+            }
+        });
+    }
+
+    /**
+     * Reads the cache file, drops the entries of files that have changed or no longer exist, or that do not fit in the cache, and opens the file for appending.
+     *
+     * @throws IOException if the cache file could not be read or written
+     */
+    public synchronized void open() throws IOException {
+        if (Files.exists(cacheFile)) {
+            try (var lines = Files.lines(cacheFile, StandardCharsets.UTF_8)) {
+                lines.forEach(this::readLine);
+            }
+        }
+
+        synchronized (entries) {
+            entries.entrySet().removeIf(e -> !e.getValue().matches(readAttributes(e.getKey())));
+        }
+
+        rewrite();
+
+        log.info("Opened checksum cache {} with {} files", cacheFile, entries.size());
+    }
+
+    // replaces the cache file with one that only has the entries in memory; must be called while holding the lock on this cache
+    private void rewrite() throws IOException {
+        var compacted = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        var lines = 0L;
+
+        try (var output = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            List<Map.Entry<Path, Entry>> snapshot;
+
+            synchronized (entries) {
+                snapshot = new ArrayList<>(entries.entrySet());
+            }
+
+            // least recently used first, so that reading the file back keeps the same order
+            for (var entry : snapshot) {
+                for (var digest : entry.getValue().digests.entrySet()) {
+                    output.write(formatLine(entry.getKey(), entry.getValue(), digest.getKey(), digest.getValue()));
+                    ++lines;
+                }
+            }
+        }
+
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+
+        Files.move(compacted, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(cacheFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        linesInFile = lines;
+        // rewriting is linear in the size of the cache, so it is done after at least as many lines have been appended, which keeps the cost per line constant
+        compactAt = Math.max(2 * lines, maxFiles);
+    }
+
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * @param file       the file
+     * @param attributes the current attributes of the file
+     * @param algorithm  the name of the algorithm as used by {@link java.security.MessageDigest}
+     * @return the digest of the file, if it was computed when the file had the same attributes
+     */
+    Optional<String> get(Path file, BasicFileAttributes attributes, String algorithm) {
+        return Optional.ofNullable(entries.get(toKey(file)))
+            .filter(e -> e.matches(attributes))
+            .map(e -> e.digests.get(algorithm));
+    }
+
+    void put(Path file, BasicFileAttributes attributes, String algorithm, String digest) {
+        var key = toKey(file);
+        var entry = entries.compute(key, (k, existing) -> {
+            var updated = existing != null && existing.matches(attributes) ? existing : new Entry(attributes);
+            updated.digests.put(algorithm, digest);
+            return updated;
+        });
+
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+
+            try {
+                writer.write(formatLine(key, entry, algorithm, digest));
+                writer.flush();
+
+                // superseded and evicted entries are still in the file
+                if (++linesInFile >= compactAt) {
+                    rewrite();
+                }
+            }
+            catch (IOException e) {
+                // the digest is still cached in memory, it is only lost on restart
+                log.warn("Unable to write to checksum cache {}", cacheFile, e);
+            }
+        }
+    }
+
+    private Path toKey(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    private BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e) {
+            return null;
+        }
+        catch (IOException e) {
+            log.debug("Unable to read the attributes of {}", file, e);
+            return null;
+        }
+    }
+
+    // path, size, modification time, file key, algorithm, digest
+    private String formatLine(Path file, Entry entry, String algorithm, String digest) {
+        return String.join("\t", escape(file.toString()), Long.toString(entry.size), Long.toString(entry.modified), escape(entry.fileKey), algorithm, digest) + "\n";
+    }
+
+    private void readLine(String line) {
+        var fields = line.split("\t", -1);
+
+        if (fields.length != 6) {
+            log.warn("Ignoring malformed line in checksum cache {}", cacheFile);
+            return;
+        }
+
+        try {
+            var file = Path.of(unescape(fields[0]));
+            var entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), unescape(fields[3]));
+            var existing = entries.get(file);
+
+            // a later line for a file that has changed replaces the earlier ones
+            if (existing != null && existing.size == entry.size && existing.modified == entry.modified && Objects.equals(existing.fileKey, entry.fileKey)) {
+                entry = existing;
+            }
+
+            entry.digests.put(fields[4], fields[5]);
+            entries.put(file, entry);
+        }
+        catch (RuntimeException e) {
+            log.warn("Ignoring malformed line in checksum cache {}", cacheFile);
+        }
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+
+        var result = new StringBuilder(value.length());
+
+        for (var i = 0; i < value.length(); ++i) {
+            var c = value.charAt(i);
+
+            if (c == '\\' && i + 1 < value.length()) {
+                var next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            }
+            else {
+                result.append(c);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final Map<String, String> digests = new ConcurrentHashMap<>();
+
+        Entry(long size, long modified, String fileKey) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+        }
+
+        Entry(BasicFileAttributes attributes) {
+            this(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), Objects.toString(attributes.fileKey(), null));
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return attributes != null
+                && attributes.size() == size
+                && attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == modified
+                && Objects.equals(Objects.toString(attributes.fileKey(), null), fileKey);
+        }
+    }
+}
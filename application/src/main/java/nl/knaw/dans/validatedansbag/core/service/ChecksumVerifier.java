@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import gov.loc.repository.bagit.domain.Bag;
+import gov.loc.repository.bagit.domain.Manifest;
+import gov.loc.repository.bagit.exceptions.CorruptChecksumException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies the checksums in the manifests of a bag. Every file is read once, and what is read is fed to the digests of all manifests that list the file. The files are divided
+ * over a number of workers running on the given executor, largest files first, so that one large file does not end up being verified on its own at the end. Digests that were
+ * computed while the bag was extracted, or found in the {@link ChecksumCache} for a file that has not changed since, are used instead of reading the file.
+ */
+public class ChecksumVerifier {
+    private static final Logger log = LoggerFactory.getLogger(ChecksumVerifier.class);
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+
+    private final ComputedDigests computedDigests;
+    private final ChecksumCache checksumCache;
+    private final Executor executor;
+    private final int parallelism;
+    // direct buffers are expensive to allocate, so every thread keeps its own
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    public ChecksumVerifier(ComputedDigests computedDigests) {
+        this(computedDigests, Runnable::run, 1, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param computedDigests the digests that were computed while the bags were extracted
+     * @param executor        the executor on which the files are read
+     * @param parallelism     the number of files of one bag that are read at the same time
+     * @param bufferSize      the size of the read buffer of each worker
+     */
+    public ChecksumVerifier(ComputedDigests computedDigests, Executor executor, int parallelism, int bufferSize) {
+        this(computedDigests, null, executor, parallelism, bufferSize);
+    }
+
+    /**
+     * @param computedDigests the digests that were computed while the bags were extracted
+     * @param checksumCache   the digests computed in earlier validations, or null to not use a cache
+     * @param executor        the executor on which the files are read
+     * @param parallelism     the number of files of one bag that are read at the same time
+     * @param bufferSize      the size of the read buffer of each worker
+     */
+    public ChecksumVerifier(ComputedDigests computedDigests, ChecksumCache checksumCache, Executor executor, int parallelism, int bufferSize) {
+        this.computedDigests = computedDigests;
+        this.checksumCache = checksumCache;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    /**
+     * Verifies the checksums of all files in the payload and tag manifests of the bag.
+     *
+     * @param bag      the bag
+     * @param useCache whether digests from the checksum cache may be used, and new digests stored in it
+     * @throws CorruptChecksumException if a file does not have the checksum listed in a manifest
+     * @throws IOException              if a file could not be read
+     * @throws InterruptedException     if the verification was interrupted
+     */
+    public void verify(Bag bag, boolean useCache) throws CorruptChecksumException, IOException, InterruptedException {
+        var cache = useCache ? checksumCache : null;
+        var checks = getFileChecks(bag);
+        var queue = new ConcurrentLinkedQueue<>(checks);
+        var totalBytes = checks.stream().mapToLong(c -> c.size).sum();
+        var verifiedBytes = new AtomicLong();
+        var workers = new ArrayList<FutureTask<Void>>();
+        var start = System.nanoTime();
+
+        for (var i = 0; i < Math.min(parallelism, checks.size()); ++i) {
+            var worker = new FutureTask<Void>(() -> {
+                verifyFiles(queue, verifiedBytes, cache);
+                return null;
+            });
+
+            workers.add(worker);
+            executor.execute(worker);
+        }
+
+        try {
+            for (var worker : workers) {
+                waitForWorker(worker, verifiedBytes, totalBytes);
+            }
+        }
+        finally {
+            // stops the other workers when one of them has found a problem
+            queue.clear();
+            workers.forEach(w -> w.cancel(true));
+        }
+
+        log.debug("Verified {} files ({} bytes) in {} ms", checks.size(), totalBytes, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void waitForWorker(FutureTask<Void> worker, AtomicLong verifiedBytes, long totalBytes) throws CorruptChecksumException, IOException, InterruptedException {
+        while (true) {
+            try {
+                worker.get(PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+                return;
+            }
+            catch (TimeoutException e) {
+                log.info("Verified {} of {} bytes", verifiedBytes.get(), totalBytes);
+            }
+            catch (ExecutionException e) {
+                var cause = e.getCause();
+
+                if (cause instanceof CorruptChecksumException) {
+                    throw (CorruptChecksumException) cause;
+                }
+
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private void verifyFiles(Queue<FileCheck> queue, AtomicLong verifiedBytes, ChecksumCache cache) throws CorruptChecksumException, IOException {
+        try {
+            for (var check = queue.poll(); check != null; check = queue.poll()) {
+                verifyFile(check, verifiedBytes, cache);
+            }
+        }
+        catch (CorruptChecksumException | IOException | RuntimeException e) {
+            // the other workers finish the file they are reading and then stop
+            queue.clear();
+            throw e;
+        }
+    }
+
+    private void verifyFile(FileCheck check, AtomicLong verifiedBytes, ChecksumCache cache) throws CorruptChecksumException, IOException {
+        // read before the file, so that a change while it is being read invalidates the digest that is cached
+        var attributes = cache == null ? null : Files.readAttributes(check.file, BasicFileAttributes.class);
+        // the algorithms without a digest computed during extraction or in an earlier validation
+        var digests = new ArrayList<MessageDigest>();
+
+        for (var entry : check.expected.entrySet()) {
+            var computed = computedDigests.get(check.file, entry.getKey());
+
+            if (computed.isEmpty() && cache != null) {
+                computed = cache.get(check.file, attributes, entry.getKey());
+            }
+
+            if (computed.isPresent()) {
+                compare(check.file, entry.getKey(), entry.getValue(), computed.get());
+            }
+            else {
+                digests.add(getMessageDigest(entry.getKey()));
+            }
+        }
+
+        if (digests.isEmpty()) {
+            verifiedBytes.addAndGet(check.size);
+            return;
+        }
+
+        var buffer = buffers.get();
+
+        try (var channel = Files.newByteChannel(check.file)) {
+            buffer.clear();
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+
+                for (var digest : digests) {
+                    buffer.mark();
+                    digest.update(buffer);
+                    buffer.reset();
+                }
+
+                verifiedBytes.addAndGet(buffer.remaining());
+                buffer.clear();
+            }
+        }
+
+        for (var digest : digests) {
+            var actual = FileServiceImpl.toHex(digest.digest());
+
+            if (cache != null) {
+                cache.put(check.file, attributes, digest.getAlgorithm(), actual);
+            }
+
+            compare(check.file, digest.getAlgorithm(), check.expected.get(digest.getAlgorithm()), actual);
+        }
+    }
+
+    private void compare(Path file, String algorithm, String expected, String actual) throws CorruptChecksumException {
+        if (!actual.equalsIgnoreCase(expected)) {
+            throw new CorruptChecksumException(String.format(
+                "File [%s] is suppose to have a [%s] hash of [%s] but was computed [%s].", file, algorithm, expected, actual
+            ));
+        }
+    }
+
+    private MessageDigest getMessageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Digest algorithm not available: " + algorithm, e);
+        }
+    }
+
+    // the checksums of every file in the manifests, by algorithm, largest files first
+    private List<FileCheck> getFileChecks(Bag bag) throws IOException {
+        var expected = new LinkedHashMap<Path, Map<String, String>>();
+        var manifests = new ArrayList<Manifest>(bag.getPayLoadManifests());
+        manifests.addAll(bag.getTagManifests());
+
+        for (var manifest : manifests) {
+            var algorithm = manifest.getAlgorithm().getMessageDigestName();
+
+            for (var entry : manifest.getFileToChecksumMap().entrySet()) {
+                expected.computeIfAbsent(entry.getKey(), f -> new HashMap<>()).put(algorithm, entry.getValue());
+            }
+        }
+
+        var checks = new ArrayList<FileCheck>();
+
+        for (var entry : expected.entrySet()) {
+            checks.add(new FileCheck(entry.getKey(), Files.size(entry.getKey()), entry.getValue()));
+        }
+
+        checks.sort(Comparator.comparingLong((FileCheck c) -> c.size).reversed());
+        return checks;
+    }
+
+    private static class FileCheck {
+        private final Path file;
+        private final long size;
+        private final Map<String, String> expected;
+
+        FileCheck(Path file, long size, Map<String, String> expected) {
+            this.file = file;
+            this.size = size;
+            this.expected = expected;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Digests of files that were computed while the files were written, so that verifying the manifests does not have to read them again. The digests are kept per temporary
+ * directory that a bag was extracted to, so that they can be dropped all at once when that directory is deleted, and are keyed by the normalized path of the file and the
+ * name of the algorithm as used by {@link java.security.MessageDigest}.
+ */
+public class ComputedDigests {
+
+    private final Map<Path, Map<Path, Map<String, String>>> digestsByRoot = new ConcurrentHashMap<>();
+
+    void put(Path root, Path file, Map<String, String> fileDigests) {
+        digestsByRoot.computeIfAbsent(root.normalize(), r -> new ConcurrentHashMap<>())
+            .put(file.normalize(), Map.copyOf(fileDigests));
+    }
+
+    // there are only as many roots as bags that are being validated, so finding the one of the file is cheap
+    Optional<String> get(Path file, String algorithm) {
+        var normalized = file.normalize();
+
+        for (var entry : digestsByRoot.entrySet()) {
+            if (normalized.startsWith(entry.getKey())) {
+                return Optional.ofNullable(entry.getValue().get(normalized))
+                    .map(d -> d.get(algorithm));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    // forgets the digests of all files that were extracted to the directory
+    void removeAll(Path root) {
+        digestsByRoot.remove(root.normalize());
+    }
+}
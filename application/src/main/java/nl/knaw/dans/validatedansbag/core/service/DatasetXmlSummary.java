@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the dataset.xml rules look at, collected in one pass over the file by {@link XmlReader#readDatasetXmlSummary(java.nio.file.Path)}. The values are in document order,
+ * as the XPath expressions that the rules used to evaluate would return them, and the text of an element includes the text of its descendants. The lists must not be modified.
+ */
+@Getter
+public class DatasetXmlSummary {
+
+    // an element with the text that was found in it, and the attributes by which the rules select it
+    @Value
+    public static class TypedElement {
+        String xsiType;
+        String scheme;
+        String text;
+    }
+
+    // a gml:pos in a gml:Point, or a gml:lowerCorner or gml:upperCorner
+    @Value
+    public static class Point {
+        String localName;
+        String text;
+        // the srsName attribute of the parent element
+        String srsName;
+    }
+
+    // namespace URI to the prefix declared for it on the root element, as Document.lookupPrefix would return it
+    private final Map<String, String> rootPrefixes = new HashMap<>();
+
+    // //dcx-dai:DAI, //dcx-dai:ISNI and //dcx-dai:ORCID
+    private final List<String> dais = new ArrayList<>();
+    private final List<String> isnis = new ArrayList<>();
+    private final List<String> orcids = new ArrayList<>();
+
+    // //dcx-dai:author/dcx-dai:role
+    private final List<String> authorRoles = new ArrayList<>();
+
+    // //dcx-gml:spatial//gml:posList
+    private final List<String> spatialPosLists = new ArrayList<>();
+
+    // //gml:Point/gml:pos | //gml:lowerCorner | //gml:upperCorner
+    private final List<Point> points = new ArrayList<>();
+
+    // for every //gml:MultiSurface, the values of .//gml:Polygon/@srsName
+    private final List<Set<String>> multiSurfaceSrsNames = new ArrayList<>();
+
+    // /ddm:DDM/ddm:dcmiMetadata/dcterms:identifier and /ddm:DDM/ddm:dcmiMetadata/dcterms:license, with their xsi:type
+    private final List<TypedElement> identifiers = new ArrayList<>();
+    private final List<TypedElement> licenses = new ArrayList<>();
+
+    // /ddm:DDM/ddm:dcmiMetadata//dcterms:rightsHolder
+    private final List<String> rightsHolders = new ArrayList<>();
+
+    // /ddm:DDM/ddm:profile/ddm:available
+    private final List<String> available = new ArrayList<>();
+
+    // //*/@href, //ddm:subject/@schemeURI and //ddm:subject/@valueURI
+    private final List<String> hrefs = new ArrayList<>();
+    private final List<String> subjectSchemeUris = new ArrayList<>();
+    private final List<String> subjectValueUris = new ArrayList<>();
+
+    // the elements with an xsi:type or scheme attribute of dcterms:URI, dcterms:URL, URI or URL
+    private final List<TypedElement> uriElements = new ArrayList<>();
+
+    DatasetXmlSummary() {
+    }
+
+    // the prefix that the document uses for the namespace, or null if the root element does not declare it
+    public String lookupPrefix(String namespaceUri) {
+        return rootPrefixes.get(namespaceUri);
+    }
+}
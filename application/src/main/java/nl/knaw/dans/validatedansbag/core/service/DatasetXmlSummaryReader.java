@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_DCTERMS;
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_DCX_DAI;
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_DCX_GML;
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_DDM;
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_OPEN_GIS;
+import static nl.knaw.dans.validatedansbag.core.service.XmlReader.NAMESPACE_XSI;
+
+/**
+ * Builds a {@link DatasetXmlSummary} with a single StAX pass over dataset.xml. Elements whose text is needed get a slot in their list when they start, so that the values stay in
+ * document order, and the slot is filled when they end.
+ */
+class DatasetXmlSummaryReader {
+    private static final QName DDM = new QName(NAMESPACE_DDM, "DDM");
+    private static final QName DCMI_METADATA = new QName(NAMESPACE_DDM, "dcmiMetadata");
+    private static final QName PROFILE = new QName(NAMESPACE_DDM, "profile");
+    private static final Set<String> URI_TYPES = Set.of("dcterms:URI", "dcterms:URL", "URI", "URL");
+
+    // a factory is not guaranteed to be thread-safe
+    private static final ThreadLocal<XMLInputFactory> factory = ThreadLocal.withInitial(DatasetXmlSummaryReader::newFactory);
+
+    private final DatasetXmlSummary summary = new DatasetXmlSummary();
+    private final List<Element> path = new ArrayList<>();
+    private final List<Set<String>> openMultiSurfaces = new ArrayList<>();
+    private int openSpatials;
+
+    private static class Element {
+        private final QName name;
+        private final String srsName;
+        private StringBuilder text;
+        private List<Consumer<String>> captures;
+        private boolean multiSurface;
+        private boolean spatial;
+
+        private Element(QName name, String srsName) {
+            this.name = name;
+            this.srsName = srsName;
+        }
+
+        private void capture(Consumer<String> capture) {
+            if (captures == null) {
+                text = new StringBuilder();
+                captures = new ArrayList<>();
+            }
+
+            captures.add(capture);
+        }
+    }
+
+    private static XMLInputFactory newFactory() {
+        var factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    static DatasetXmlSummary read(InputStream input, String systemId) throws XMLStreamException {
+        return new DatasetXmlSummaryReader().read(factory.get().createXMLStreamReader(systemId, input));
+    }
+
+    static DatasetXmlSummary read(Reader input) throws XMLStreamException {
+        return new DatasetXmlSummaryReader().read(factory.get().createXMLStreamReader(input));
+    }
+
+    private DatasetXmlSummary read(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        startElement(reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        characters(reader);
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            return summary;
+        }
+        finally {
+            reader.close();
+        }
+    }
+
+    private void startElement(XMLStreamReader reader) {
+        var name = reader.getName();
+        var parent = path.isEmpty() ? null : path.get(path.size() - 1);
+        var element = new Element(name, attribute(reader, XMLConstants.NULL_NS_URI, "srsName"));
+        path.add(element);
+
+        if (parent == null) {
+            for (var i = 0; i < reader.getNamespaceCount(); ++i) {
+                var prefix = reader.getNamespacePrefix(i);
+
+                if (prefix != null && !prefix.isEmpty()) {
+                    summary.getRootPrefixes().putIfAbsent(reader.getNamespaceURI(i), prefix);
+                }
+            }
+
+            if (!name.getPrefix().isEmpty()) {
+                summary.getRootPrefixes().put(name.getNamespaceURI(), name.getPrefix());
+            }
+        }
+
+        addAttributes(reader, element, parent);
+
+        switch (name.getNamespaceURI()) {
+            case NAMESPACE_DCX_DAI:
+                startDaiElement(element, parent);
+                break;
+            case NAMESPACE_OPEN_GIS:
+                startGmlElement(element, parent);
+                break;
+            case NAMESPACE_DCX_GML:
+                if (name.getLocalPart().equals("spatial")) {
+                    element.spatial = true;
+                    ++openSpatials;
+                }
+                break;
+            default:
+                break;
+        }
+
+        startDdmPathElement(reader, element);
+    }
+
+    private void addAttributes(XMLStreamReader reader, Element element, Element parent) {
+        var href = attribute(reader, XMLConstants.NULL_NS_URI, "href");
+
+        if (href != null) {
+            summary.getHrefs().add(href);
+        }
+
+        if (element.name.getNamespaceURI().equals(NAMESPACE_DDM) && element.name.getLocalPart().equals("subject")) {
+            var schemeUri = attribute(reader, XMLConstants.NULL_NS_URI, "schemeURI");
+            var valueUri = attribute(reader, XMLConstants.NULL_NS_URI, "valueURI");
+
+            if (schemeUri != null) {
+                summary.getSubjectSchemeUris().add(schemeUri);
+            }
+
+            if (valueUri != null) {
+                summary.getSubjectValueUris().add(valueUri);
+            }
+        }
+
+        var xsiType = attribute(reader, NAMESPACE_XSI, "type");
+        var scheme = attribute(reader, XMLConstants.NULL_NS_URI, "scheme");
+
+        // an immutable set does not accept null in contains
+        if ((xsiType != null && URI_TYPES.contains(xsiType)) || (scheme != null && URI_TYPES.contains(scheme))) {
+            captureInto(element, summary.getUriElements(), text -> new DatasetXmlSummary.TypedElement(xsiType, scheme, text));
+        }
+    }
+
+    private void startDaiElement(Element element, Element parent) {
+        switch (element.name.getLocalPart()) {
+            case "DAI":
+                captureInto(element, summary.getDais(), text -> text);
+                break;
+            case "ISNI":
+                captureInto(element, summary.getIsnis(), text -> text);
+                break;
+            case "ORCID":
+                captureInto(element, summary.getOrcids(), text -> text);
+                break;
+            case "role":
+                if (parent != null && parent.name.equals(new QName(NAMESPACE_DCX_DAI, "author"))) {
+                    captureInto(element, summary.getAuthorRoles(), text -> text);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startGmlElement(Element element, Element parent) {
+        var localName = element.name.getLocalPart();
+        var parentSrsName = parent != null ? parent.srsName : null;
+
+        switch (localName) {
+            case "posList":
+                if (openSpatials > 0) {
+                    captureInto(element, summary.getSpatialPosLists(), text -> text);
+                }
+                break;
+            case "pos":
+                if (parent != null && parent.name.equals(new QName(NAMESPACE_OPEN_GIS, "Point"))) {
+                    captureInto(element, summary.getPoints(), text -> new DatasetXmlSummary.Point(localName, text, parentSrsName));
+                }
+                break;
+            case "lowerCorner":
+            case "upperCorner":
+                captureInto(element, summary.getPoints(), text -> new DatasetXmlSummary.Point(localName, text, parentSrsName));
+                break;
+            case "MultiSurface":
+                var srsNames = new HashSet<String>();
+                summary.getMultiSurfaceSrsNames().add(srsNames);
+                openMultiSurfaces.add(srsNames);
+                element.multiSurface = true;
+                break;
+            case "Polygon":
+                if (element.srsName != null) {
+                    // a polygon belongs to every multi surface it is in
+                    openMultiSurfaces.forEach(s -> s.add(element.srsName));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // the elements that are selected by an absolute path from the root
+    private void startDdmPathElement(XMLStreamReader reader, Element element) {
+        if (path.size() < 3 || !path.get(0).name.equals(DDM)) {
+            return;
+        }
+
+        var section = path.get(1).name;
+
+        if (section.equals(DCMI_METADATA) && element.name.getNamespaceURI().equals(NAMESPACE_DCTERMS)) {
+            var xsiType = attribute(reader, NAMESPACE_XSI, "type");
+
+            if (element.name.getLocalPart().equals("rightsHolder")) {
+                captureInto(element, summary.getRightsHolders(), text -> text);
+            }
+            else if (path.size() == 3 && element.name.getLocalPart().equals("identifier")) {
+                captureInto(element, summary.getIdentifiers(), text -> new DatasetXmlSummary.TypedElement(xsiType, null, text));
+            }
+            else if (path.size() == 3 && element.name.getLocalPart().equals("license")) {
+                captureInto(element, summary.getLicenses(), text -> new DatasetXmlSummary.TypedElement(xsiType, null, text));
+            }
+        }
+        else if (section.equals(PROFILE) && path.size() == 3 && element.name.equals(new QName(NAMESPACE_DDM, "available"))) {
+            captureInto(element, summary.getAvailable(), text -> text);
+        }
+    }
+
+    // reserves the position of the element in the list, and fills it with the text of the element when it ends
+    private <T> void captureInto(Element element, List<T> list, Function<String, T> toValue) {
+        var index = list.size();
+        list.add(null);
+        element.capture(text -> list.set(index, toValue.apply(text)));
+    }
+
+    private void characters(XMLStreamReader reader) {
+        for (var element : path) {
+            if (element.text != null) {
+                element.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+    }
+
+    private void endElement() {
+        var element = path.remove(path.size() - 1);
+
+        if (element.captures != null) {
+            var text = element.text.toString();
+            element.captures.forEach(c -> c.accept(text));
+        }
+
+        if (element.multiSurface) {
+            openMultiSurfaces.remove(openMultiSurfaces.size() - 1);
+        }
+
+        if (element.spatial) {
+            --openSpatials;
+        }
+    }
+
+    private static String attribute(XMLStreamReader reader, String namespaceUri, String localName) {
+        for (var i = 0; i < reader.getAttributeCount(); ++i) {
+            var namespace = reader.getAttributeNamespace(i);
+
+            if ((namespace == null ? XMLConstants.NULL_NS_URI : namespace).equals(namespaceUri) && reader.getAttributeLocalName(i).equals(localName)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+
+        return null;
+    }
+}
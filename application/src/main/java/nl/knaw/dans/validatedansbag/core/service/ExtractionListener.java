@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import java.nio.file.Path;
+
+// told about every file that has been extracted from an uploaded zip, in the order of the zip, as soon as the file has been written completely
+@FunctionalInterface
+public interface ExtractionListener {
+    void fileExtracted(Path root, Path file);
+
+    // checked while the zip is being read; once true, the rest of the upload is not read and the extraction fails with an ExtractionCancelledException
+    default boolean isExtractionCancelled() {
+        return false;
+    }
+}
@@ -33,6 +33,9 @@ public interface FileService {
 
     List<Path> getAllFilesAndDirectories(Path path) throws IOException;
 
+    // everything in the directory and its subdirectories, with the attributes, listed in one walk
+    BagInventory getInventory(Path path) throws IOException;
+
     byte[] readFileContents(Path path) throws IOException;
 
     boolean exists(Path path);
@@ -42,6 +45,22 @@ public interface FileService {
 
     Path extractZipFile(InputStream inputStream) throws IOException;
 
+    // the root of the contents of the zip, either extracted or read in place through a zip file system, depending on the configuration
+    Path openZipFile(InputStream inputStream) throws IOException;
+
+    // the same, telling the listener about the files while the zip is being extracted; the zip is then extracted while it is read, also when more than one extraction thread is
+    // configured, and a zip that is read in place has no files to report
+    Path openZipFile(InputStream inputStream, ExtractionListener listener) throws IOException;
+
+    // whether the path is a .zip, .tar, .tar.gz or .tgz file
+    boolean isArchive(Path path);
+
+    // the root of the contents of an archive that is already on disk; a zip is read in place, a tar is read once as a stream; closeZipFile leaves the archive itself alone
+    Path openArchive(Path archive) throws IOException;
+
+    // removes everything that was written to disk for a zip opened with openZipFile, or an archive opened with openArchive
+    void closeZipFile(Path path) throws IOException;
+
     void deleteDirectoryAndContents(Path path) throws IOException;
 
     Optional<Path> getFirstDirectory(Path path) throws IOException;
@@ -15,23 +15,119 @@
  */
 package nl.knaw.dans.validatedansbag.core.service;
 
+import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import nl.knaw.dans.validatedansbag.core.ExtractionCancelledException;
 import org.apache.commons.io.FileUtils;
 
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 public class FileServiceImpl implements FileService {
 
+    // matches the names of payload and tag manifests, capturing the algorithm
+    private static final Pattern MANIFEST_NAME = Pattern.compile("(?:^|/)(?:tag)?manifest-([a-z0-9]+)\\.txt$");
+
+    // the number of entries that are put in one batch when a zip is extracted in parallel
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final boolean validateZipFilesInPlace;
+    private final ComputedDigests computedDigests;
+    private final List<String> digestAlgorithms;
+    private final Executor extractionExecutor;
+    private final int extractionThreads;
+    private final TempDirectoryReaper tempDirectoryReaper;
+
+    // the spooled uploads behind the zip file systems that are open
+    private final Map<FileSystem, Path> spoolFiles = new ConcurrentHashMap<>();
+
+    public FileServiceImpl() {
+        this(false);
+    }
+
+    /**
+     * @param validateZipFilesInPlace whether {@link #openZipFile(InputStream)} reads uploaded zips through a zip file system instead of extracting them
+     */
+    public FileServiceImpl(boolean validateZipFilesInPlace) {
+        this(validateZipFilesInPlace, new ComputedDigests(), List.of());
+    }
+
+    /**
+     * @param validateZipFilesInPlace whether {@link #openZipFile(InputStream)} reads uploaded zips through a zip file system instead of extracting them
+     * @param computedDigests         where the digests computed while extracting zips are stored
+     * @param digestAlgorithms        the algorithms (by their BagIt names) for which digests are computed while extracting, in addition to those of the manifests that
+     *                                have already been extracted
+     */
+    public FileServiceImpl(boolean validateZipFilesInPlace, ComputedDigests computedDigests, Collection<String> digestAlgorithms) {
+        this(validateZipFilesInPlace, computedDigests, digestAlgorithms, Runnable::run, 1, new TempDirectoryReaper());
+    }
+
+    /**
+     * @param validateZipFilesInPlace whether {@link #openZipFile(InputStream)} reads uploaded zips through a zip file system instead of extracting them
+     * @param computedDigests         where the digests computed while extracting zips are stored
+     * @param digestAlgorithms        the algorithms (by their BagIt names) for which digests are computed while extracting, in addition to those of the manifests that
+     *                                have already been extracted
+     * @param extractionExecutor      the executor on which the entries of zips that are on disk are extracted
+     * @param extractionThreads       the maximum number of entries of one zip that are extracted at the same time; if more than 1, uploads are written to disk first and
+     *                                then extracted in parallel, instead of being extracted while they are read
+     * @param tempDirectoryReaper     creates the temporary files and directories for uploads and archives, and deletes them when they are closed
+     */
+    public FileServiceImpl(boolean validateZipFilesInPlace, ComputedDigests computedDigests, Collection<String> digestAlgorithms, Executor extractionExecutor,
+        int extractionThreads, TempDirectoryReaper tempDirectoryReaper) {
+        this.validateZipFilesInPlace = validateZipFilesInPlace;
+        this.computedDigests = computedDigests;
+        this.digestAlgorithms = digestAlgorithms.stream()
+            .map(FileServiceImpl::toMessageDigestName)
+            .flatMap(Optional::stream)
+            .collect(Collectors.toList());
+        this.extractionExecutor = extractionExecutor;
+        this.extractionThreads = extractionThreads;
+        this.tempDirectoryReaper = tempDirectoryReaper;
+    }
+
     @Override
     public boolean isDirectory(Path path) {
         return Files.exists(path) && Files.isDirectory(path);
@@ -56,6 +152,28 @@ public class FileServiceImpl implements FileService {
         }
     }
 
+    @Override
+    public BagInventory getInventory(Path path) throws IOException {
+        var entries = new ArrayList<BagInventory.Entry>();
+
+        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                entries.add(new BagInventory.Entry(dir, attrs));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                entries.add(new BagInventory.Entry(file, attrs));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return new BagInventory(path, entries);
+    }
+
     @Override
     public byte[] readFileContents(Path path) throws IOException {
         return Files.readAllBytes(path);
@@ -79,28 +197,310 @@ public class FileServiceImpl implements FileService {
 
     @Override
     public Path extractZipFile(InputStream inputStream) throws IOException {
-        var tempPath = Files.createTempDirectory("bag-");
+        return extractZipFile(inputStream, (root, file) -> {
+        });
+    }
 
-        try (var input = new ZipInputStream(inputStream)) {
+    Path extractZipFile(InputStream inputStream, ExtractionListener listener) throws IOException {
+        var tempPath = tempDirectoryReaper.createTempDirectory("bag-");
+        // the payload is digested while it is written, for the algorithms of the manifests that have been seen so far
+        var algorithms = new LinkedHashSet<>(digestAlgorithms);
+
+        try (var input = new ZipInputStream(new CancellableInputStream(inputStream, listener))) {
             var entry = input.getNextEntry();
 
             while (entry != null) {
-                var targetPath = tempPath.resolve(entry.getName());
+                var targetPath = resolveEntry(tempPath, entry.getName());
 
                 if (entry.isDirectory()) {
                     Files.createDirectories(targetPath);
                 }
                 else {
-                    writeStreamToFile(input, targetPath);
+                    getManifestAlgorithm(entry.getName()).ifPresent(algorithms::add);
+                    computedDigests.put(tempPath, targetPath, writeStreamToFile(input, targetPath, algorithms));
+                    listener.fileExtracted(tempPath, targetPath);
                 }
 
                 entry = input.getNextEntry();
             }
         }
+        catch (IOException | RuntimeException e) {
+            computedDigests.removeAll(tempPath);
+            // the caller never gets to see the directory, so it cannot clean it up
+            tempDirectoryReaper.delete(tempPath);
+            throw e;
+        }
+
+        return tempPath;
+    }
+
+    @Override
+    public Path openZipFile(InputStream inputStream) throws IOException {
+        if (validateZipFilesInPlace || extractionThreads <= 1) {
+            return openZipFile(inputStream, (root, file) -> {
+            });
+        }
+
+        var spoolFile = tempDirectoryReaper.createTempFile("bag-", ".zip");
+
+        try {
+            Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            return extractZipFile(spoolFile, (root, file) -> {
+            });
+        }
+        finally {
+            tempDirectoryReaper.delete(spoolFile);
+        }
+    }
+
+    // the listener is meant to hear about the files while the upload is still arriving, which a parallel extraction cannot do, as it needs the whole zip on disk first; the zip
+    // is therefore always extracted while it is read, whatever the number of extraction threads
+    @Override
+    public Path openZipFile(InputStream inputStream, ExtractionListener listener) throws IOException {
+        if (!validateZipFilesInPlace) {
+            return extractZipFile(inputStream, listener);
+        }
+
+        var spoolFile = tempDirectoryReaper.createTempFile("bag-", ".zip");
+
+        try {
+            Files.copy(inputStream, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+
+            var fileSystem = openZipFileSystem(spoolFile);
+            spoolFiles.put(fileSystem, spoolFile);
+
+            return fileSystem.getPath("/");
+        }
+        catch (IOException | RuntimeException e) {
+            tempDirectoryReaper.delete(spoolFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isArchive(Path path) {
+        var fileName = path.getFileName();
+
+        if (fileName == null) {
+            return false;
+        }
+
+        var name = fileName.toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(".zip") || isTarFile(name)) && isFile(path);
+    }
+
+    @Override
+    public Path openArchive(Path archive) throws IOException {
+        var name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+
+        if (!isTarFile(name)) {
+            return openZipFileSystem(archive).getPath("/");
+        }
+
+        try (var input = Files.newInputStream(archive)) {
+            return extractTarFile(name.endsWith(".tar") ? input : new GZIPInputStream(input, 64 * 1024));
+        }
+    }
+
+    // opened through the provider, like FileSystems.newFileSystem(Path, ClassLoader) does, so that the same archive can be opened by several validations at the same time; the
+    // zip must not be modified, also not when the file system is closed, so every write is refused
+    private static FileSystem openZipFileSystem(Path zip) throws IOException {
+        for (var provider : FileSystemProvider.installedProviders()) {
+            if ("jar".equalsIgnoreCase(provider.getScheme())) {
+                return new ReadOnlyFileSystem(provider.newFileSystem(zip, Map.of()));
+            }
+        }
+
+        throw new ProviderNotFoundException("No provider for zip file systems");
+    }
+
+    private static boolean isTarFile(String name) {
+        return name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    /**
+     * Extracts a tar stream. A tar has no central directory to read individual entries from, and a compressed one cannot be read at random, so the archive is read once, from
+     * start to end, and the files are digested while they are written, as for an uploaded zip.
+     */
+    Path extractTarFile(InputStream inputStream) throws IOException {
+        var tempPath = tempDirectoryReaper.createTempDirectory("bag-");
+        var algorithms = new LinkedHashSet<>(digestAlgorithms);
+
+        try {
+            var reader = new TarReader(inputStream);
+
+            for (var entry = reader.next(); entry != null; entry = reader.next()) {
+                var targetPath = resolveEntry(tempPath, entry.getName());
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(targetPath);
+                }
+                else {
+                    getManifestAlgorithm(entry.getName()).ifPresent(algorithms::add);
+                    computedDigests.put(tempPath, targetPath, writeStreamToFile(reader.getInputStream(), targetPath, algorithms));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            computedDigests.removeAll(tempPath);
+            tempDirectoryReaper.delete(tempPath);
+            throw e;
+        }
+
+        return tempPath;
+    }
+
+    @Override
+    public void closeZipFile(Path path) throws IOException {
+        if (path.getFileSystem().equals(FileSystems.getDefault())) {
+            computedDigests.removeAll(path);
+            // in the background, as there may be many files
+            tempDirectoryReaper.delete(path);
+            return;
+        }
+
+        // only uploads have a spool file; an archive that was already on disk is left where it is
+        var spoolFile = spoolFiles.remove(path.getFileSystem());
+
+        try {
+            path.getFileSystem().close();
+        }
+        finally {
+            if (spoolFile != null) {
+                tempDirectoryReaper.delete(spoolFile);
+            }
+        }
+    }
+
+    /**
+     * Extracts a zip that is on disk, inflating entries in parallel on the extraction executor. The directories are created first, and the files are handed to the threads in
+     * batches of files in the same directory, largest batches first. The listener is told about every file as soon as it has been written, but never by two threads at the same
+     * time.
+     */
+    Path extractZipFile(Path zipFile, ExtractionListener listener) throws IOException {
+        var tempPath = tempDirectoryReaper.createTempDirectory("bag-");
+
+        try (var zip = new ZipFile(zipFile.toFile())) {
+            // the central directory lists all manifests up front, so every file is digested for the algorithms of all of them
+            var algorithms = new LinkedHashSet<>(digestAlgorithms);
+            var directories = new TreeSet<Path>();
+            var filesByDirectory = new LinkedHashMap<Path, List<ZipEntry>>();
+
+            // every entry is checked before anything is created, so that no directory is made outside of the temporary directory either
+            for (var entry : Collections.list(zip.entries())) {
+                var targetPath = resolveEntry(tempPath, entry.getName());
+
+                if (entry.isDirectory()) {
+                    directories.add(targetPath);
+                }
+                else {
+                    getManifestAlgorithm(entry.getName()).ifPresent(algorithms::add);
+                    directories.add(targetPath.getParent());
+                    filesByDirectory.computeIfAbsent(targetPath.getParent(), d -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            for (var directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            var batches = new ConcurrentLinkedQueue<>(toBatches(filesByDirectory.values()));
+            var workers = new ArrayList<FutureTask<Void>>();
+
+            for (var i = 0; i < Math.min(extractionThreads, batches.size()); ++i) {
+                var worker = new FutureTask<Void>(() -> {
+                    extractEntries(zip, tempPath, batches, algorithms, listener);
+                    return null;
+                });
+
+                workers.add(worker);
+                extractionExecutor.execute(worker);
+            }
+
+            try {
+                for (var worker : workers) {
+                    waitForWorker(worker);
+                }
+            }
+            finally {
+                // stops the other workers when one of them has failed
+                batches.clear();
+                workers.forEach(w -> w.cancel(true));
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            computedDigests.removeAll(tempPath);
+            tempDirectoryReaper.delete(tempPath);
+            throw e;
+        }
 
         return tempPath;
     }
 
+    private void extractEntries(ZipFile zip, Path tempPath, Queue<List<ZipEntry>> batches, Collection<String> algorithms, ExtractionListener listener) throws IOException {
+        try {
+            for (var batch = batches.poll(); batch != null; batch = batches.poll()) {
+                for (var entry : batch) {
+                    if (listener.isExtractionCancelled()) {
+                        throw new ExtractionCancelledException("Extraction of the zip was cancelled");
+                    }
+
+                    var targetPath = resolveEntry(tempPath, entry.getName());
+
+                    try (var input = zip.getInputStream(entry)) {
+                        computedDigests.put(tempPath, targetPath, writeAndDigest(input, targetPath, algorithms));
+                    }
+
+                    synchronized (listener) {
+                        listener.fileExtracted(tempPath, targetPath);
+                    }
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            // the other workers finish the file they are writing and then stop
+            batches.clear();
+            throw e;
+        }
+    }
+
+    private void waitForWorker(FutureTask<Void> worker) throws IOException {
+        try {
+            worker.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting zip");
+        }
+        catch (ExecutionException e) {
+            var cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    // the files per directory, split into batches of at most MAX_BATCH_SIZE, largest batches first
+    private static List<List<ZipEntry>> toBatches(Collection<List<ZipEntry>> filesByDirectory) {
+        var batches = new ArrayList<List<ZipEntry>>();
+
+        for (var files : filesByDirectory) {
+            for (var i = 0; i < files.size(); i += MAX_BATCH_SIZE) {
+                batches.add(files.subList(i, Math.min(i + MAX_BATCH_SIZE, files.size())));
+            }
+        }
+
+        batches.sort(Comparator.comparingLong((List<ZipEntry> b) -> b.stream().mapToLong(ZipEntry::getCompressedSize).sum()).reversed());
+        return batches;
+    }
+
     @Override
     public void deleteDirectoryAndContents(Path path) throws IOException {
         FileUtils.deleteDirectory(path.toFile());
@@ -114,15 +514,107 @@ public class FileServiceImpl implements FileService {
     }
 
     void writeStreamToFile(InputStream inputStream, Path target) throws IOException {
+        writeStreamToFile(inputStream, target, List.of());
+    }
+
+    // returns the digests of the contents, by algorithm
+    Map<String, String> writeStreamToFile(InputStream inputStream, Path target, Collection<String> algorithms) throws IOException {
         FileUtils.forceMkdirParent(target.toFile());
+        return writeAndDigest(inputStream, target, algorithms);
+    }
+
+    // the same, for a target of which the directory exists
+    private Map<String, String> writeAndDigest(InputStream inputStream, Path target, Collection<String> algorithms) throws IOException {
+        var digests = new ArrayList<MessageDigest>();
+
+        for (var algorithm : algorithms) {
+            try {
+                digests.add(MessageDigest.getInstance(algorithm));
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Digest algorithm not available: " + algorithm, e);
+            }
+        }
+
         try (var output = new FileOutputStream(target.toFile())) {
             byte[] buf = new byte[8 * 1024];
             var bytesRead = 0;
 
             while ((bytesRead = inputStream.read(buf)) != -1) {
                 output.write(buf, 0, bytesRead);
+
+                for (var digest : digests) {
+                    digest.update(buf, 0, bytesRead);
+                }
             }
         }
 
+        var result = new HashMap<String, String>();
+
+        for (var digest : digests) {
+            result.put(digest.getAlgorithm(), toHex(digest.digest()));
+        }
+
+        return result;
+    }
+
+    // an entry name such as ../x would otherwise be written outside of the temporary directory
+    private static Path resolveEntry(Path tempPath, String entryName) throws IOException {
+        var targetPath = tempPath.resolve(entryName).normalize();
+
+        if (!targetPath.startsWith(tempPath)) {
+            throw new IOException("Archive entry is outside of the archive: " + entryName);
+        }
+
+        return targetPath;
+    }
+
+    static String toHex(byte[] bytes) {
+        return String.format("%0" + (bytes.length * 2) + "x", new BigInteger(1, bytes));
+    }
+
+    // stops reading the upload as soon as the listener no longer wants the rest of it, also in the middle of a large file
+    private static class CancellableInputStream extends FilterInputStream {
+        private final ExtractionListener listener;
+
+        CancellableInputStream(InputStream in, ExtractionListener listener) {
+            super(in);
+            this.listener = listener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkCancelled();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkCancelled();
+            return super.read(b, off, len);
+        }
+
+        private void checkCancelled() throws ExtractionCancelledException {
+            if (listener.isExtractionCancelled()) {
+                throw new ExtractionCancelledException("Extraction of the zip was cancelled");
+            }
+        }
+    }
+
+    private static Optional<String> getManifestAlgorithm(String entryName) {
+        var matcher = MANIFEST_NAME.matcher(entryName);
+
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+
+        return toMessageDigestName(matcher.group(1));
+    }
+
+    private static Optional<String> toMessageDigestName(String bagitName) {
+        return Arrays.stream(StandardSupportedAlgorithms.values())
+            .filter(a -> a.getBagitName().equalsIgnoreCase(bagitName))
+            .map(StandardSupportedAlgorithms::getMessageDigestName)
+            .findFirst();
     }
 }
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
+import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of validations running at the same time, and decides which waiting validation goes next with weighted fair queueing between the deposit types. Each deposit
+ * type also has its own limit, so that a batch of migrations cannot take all the slots and interactive deposits keep getting through.
+ * <p>
+ * The queueing works with virtual time: every admitted validation of a type moves the virtual time of that type forward by 1 / weight, and the type with the earliest virtual time
+ * goes first. A type that has been idle starts at the current virtual time, so it does not build up credit while it has nothing to validate.
+ * <p>
+ * Rules that are started while a bag is still arriving take a slot as well. They never wait for one: they are only started if a slot is free and no validation is waiting, and
+ * otherwise the bag is validated after it has arrived, like any other. The validation of the bag then runs in the slot of its speculation, which is released when the
+ * speculation is closed.
+ */
+@Slf4j
+public class PrioritizingRuleEngineService implements RuleEngineService {
+
+    private final RuleEngineService delegate;
+    private final int maxConcurrentValidations;
+    private final Map<DepositType, PriorityClass> priorityClasses = new EnumMap<>(DepositType.class);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private int running;
+    private double virtualTime;
+    // the contexts of the speculations that hold a slot
+    private final Set<BagValidationContext> speculating = new HashSet<>();
+
+    /**
+     * @param delegate                 the service that performs the validations
+     * @param maxConcurrentValidations the maximum number of validations running at the same time
+     * @param weights                  the weight of every deposit type
+     * @param limits                   the maximum number of validations running at the same time for every deposit type
+     */
+    public PrioritizingRuleEngineService(RuleEngineService delegate, int maxConcurrentValidations, Map<DepositType, Integer> weights, Map<DepositType, Integer> limits) {
+        this.delegate = delegate;
+        this.maxConcurrentValidations = maxConcurrentValidations;
+
+        for (var depositType : DepositType.values()) {
+            priorityClasses.put(depositType, new PriorityClass(weights.get(depositType), limits.get(depositType)));
+        }
+    }
+
+    @Override
+    public List<RuleValidationResult> validateBag(Path path, DepositType depositType, boolean failFast, boolean useChecksumCache) throws Exception {
+        acquire(depositType);
+
+        try {
+            return delegate.validateBag(path, depositType, failFast, useChecksumCache);
+        }
+        finally {
+            release(depositType);
+        }
+    }
+
+    @Override
+    public List<RuleValidationResult> validateBag(BagValidationContext context, DepositType depositType) throws Exception {
+        if (isSpeculating(context)) {
+            return delegate.validateBag(context, depositType);
+        }
+
+        acquire(depositType);
+
+        try {
+            return delegate.validateBag(context, depositType);
+        }
+        finally {
+            release(depositType);
+        }
+    }
+
+    // null if there is no free slot; waiting for one would stall the upload
+    @Override
+    public RuleSpeculation speculate(BagValidationContext context, DepositType depositType) throws Exception {
+        if (!tryAcquire(depositType)) {
+            log.debug("Not starting rules of type {} before the bag has arrived, because there is no free slot", depositType);
+            return null;
+        }
+
+        RuleSpeculation speculation;
+
+        try {
+            speculation = delegate.speculate(context, depositType);
+        }
+        catch (Exception | Error e) {
+            release(depositType);
+            throw e;
+        }
+
+        lock.lock();
+
+        try {
+            speculating.add(context);
+        }
+        finally {
+            lock.unlock();
+        }
+
+        speculation.onClose(() -> {
+            lock.lock();
+
+            try {
+                speculating.remove(context);
+                release(depositType);
+            }
+            finally {
+                lock.unlock();
+            }
+        });
+
+        return speculation;
+    }
+
+    private boolean isSpeculating(BagValidationContext context) {
+        lock.lock();
+
+        try {
+            return speculating.contains(context);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // the number of validations waiting for a slot
+    int getWaitingValidations() {
+        lock.lock();
+
+        try {
+            return priorityClasses.values().stream().mapToInt(c -> c.waiting.size()).sum();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire(DepositType depositType) throws InterruptedException {
+        lock.lock();
+
+        try {
+            var waiter = new Waiter(lock.newCondition());
+            priorityClasses.get(depositType).waiting.add(waiter);
+            admitWaitingValidations();
+
+            if (!waiter.admitted) {
+                log.debug("Validation of type {} is waiting for a free slot", depositType);
+            }
+
+            try {
+                while (!waiter.admitted) {
+                    waiter.condition.await();
+                }
+            }
+            catch (InterruptedException e) {
+                // the slot may have been given to this validation just before it was interrupted
+                if (waiter.admitted) {
+                    release(depositType);
+                }
+                else {
+                    priorityClasses.get(depositType).waiting.remove(waiter);
+                }
+
+                throw e;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // takes a slot if one is free and no validation is waiting for one, so that it is not taken away from them
+    private boolean tryAcquire(DepositType depositType) {
+        lock.lock();
+
+        try {
+            var priorityClass = priorityClasses.get(depositType);
+
+            if (running >= maxConcurrentValidations || priorityClass.running >= priorityClass.limit || getWaitingValidations() > 0) {
+                return false;
+            }
+
+            admit(priorityClass);
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(DepositType depositType) {
+        lock.lock();
+
+        try {
+            running--;
+            priorityClasses.get(depositType).running--;
+            admitWaitingValidations();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    // must be called while holding the lock
+    private void admitWaitingValidations() {
+        while (running < maxConcurrentValidations) {
+            PriorityClass next = null;
+
+            for (var priorityClass : priorityClasses.values()) {
+                if (priorityClass.waiting.isEmpty() || priorityClass.running >= priorityClass.limit) {
+                    continue;
+                }
+
+                if (next == null || priorityClass.getStart(virtualTime) < next.getStart(virtualTime)) {
+                    next = priorityClass;
+                }
+            }
+
+            if (next == null) {
+                return;
+            }
+
+            admit(next);
+
+            var waiter = next.waiting.remove();
+            waiter.admitted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    // must be called while holding the lock
+    private void admit(PriorityClass priorityClass) {
+        var start = priorityClass.getStart(virtualTime);
+        virtualTime = start;
+        priorityClass.finish = start + 1.0 / priorityClass.weight;
+        priorityClass.running++;
+        running++;
+    }
+
+    private static class PriorityClass {
+        private final int weight;
+        private final int limit;
+        private final Queue<Waiter> waiting = new ArrayDeque<>();
+        private int running;
+        // the virtual time at which the last admitted validation of this class is done with its share
+        private double finish;
+
+        PriorityClass(int weight, int limit) {
+            this.weight = weight;
+            this.limit = limit;
+        }
+
+        double getStart(double virtualTime) {
+            return Math.max(finish, virtualTime);
+        }
+    }
+
+    private static class Waiter {
+        private final Condition condition;
+        private boolean admitted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * A view of a file system that refuses every write with a {@link ReadOnlyFileSystemException}. The zip file system of the JDK only opens an archive read-only when the process
+ * cannot write to it, which is not the case for a service that runs as the owner of the archive, or as root, and it has no option to ask for read-only access on every JDK
+ * version. Archives that are read in place are therefore opened through this view, so that they cannot be modified, also not when the file system is closed.
+ */
+class ReadOnlyFileSystem extends FileSystem {
+    private final FileSystem delegate;
+    private final ReadOnlyProvider provider;
+
+    ReadOnlyFileSystem(FileSystem delegate) {
+        this.delegate = delegate;
+        this.provider = new ReadOnlyProvider(delegate.provider());
+    }
+
+    @Override
+    public FileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return delegate.getSeparator();
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return StreamSupport.stream(delegate.getRootDirectories().spliterator(), false)
+            .map(this::wrap)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return delegate.getFileStores();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Set.of("basic");
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        return wrap(delegate.getPath(first, more));
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        var matcher = delegate.getPathMatcher(syntaxAndPattern);
+        return path -> matcher.matches(unwrap(path));
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        return delegate.getUserPrincipalLookupService();
+    }
+
+    @Override
+    public WatchService newWatchService() throws IOException {
+        return delegate.newWatchService();
+    }
+
+    private Path wrap(Path path) {
+        return path == null ? null : new ReadOnlyPath(this, path);
+    }
+
+    private static Path unwrap(Path path) {
+        if (!(path instanceof ReadOnlyPath)) {
+            throw new ProviderMismatchException();
+        }
+
+        return ((ReadOnlyPath) path).delegate;
+    }
+
+    private static class ReadOnlyPath implements Path {
+        private final ReadOnlyFileSystem fileSystem;
+        private final Path delegate;
+
+        ReadOnlyPath(ReadOnlyFileSystem fileSystem, Path delegate) {
+            this.fileSystem = fileSystem;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public FileSystem getFileSystem() {
+            return fileSystem;
+        }
+
+        @Override
+        public boolean isAbsolute() {
+            return delegate.isAbsolute();
+        }
+
+        @Override
+        public Path getRoot() {
+            return fileSystem.wrap(delegate.getRoot());
+        }
+
+        @Override
+        public Path getFileName() {
+            return fileSystem.wrap(delegate.getFileName());
+        }
+
+        @Override
+        public Path getParent() {
+            return fileSystem.wrap(delegate.getParent());
+        }
+
+        @Override
+        public int getNameCount() {
+            return delegate.getNameCount();
+        }
+
+        @Override
+        public Path getName(int index) {
+            return fileSystem.wrap(delegate.getName(index));
+        }
+
+        @Override
+        public Path subpath(int beginIndex, int endIndex) {
+            return fileSystem.wrap(delegate.subpath(beginIndex, endIndex));
+        }
+
+        @Override
+        public boolean startsWith(Path other) {
+            return other instanceof ReadOnlyPath && delegate.startsWith(unwrap(other));
+        }
+
+        @Override
+        public boolean endsWith(Path other) {
+            return other instanceof ReadOnlyPath && delegate.endsWith(unwrap(other));
+        }
+
+        @Override
+        public Path normalize() {
+            return fileSystem.wrap(delegate.normalize());
+        }
+
+        @Override
+        public Path resolve(Path other) {
+            return fileSystem.wrap(delegate.resolve(unwrap(other)));
+        }
+
+        @Override
+        public Path relativize(Path other) {
+            return fileSystem.wrap(delegate.relativize(unwrap(other)));
+        }
+
+        @Override
+        public URI toUri() {
+            return delegate.toUri();
+        }
+
+        @Override
+        public Path toAbsolutePath() {
+            return fileSystem.wrap(delegate.toAbsolutePath());
+        }
+
+        @Override
+        public Path toRealPath(LinkOption... options) throws IOException {
+            return fileSystem.wrap(delegate.toRealPath(options));
+        }
+
+        @Override
+        public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int compareTo(Path other) {
+            return delegate.compareTo(unwrap(other));
+        }
+
+        @Override
+        public Iterator<Path> iterator() {
+            var names = delegate.iterator();
+
+            return new Iterator<>() {
+
+                @Override
+                public boolean hasNext() {
+                    return names.hasNext();
+                }
+
+                @Override
+                public Path next() {
+                    return fileSystem.wrap(names.next());
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ReadOnlyPath && ((ReadOnlyPath) other).fileSystem == fileSystem && ((ReadOnlyPath) other).delegate.equals(delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static class ReadOnlyProvider extends FileSystemProvider {
+        private final FileSystemProvider delegate;
+
+        ReadOnlyProvider(FileSystemProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getScheme() {
+            return delegate.getScheme();
+        }
+
+        @Override
+        public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileSystem getFileSystem(URI uri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path getPath(URI uri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+            checkReadOnly(options);
+            return delegate.newByteChannel(unwrap(path), options, attrs);
+        }
+
+        @Override
+        public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+            checkReadOnly(options);
+            return delegate.newFileChannel(unwrap(path), options, attrs);
+        }
+
+        @Override
+        public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+            checkReadOnly(Set.of(options));
+            return delegate.newInputStream(unwrap(path), options);
+        }
+
+        @Override
+        public OutputStream newOutputStream(Path path, OpenOption... options) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        @Override
+        public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+            var fileSystem = (ReadOnlyFileSystem) dir.getFileSystem();
+            var entries = delegate.newDirectoryStream(unwrap(dir), entry -> filter.accept(fileSystem.wrap(entry)));
+
+            return new DirectoryStream<>() {
+
+                @Override
+                public Iterator<Path> iterator() {
+                    var paths = entries.iterator();
+
+                    return new Iterator<>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return paths.hasNext();
+                        }
+
+                        @Override
+                        public Path next() {
+                            return fileSystem.wrap(paths.next());
+                        }
+                    };
+                }
+
+                @Override
+                public void close() throws IOException {
+                    entries.close();
+                }
+            };
+        }
+
+        @Override
+        public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        @Override
+        public void delete(Path path) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        @Override
+        public void copy(Path source, Path target, CopyOption... options) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        @Override
+        public void move(Path source, Path target, CopyOption... options) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        @Override
+        public boolean isSameFile(Path path, Path path2) throws IOException {
+            return path2 instanceof ReadOnlyPath && delegate.isSameFile(unwrap(path), unwrap(path2));
+        }
+
+        @Override
+        public boolean isHidden(Path path) throws IOException {
+            return delegate.isHidden(unwrap(path));
+        }
+
+        @Override
+        public FileStore getFileStore(Path path) throws IOException {
+            return delegate.getFileStore(unwrap(path));
+        }
+
+        @Override
+        public void checkAccess(Path path, AccessMode... modes) throws IOException {
+            for (var mode : modes) {
+                // an IOException, so that Files.isWritable returns false
+                if (mode == AccessMode.WRITE) {
+                    throw new AccessDeniedException(path.toString(), null, "read-only file system");
+                }
+            }
+
+            delegate.checkAccess(unwrap(path), modes);
+        }
+
+        // only the basic view is offered, and without setting times
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+            if (type != BasicFileAttributeView.class) {
+                return null;
+            }
+
+            var view = delegate.getFileAttributeView(unwrap(path), BasicFileAttributeView.class, options);
+
+            return (V) new BasicFileAttributeView() {
+
+                @Override
+                public String name() {
+                    return "basic";
+                }
+
+                @Override
+                public BasicFileAttributes readAttributes() throws IOException {
+                    return view.readAttributes();
+                }
+
+                @Override
+                public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                    throw new ReadOnlyFileSystemException();
+                }
+            };
+        }
+
+        @Override
+        public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+            return delegate.readAttributes(unwrap(path), type, options);
+        }
+
+        @Override
+        public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+            return delegate.readAttributes(unwrap(path), attributes, options);
+        }
+
+        @Override
+        public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+            throw new ReadOnlyFileSystemException();
+        }
+
+        private static void checkReadOnly(Set<? extends OpenOption> options) {
+            for (var option : options) {
+                if (option == StandardOpenOption.WRITE || option == StandardOpenOption.APPEND || option == StandardOpenOption.CREATE
+                    || option == StandardOpenOption.CREATE_NEW || option == StandardOpenOption.TRUNCATE_EXISTING || option == StandardOpenOption.DELETE_ON_CLOSE) {
+                    throw new ReadOnlyFileSystemException();
+                }
+            }
+        }
+    }
+}
@@ -15,7 +15,9 @@
  */
 package nl.knaw.dans.validatedansbag.core.service;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
 import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
 
 import java.nio.file.Path;
@@ -23,6 +25,15 @@ import java.util.List;
 
 public interface RuleEngineService {
 
-    List<RuleValidationResult> validateBag(Path path, DepositType depositType) throws Exception;
+    // with failFast, validation stops at the first rule that fails and the rules that did not complete are returned as CANCELLED;
+    // with useChecksumCache, checksums computed in earlier validations of the same, unchanged files are not computed again
+    List<RuleValidationResult> validateBag(Path path, DepositType depositType, boolean failFast, boolean useChecksumCache) throws Exception;
+
+    // the same, for a context that was used to start rules while the bag was still arriving
+    List<RuleValidationResult> validateBag(BagValidationContext context, DepositType depositType) throws Exception;
+
+    // starts the rules that only read files that have arrived, while the rest of the bag is still being written; the speculation must be closed after validateBag;
+    // null if the rules cannot be started now, in which case the bag is simply validated after it has arrived
+    RuleSpeculation speculate(BagValidationContext context, DepositType depositType) throws Exception;
 
 }
@@ -17,10 +17,12 @@ package nl.knaw.dans.validatedansbag.core.service;
 
 import lombok.extern.slf4j.Slf4j;
 import nl.knaw.dans.validatedansbag.core.BagNotFoundException;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.DepositType;
 import nl.knaw.dans.validatedansbag.core.engine.NumberedRule;
 import nl.knaw.dans.validatedansbag.core.engine.RuleEngine;
 import nl.knaw.dans.validatedansbag.core.engine.RuleEngineConfigurationException;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
 import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
 
 import java.nio.file.Path;
@@ -43,15 +45,27 @@ public class RuleEngineServiceImpl implements RuleEngineService {
     }
 
     @Override
-    public List<RuleValidationResult> validateBag(Path path, DepositType depositType) throws Exception {
-        log.info("Validating bag on path '{}', deposit type is {}", path, depositType);
+    public List<RuleValidationResult> validateBag(Path path, DepositType depositType, boolean failFast, boolean useChecksumCache) throws Exception {
+        return validateBag(new BagValidationContext(path, failFast, useChecksumCache), depositType);
+    }
+
+    @Override
+    public List<RuleValidationResult> validateBag(BagValidationContext context, DepositType depositType) throws Exception {
+        var path = context.getBagDir();
+        log.info("Validating bag on path '{}', deposit type is {}, fail fast is {}, checksum cache is {}", path, depositType, context.isFailFast(),
+            context.isUseChecksumCache() ? "used" : "not used");
 
         if (!fileService.isReadable(path)) {
             log.warn("Path {} could not not be found or is not readable", path);
             throw new BagNotFoundException(String.format("Bag on path '%s' could not be found or read", path));
         }
 
-        return ruleEngine.validateRules(path, this.ruleSet, depositType);
+        return ruleEngine.validateRules(context, this.ruleSet, depositType);
+    }
+
+    @Override
+    public RuleSpeculation speculate(BagValidationContext context, DepositType depositType) throws Exception {
+        return ruleEngine.speculate(context, this.ruleSet, depositType);
     }
 
     public void validateRuleConfiguration() {
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Serves schema documents that are located by an HTTP URL from a directory on disk, in which they are stored by host and path, the way wget --mirror stores them. A document
+ * that is not in the directory yet is fetched once and then kept there, for this and later runs. A directory that already contains all the documents, such as a mirror of the
+ * schema site, makes loading the schemas independent of the network. Documents are never refreshed; to fetch them again, delete them from the directory.
+ */
+class SchemaDocumentCache implements LSResourceResolver {
+    private static final Logger log = LoggerFactory.getLogger(SchemaDocumentCache.class);
+
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    private final Path directory;
+
+    SchemaDocumentCache(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Returns the file in which the document at the given location is kept, fetching it first if it is not there yet.
+     *
+     * @param location the absolute location of the document
+     * @return the file, or null if the location is not an HTTP URL
+     * @throws IOException if the document could not be fetched or stored
+     */
+    Path getFile(URI location) throws IOException {
+        var scheme = location.getScheme() == null ? "" : location.getScheme().toLowerCase(Locale.ROOT);
+
+        if (!(scheme.equals("http") || scheme.equals("https")) || location.getHost() == null) {
+            return null;
+        }
+
+        var hostDirectory = directory.resolve(location.getHost().toLowerCase(Locale.ROOT));
+        var path = location.getPath() == null ? "" : location.getPath().replaceFirst("^/+", "");
+        var file = hostDirectory.resolve(path).normalize();
+
+        if (!file.startsWith(hostDirectory) || file.equals(hostDirectory)) {
+            throw new IOException(String.format("Schema document %s cannot be stored in %s", location, directory));
+        }
+
+        if (!Files.isRegularFile(file)) {
+            fetch(location, file);
+        }
+
+        return file;
+    }
+
+    private void fetch(URI location, Path file) throws IOException {
+        log.info("Fetching schema document {} into {}", location, file);
+        Files.createDirectories(file.getParent());
+
+        var connection = location.toURL().openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        // a document that is fetched halfway must not end up in the cache
+        var part = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".part");
+
+        try {
+            try (var input = connection.getInputStream()) {
+                Files.copy(input, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // schemas that are loaded in parallel may fetch the same document at the same time, which is fine as it is the same document
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    @Override
+    public LSInput resolveResource(String type, String namespaceURI, String publicId, String systemId, String baseURI) {
+        if (systemId == null) {
+            return null;
+        }
+
+        try {
+            var location = baseURI == null ? new URI(systemId) : new URI(baseURI).resolve(systemId);
+            var file = getFile(location);
+
+            if (file == null) {
+                return null;
+            }
+
+            log.debug("Reading schema document {} from {}", location, file);
+            // the original location stays the system id, so that the documents it imports are resolved against it
+            return new Input(publicId, location.toString(), baseURI, Files.newInputStream(file));
+        }
+        catch (URISyntaxException | IOException e) {
+            // the parser then tries to read the document itself, and reports it if that fails too
+            log.warn("Unable to read schema document {} through the cache in {}", systemId, directory, e);
+            return null;
+        }
+    }
+
+    private static class Input implements LSInput {
+        private String publicId;
+        private String systemId;
+        private String baseURI;
+        private InputStream byteStream;
+        private Reader characterStream;
+        private String stringData;
+        private String encoding;
+        private boolean certifiedText;
+
+        private Input(String publicId, String systemId, String baseURI, InputStream byteStream) {
+            this.publicId = publicId;
+            this.systemId = systemId;
+            this.baseURI = baseURI;
+            this.byteStream = byteStream;
+        }
+
+        @Override
+        public Reader getCharacterStream() {
+            return characterStream;
+        }
+
+        @Override
+        public void setCharacterStream(Reader characterStream) {
+            this.characterStream = characterStream;
+        }
+
+        @Override
+        public InputStream getByteStream() {
+            return byteStream;
+        }
+
+        @Override
+        public void setByteStream(InputStream byteStream) {
+            this.byteStream = byteStream;
+        }
+
+        @Override
+        public String getStringData() {
+            return stringData;
+        }
+
+        @Override
+        public void setStringData(String stringData) {
+            this.stringData = stringData;
+        }
+
+        @Override
+        public String getSystemId() {
+            return systemId;
+        }
+
+        @Override
+        public void setSystemId(String systemId) {
+            this.systemId = systemId;
+        }
+
+        @Override
+        public String getPublicId() {
+            return publicId;
+        }
+
+        @Override
+        public void setPublicId(String publicId) {
+            this.publicId = publicId;
+        }
+
+        @Override
+        public String getBaseURI() {
+            return baseURI;
+        }
+
+        @Override
+        public void setBaseURI(String baseURI) {
+            this.baseURI = baseURI;
+        }
+
+        @Override
+        public String getEncoding() {
+            return encoding;
+        }
+
+        @Override
+        public void setEncoding(String encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean getCertifiedText() {
+            return certifiedText;
+        }
+
+        @Override
+        public void setCertifiedText(boolean certifiedText) {
+            this.certifiedText = certifiedText;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import lombok.Value;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the entries of a tar stream one after the other, without an index and without writing anything to disk. Understands the ustar format and the GNU and pax extensions for
+ * long names and large sizes. Entries other than regular files and directories, such as links, are skipped.
+ */
+class TarReader {
+    private static final int BLOCK_SIZE = 512;
+    // pax and GNU headers only hold names, so anything larger is not a valid archive
+    private static final int MAX_EXTENDED_HEADER_SIZE = 1024 * 1024;
+
+    private final InputStream input;
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    // the bytes of the current entry that have not been read yet, and the padding after them
+    private long remaining;
+    private long padding;
+
+    @Value
+    static class TarEntry {
+        String name;
+        long size;
+        boolean directory;
+    }
+
+    TarReader(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Moves to the next regular file or directory, skipping whatever is left of the current one.
+     *
+     * @return the entry, or null at the end of the archive
+     * @throws IOException if the archive cannot be read or is not a valid tar
+     */
+    TarEntry next() throws IOException {
+        skipFully(remaining + padding);
+        remaining = 0;
+        padding = 0;
+
+        String longName = null;
+
+        while (readHeader()) {
+            var type = (char) header[156];
+            var size = parseNumber(124, 12);
+            var name = longName != null ? longName : parseName();
+
+            switch (type) {
+                case 'L':
+                    longName = trimNul(new String(readContent(size), StandardCharsets.UTF_8));
+                    break;
+                case 'x':
+                    var path = parsePaxPath(readContent(size));
+                    longName = path != null ? path : longName;
+                    break;
+                case '5':
+                    skipFully(size + padding(size));
+                    return new TarEntry(name, 0, true);
+                case '0':
+                case '\0':
+                    remaining = size;
+                    padding = padding(size);
+                    return new TarEntry(name, size, false);
+                default:
+                    skipFully(size + padding(size));
+                    longName = null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The contents of the current entry. Closing the stream does not close the archive.
+     *
+     * @return the stream
+     */
+    InputStream getInputStream() {
+        return new FilterInputStream(input) {
+
+            @Override
+            public int read() throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+
+                var b = in.read();
+
+                if (b < 0) {
+                    throw new EOFException("Unexpected end of tar entry");
+                }
+
+                --remaining;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining == 0) {
+                    return -1;
+                }
+
+                var count = in.read(buffer, offset, (int) Math.min(length, remaining));
+
+                if (count < 0) {
+                    throw new EOFException("Unexpected end of tar entry");
+                }
+
+                remaining -= count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+                // the rest of the entry is skipped by next()
+            }
+        };
+    }
+
+    // false at the end of the stream or at the blocks of zeros that mark the end of the archive
+    private boolean readHeader() throws IOException {
+        var count = input.readNBytes(header, 0, BLOCK_SIZE);
+
+        if (count == 0) {
+            return false;
+        }
+
+        if (count < BLOCK_SIZE) {
+            throw new EOFException("Unexpected end of tar header");
+        }
+
+        for (var b : header) {
+            if (b != 0) {
+                verifyChecksum();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void verifyChecksum() throws IOException {
+        var sum = 0L;
+
+        for (var i = 0; i < BLOCK_SIZE; ++i) {
+            // the checksum field itself counts as spaces
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xff;
+        }
+
+        if (sum != parseNumber(148, 8)) {
+            throw new IOException("Not a valid tar archive: header checksum does not match");
+        }
+    }
+
+    private String parseName() {
+        var name = parseString(0, 100);
+
+        // ustar splits long names over a prefix and a name
+        if (parseString(257, 5).equals("ustar")) {
+            var prefix = parseString(345, 155);
+
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+
+        return name;
+    }
+
+    private String parseString(int offset, int length) {
+        var end = offset;
+
+        while (end < offset + length && header[end] != 0) {
+            ++end;
+        }
+
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // octal, or big-endian binary if the high bit of the first byte is set (a GNU extension for sizes of 8 GiB and up)
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            var value = 0L;
+
+            for (var i = offset + 1; i < offset + length; ++i) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+
+            return value;
+        }
+
+        var text = parseString(offset, length).trim();
+
+        try {
+            return text.isEmpty() ? 0 : Long.parseLong(text, 8);
+        }
+        catch (NumberFormatException e) {
+            throw new IOException("Not a valid tar archive: invalid number in header: " + text, e);
+        }
+    }
+
+    private byte[] readContent(long size) throws IOException {
+        if (size > MAX_EXTENDED_HEADER_SIZE) {
+            throw new IOException("Not a valid tar archive: extended header of " + size + " bytes");
+        }
+
+        var content = input.readNBytes((int) size);
+
+        if (content.length < size) {
+            throw new EOFException("Unexpected end of tar header");
+        }
+
+        skipFully(padding(size));
+        return content;
+    }
+
+    // pax records have the form "<length> <key>=<value>\n"
+    private static String parsePaxPath(byte[] content) {
+        String path = null;
+        var offset = 0;
+
+        while (offset < content.length) {
+            var space = offset;
+
+            while (space < content.length && content[space] != ' ') {
+                ++space;
+            }
+
+            int length;
+
+            try {
+                length = Integer.parseInt(new String(content, offset, space - offset, StandardCharsets.UTF_8));
+            }
+            catch (NumberFormatException e) {
+                return path;
+            }
+
+            if (length <= 0 || offset + length > content.length) {
+                return path;
+            }
+
+            var record = new String(content, space + 1, offset + length - space - 2, StandardCharsets.UTF_8);
+
+            if (record.startsWith("path=")) {
+                path = record.substring("path=".length());
+            }
+
+            offset += length;
+        }
+
+        return path;
+    }
+
+    private static String trimNul(String value) {
+        var end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    private static long padding(long size) {
+        return (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            var skipped = input.skip(count);
+
+            if (skipped <= 0) {
+                if (input.read() < 0) {
+                    throw new EOFException("Unexpected end of tar archive");
+                }
+
+                skipped = 1;
+            }
+
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.InsufficientTempSpaceException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the temporary files and directories into which uploads and archives are written, and deletes them again in the background, so that a request does not wait until
+ * hundreds of thousands of extracted files have been removed.
+ * <p>
+ * With a journal, every temporary path is appended to a file, and synced to disk, before it is created, and appended again, marked as deleted, when it is gone. When the reaper
+ * is opened, the paths that were created but never deleted, because the service stopped before it got to them, are deleted, and the journal is rewritten with only those paths.
+ * While the service runs, the journal is rewritten with the paths that still exist every time a number of deletions have been appended, so that it does not keep growing.
+ */
+public class TempDirectoryReaper {
+    private static final Logger log = LoggerFactory.getLogger(TempDirectoryReaper.class);
+    private static final String CREATED = "+";
+    private static final String DELETED = "-";
+    static final int DEFAULT_COMPACT_AFTER_DELETIONS = 1000;
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Path directory;
+    private final Path journalFile;
+    private final Executor executor;
+    private final long minFreeSpace;
+    private final int compactAfterDeletions;
+    private final Set<Path> paths = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingDeletions = new AtomicInteger();
+    // guarded by this
+    private FileChannel journal;
+    private int deletionsInJournal;
+
+    // temporary paths are deleted on the calling thread and are not journaled
+    public TempDirectoryReaper() {
+        this(null, null, Runnable::run, 0);
+    }
+
+    /**
+     * @param directory    the directory in which the temporary paths are created, or null for the temporary directory of the JVM
+     * @param journalFile  the file in which the temporary paths are recorded, or null to not record them
+     * @param executor     the executor on which temporary paths are deleted
+     * @param minFreeSpace the number of bytes that must be free in the directory before a temporary path is created
+     */
+    public TempDirectoryReaper(Path directory, Path journalFile, Executor executor, long minFreeSpace) {
+        this(directory, journalFile, executor, minFreeSpace, DEFAULT_COMPACT_AFTER_DELETIONS);
+    }
+
+    TempDirectoryReaper(Path directory, Path journalFile, Executor executor, long minFreeSpace, int compactAfterDeletions) {
+        this.directory = directory;
+        this.journalFile = journalFile;
+        this.executor = executor;
+        this.minFreeSpace = minFreeSpace;
+        this.compactAfterDeletions = compactAfterDeletions;
+    }
+
+    /**
+     * Creates the directory, reads the journal and starts deleting the paths that a previous run left behind.
+     *
+     * @throws IOException if the directory could not be created or the journal could not be read or written
+     */
+    public synchronized void open() throws IOException {
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+
+        if (journalFile == null) {
+            return;
+        }
+
+        var orphans = new LinkedHashSet<Path>();
+
+        if (Files.exists(journalFile)) {
+            try (var lines = Files.lines(journalFile, StandardCharsets.UTF_8)) {
+                lines.forEach(line -> readLine(line, orphans));
+            }
+        }
+
+        rewriteJournal(orphans);
+
+        log.info("Opened temp file journal {}; deleting {} temporary paths left by a previous run", journalFile, orphans.size());
+
+        for (var orphan : orphans) {
+            paths.add(orphan);
+            delete(orphan);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * @throws InsufficientTempSpaceException if the directory has less free space than the configured minimum
+     * @throws IOException                    if the free space could not be determined
+     */
+    public void checkFreeSpace() throws IOException {
+        if (minFreeSpace <= 0) {
+            return;
+        }
+
+        var usableSpace = getUsableSpace();
+
+        if (usableSpace < minFreeSpace) {
+            throw new InsufficientTempSpaceException(String.format(
+                "Only %s of temporary storage is free, while at least %s is needed", FileUtils.byteCountToDisplaySize(usableSpace),
+                FileUtils.byteCountToDisplaySize(minFreeSpace)));
+        }
+    }
+
+    public long getUsableSpace() throws IOException {
+        return Files.getFileStore(getDirectory()).getUsableSpace();
+    }
+
+    // the number of temporary paths that exist or are being deleted
+    public int getTempPathCount() {
+        return paths.size();
+    }
+
+    public int getPendingDeletions() {
+        return pendingDeletions.get();
+    }
+
+    Path createTempDirectory(String prefix) throws IOException {
+        checkFreeSpace();
+        var path = register(prefix, "");
+
+        try {
+            return Files.createDirectory(path, ownerOnly(path, "rwx------"));
+        }
+        catch (IOException | RuntimeException e) {
+            unregister(path);
+            throw e;
+        }
+    }
+
+    Path createTempFile(String prefix, String suffix) throws IOException {
+        checkFreeSpace();
+        var path = register(prefix, suffix);
+
+        try {
+            return Files.createFile(path, ownerOnly(path, "rw-------"));
+        }
+        catch (IOException | RuntimeException e) {
+            unregister(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes a file, or a directory and everything in it, in the background. A path that could not be deleted stays in the journal, so that it is tried again at the next
+     * start.
+     *
+     * @param path the path
+     */
+    void delete(Path path) {
+        pendingDeletions.incrementAndGet();
+
+        try {
+            executor.execute(() -> deleteNow(path));
+        }
+        catch (RejectedExecutionException e) {
+            // the service is stopping
+            deleteNow(path);
+        }
+    }
+
+    private void deleteNow(Path path) {
+        try {
+            if (!FileUtils.deleteQuietly(path.toFile()) && Files.exists(path)) {
+                log.warn("Unable to delete temporary path {}", path);
+                return;
+            }
+
+            unregister(path);
+        }
+        finally {
+            pendingDeletions.decrementAndGet();
+        }
+    }
+
+    private Path getDirectory() {
+        return directory != null ? directory : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    // picks a new name, the way Files.createTempFile does, and journals it before anything is created, so that a crash cannot leave a path behind that is not swept
+    private Path register(String prefix, String suffix) {
+        var path = getDirectory().resolve(prefix + Long.toUnsignedString(random.nextLong()) + suffix);
+        paths.add(path);
+
+        var channel = append(CREATED, path);
+
+        if (channel != null) {
+            try {
+                // outside the lock, so that creating a path waits for the disk, but not for the other requests that do
+                channel.force(false);
+            }
+            catch (ClosedChannelException e) {
+                // the journal was rewritten in the meantime, with this path in it, and synced
+            }
+            catch (IOException e) {
+                log.warn("Unable to sync temp file journal {}", journalFile, e);
+            }
+        }
+
+        return path;
+    }
+
+    private void unregister(Path path) {
+        if (paths.remove(path)) {
+            append(DELETED, path);
+        }
+    }
+
+    // a lost deletion only makes the next start try to delete a path that is already gone, so those are not synced
+    private synchronized FileChannel append(String kind, Path path) {
+        if (journal == null) {
+            return null;
+        }
+
+        try {
+            write(journal, formatLine(kind, path));
+
+            if (DELETED.equals(kind) && ++deletionsInJournal >= compactAfterDeletions) {
+                rewriteJournal(new ArrayList<>(paths));
+            }
+        }
+        catch (IOException e) {
+            // the path is still deleted, it is only not swept if the service crashes before that
+            log.warn("Unable to write to temp file journal {}", journalFile, e);
+        }
+
+        return journal;
+    }
+
+    // replaces the journal with one that only has the given paths; must be called while holding the lock on this reaper
+    private void rewriteJournal(Collection<Path> existing) throws IOException {
+        var compacted = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+
+        try (var output = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (var path : existing) {
+                write(output, formatLine(CREATED, path));
+            }
+
+            output.force(false);
+        }
+
+        Files.move(compacted, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+
+        journal = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        deletionsInJournal = 0;
+    }
+
+    private static void write(FileChannel channel, String line) throws IOException {
+        var buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static FileAttribute<?>[] ownerOnly(Path path, String permissions) {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions)) };
+    }
+
+    private static String formatLine(String kind, Path path) {
+        return kind + "\t" + path.toAbsolutePath() + "\n";
+    }
+
+    private void readLine(String line, Set<Path> orphans) {
+        var tab = line.indexOf('\t');
+
+        if (tab < 0) {
+            log.warn("Ignoring malformed line in temp file journal {}", journalFile);
+            return;
+        }
+
+        var path = Path.of(line.substring(tab + 1));
+
+        if (line.startsWith(CREATED)) {
+            orphans.add(path);
+        }
+        else {
+            orphans.remove(path);
+        }
+    }
+}
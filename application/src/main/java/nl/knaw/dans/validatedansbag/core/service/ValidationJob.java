@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A validation that is executed in the background. The job is created when it is queued and is updated by the worker that executes it.
+ */
+public class ValidationJob {
+
+    private final UUID id;
+    private final Path bagDir;
+    private final String bagLocation;
+    private final DepositType depositType;
+    private final boolean failFast;
+    private final boolean useChecksumCache;
+    private final Instant submitted;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant completed;
+    private volatile List<RuleValidationResult> results;
+    private volatile String errorMessage;
+
+    public ValidationJob(UUID id, Path bagDir, String bagLocation, DepositType depositType, boolean failFast, boolean useChecksumCache) {
+        this.id = id;
+        this.bagDir = bagDir;
+        this.bagLocation = bagLocation;
+        this.depositType = depositType;
+        this.failFast = failFast;
+        this.useChecksumCache = useChecksumCache;
+        this.submitted = Instant.now();
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Path getBagDir() {
+        return bagDir;
+    }
+
+    // the location of the bag as given by the client, or null if the bag was uploaded
+    public String getBagLocation() {
+        return bagLocation;
+    }
+
+    public DepositType getDepositType() {
+        return depositType;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public boolean isUseChecksumCache() {
+        return useChecksumCache;
+    }
+
+    public Instant getSubmitted() {
+        return submitted;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getCompleted() {
+        return completed;
+    }
+
+    // only available when the status is DONE
+    public List<RuleValidationResult> getResults() {
+        return results;
+    }
+
+    // only available when the status is FAILED
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void complete(List<RuleValidationResult> results) {
+        this.results = results;
+        this.completed = Instant.now();
+        this.status = Status.DONE;
+    }
+
+    void fail(String errorMessage) {
+        this.errorMessage = errorMessage;
+        this.completed = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        // the validation has completed; this does not mean the bag is compliant
+        DONE,
+        // the validation could not be completed, for example because the bag could not be read
+        FAILED
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationJob{" +
+            "id=" + id +
+            ", bagDir=" + bagDir +
+            ", depositType=" + depositType +
+            ", failFast=" + failFast +
+            ", status=" + status +
+            '}';
+    }
+}
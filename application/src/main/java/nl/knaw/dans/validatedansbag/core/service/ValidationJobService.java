@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.ValidationQueueFullException;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ValidationJobService {
+
+    // queues the validation of the bag in bagDir; onCompletion is run after the validation, whether it succeeded or not, but not when the job is rejected
+    ValidationJob submit(Path bagDir, String bagLocation, DepositType depositType, boolean failFast, boolean useChecksumCache, Runnable onCompletion)
+        throws ValidationQueueFullException;
+
+    // takes a place in the queue before anything costly is done for a job, such as reading an upload, so that a full queue is reported before that; the place is given back
+    // when the reservation is closed without having been used to submit a job
+    Reservation reserve() throws ValidationQueueFullException;
+
+    // the same as submit, in the place that was reserved; the reservation still has to be closed
+    ValidationJob submit(Reservation reservation, Path bagDir, String bagLocation, DepositType depositType, boolean failFast, boolean useChecksumCache, Runnable onCompletion)
+        throws ValidationQueueFullException;
+
+    // returns the job, as long as it is queued, running or completed less than the retention period ago
+    Optional<ValidationJob> getJob(UUID id);
+
+    interface Reservation extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
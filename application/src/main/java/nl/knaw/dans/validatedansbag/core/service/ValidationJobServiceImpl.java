@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.knaw.dans.validatedansbag.core.ValidationQueueFullException;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+public class ValidationJobServiceImpl implements ValidationJobService {
+
+    private final RuleEngineService ruleEngineService;
+    private final Executor executor;
+    private final Duration resultRetention;
+    private final Map<UUID, ValidationJob> jobs = new ConcurrentHashMap<>();
+    // the jobs that are queued or running, or about to be submitted
+    private final Semaphore places;
+
+    public ValidationJobServiceImpl(RuleEngineService ruleEngineService, Executor executor, Duration resultRetention) {
+        this(ruleEngineService, executor, resultRetention, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a job service that executes the validations on the given executor. The executor determines the number of validations running at the same time and the number of jobs
+     * that can be queued; when it rejects a job, the job is refused with a {@link ValidationQueueFullException}. The same happens when all places are taken, which is checked before
+     * a job is submitted, so that a full queue can be reported before the bag has been received.
+     *
+     * @param ruleEngineService the service that validates the bags
+     * @param executor          the executor to run the jobs on, typically with a bounded work queue
+     * @param resultRetention   how long a completed job can still be retrieved
+     * @param maxJobs           the number of jobs that can be queued or running at the same time, normally the number of threads plus the size of the queue of the executor
+     */
+    public ValidationJobServiceImpl(RuleEngineService ruleEngineService, Executor executor, Duration resultRetention, int maxJobs) {
+        this.ruleEngineService = ruleEngineService;
+        this.executor = executor;
+        this.resultRetention = resultRetention;
+        this.places = new Semaphore(maxJobs);
+    }
+
+    @Override
+    public ValidationJob submit(Path bagDir, String bagLocation, DepositType depositType, boolean failFast, boolean useChecksumCache, Runnable onCompletion)
+        throws ValidationQueueFullException {
+        try (var reservation = reserve()) {
+            return submit(reservation, bagDir, bagLocation, depositType, failFast, useChecksumCache, onCompletion);
+        }
+    }
+
+    @Override
+    public Reservation reserve() throws ValidationQueueFullException {
+        if (!places.tryAcquire()) {
+            throw new ValidationQueueFullException("Too many validations in progress, try again later");
+        }
+
+        return new Place();
+    }
+
+    @Override
+    public ValidationJob submit(Reservation reservation, Path bagDir, String bagLocation, DepositType depositType, boolean failFast, boolean useChecksumCache,
+        Runnable onCompletion) throws ValidationQueueFullException {
+        if (!(reservation instanceof Place) || !((Place) reservation).take()) {
+            throw new IllegalArgumentException("Reservation was not made by this service, or has already been used or closed");
+        }
+
+        var place = (Place) reservation;
+        removeExpiredJobs();
+
+        var job = new ValidationJob(UUID.randomUUID(), bagDir, bagLocation, depositType, failFast, useChecksumCache);
+        jobs.put(job.getId(), job);
+
+        try {
+            executor.execute(() -> {
+                try {
+                    execute(job, onCompletion);
+                }
+                finally {
+                    place.release();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            place.release();
+            throw new ValidationQueueFullException("Too many validations in progress, try again later");
+        }
+
+        log.info("Queued validation job {} for bag {}", job.getId(), bagDir);
+        return job;
+    }
+
+    @Override
+    public Optional<ValidationJob> getJob(UUID id) {
+        removeExpiredJobs();
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void execute(ValidationJob job, Runnable onCompletion) {
+        log.debug("Starting validation job {}", job.getId());
+        job.start();
+
+        try {
+            job.complete(ruleEngineService.validateBag(job.getBagDir(), job.getDepositType(), job.isFailFast(), job.isUseChecksumCache()));
+            log.info("Validation job {} completed", job.getId());
+        }
+        catch (Exception e) {
+            log.error("Validation job {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+        }
+        finally {
+            onCompletion.run();
+        }
+    }
+
+    private class Place implements Reservation {
+        private final AtomicBoolean held = new AtomicBoolean(true);
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        // the job that is submitted in this place releases it when it is done
+        boolean take() {
+            return held.get() && taken.compareAndSet(false, true);
+        }
+
+        void release() {
+            if (held.compareAndSet(true, false)) {
+                places.release();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!taken.get()) {
+                release();
+            }
+        }
+    }
+
+    // completed jobs are removed lazily, when jobs are submitted or retrieved
+    private void removeExpiredJobs() {
+        var expiry = Instant.now().minus(resultRetention);
+        jobs.values().removeIf(job -> job.getCompleted() != null && job.getCompleted().isBefore(expiry));
+    }
+}
@@ -20,6 +20,7 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -40,6 +41,9 @@ public interface XmlReader {
 
     Document readXmlFile(Path path) throws ParserConfigurationException, IOException, SAXException;
 
+    // the values that the dataset.xml rules need, read in one streaming pass instead of through a DOM
+    DatasetXmlSummary readDatasetXmlSummary(Path path) throws IOException, XMLStreamException;
+
     Stream<Node> xpathToStream(Node node, String expression) throws XPathExpressionException;
 
     Stream<Node> xpathsToStream(Node node, Collection<String> expressions) throws XPathExpressionException;
@@ -24,17 +24,22 @@ import org.xml.sax.SAXException;
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.stream.IntStream;
@@ -42,30 +47,38 @@ import java.util.stream.Stream;
 
 public class XmlReaderImpl implements XmlReader {
 
-    private final XPath xpath;
-
-    public XmlReaderImpl() {
-        this.xpath = XPathFactory
+    // a thread compiles at most this many expressions before its cache is cleared; the rules only use a fixed set of them
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+
+    private static final Map<String, String> NAMESPACES = Map.of(
+        "dc", NAMESPACE_DC,
+        "dcx-dai", NAMESPACE_DCX_DAI,
+        "ddm", NAMESPACE_DDM,
+        "dcterms", NAMESPACE_DCTERMS,
+        "xsi", NAMESPACE_XSI,
+        "id-type", NAMESPACE_ID_TYPE,
+        "dcx-gml", NAMESPACE_DCX_GML,
+        "files", NAMESPACE_FILES_XML,
+        "gml", NAMESPACE_OPEN_GIS
+    );
+
+    // neither an XPath nor the expressions it compiles are thread-safe, so every thread compiles its own, once per expression
+    private final ThreadLocal<XPath> xpath = ThreadLocal.withInitial(XmlReaderImpl::newXPath);
+    private final ThreadLocal<Map<String, XPathExpression>> expressions = ThreadLocal.withInitial(HashMap::new);
+
+    // creating a builder means looking up and configuring a parser, so every thread creates one and resets it before each document
+    private final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<>();
+
+    private static XPath newXPath() {
+        var xpath = XPathFactory
             .newInstance()
             .newXPath();
 
-        final var namespaceMap = Map.of(
-            "dc", NAMESPACE_DC,
-            "dcx-dai", NAMESPACE_DCX_DAI,
-            "ddm", NAMESPACE_DDM,
-            "dcterms", NAMESPACE_DCTERMS,
-            "xsi", NAMESPACE_XSI,
-            "id-type", NAMESPACE_ID_TYPE,
-            "dcx-gml", NAMESPACE_DCX_GML,
-            "files", NAMESPACE_FILES_XML,
-            "gml", NAMESPACE_OPEN_GIS
-        );
-
         xpath.setNamespaceContext(new NamespaceContext() {
 
             @Override
             public String getNamespaceURI(String s) {
-                return namespaceMap.get(s);
+                return NAMESPACES.get(s);
             }
 
             @Override
@@ -79,27 +92,55 @@ public class XmlReaderImpl implements XmlReader {
             }
         });
 
+        return xpath;
     }
 
     @Override
     public Document readXmlFile(Path path) throws ParserConfigurationException, IOException, SAXException {
-        var factory = getFactory();
+        var builder = getDocumentBuilder();
+
+        // read through the file system of the path, which is not necessarily the default one
+        try (var input = Files.newInputStream(path)) {
+            var source = new InputSource(input);
+            source.setSystemId(path.toUri().toString());
 
-        return factory
-            .newDocumentBuilder()
-            .parse(path.toFile());
+            return builder.parse(source);
+        }
     }
 
-    public Document readXmlString(String str) throws ParserConfigurationException, IOException, SAXException {
-        var factory = getFactory();
+    @Override
+    public DatasetXmlSummary readDatasetXmlSummary(Path path) throws IOException, XMLStreamException {
+        try (var input = Files.newInputStream(path)) {
+            return DatasetXmlSummaryReader.read(input, path.toUri().toString());
+        }
+    }
+
+    public DatasetXmlSummary readDatasetXmlSummaryString(String str) throws XMLStreamException {
+        return DatasetXmlSummaryReader.read(new StringReader(str));
+    }
 
-        return factory
-            .newDocumentBuilder()
-            .parse(new InputSource(new StringReader(str)));
+    public Document readXmlString(String str) throws ParserConfigurationException, IOException, SAXException {
+        return getDocumentBuilder().parse(new InputSource(new StringReader(str)));
     }
 
     private Object evaluateXpath(Node node, String expr, QName type) throws XPathExpressionException {
-        return xpath.compile(expr).evaluate(node, type);
+        return getExpression(expr).evaluate(node, type);
+    }
+
+    private XPathExpression getExpression(String expr) throws XPathExpressionException {
+        var cache = expressions.get();
+        var expression = cache.get(expr);
+
+        if (expression == null) {
+            if (cache.size() >= MAX_CACHED_EXPRESSIONS) {
+                cache.clear();
+            }
+
+            expression = xpath.get().compile(expr);
+            cache.put(expr, expression);
+        }
+
+        return expression;
     }
 
     @Override
@@ -132,10 +173,27 @@ public class XmlReaderImpl implements XmlReader {
         return xpathsToStream(node, expressions).map(Node::getTextContent);
     }
 
-    private DocumentBuilderFactory getFactory() throws ParserConfigurationException {
+    // reset also clears whatever a parse that failed halfway left behind; the features of the factory are kept
+    private DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        var builder = documentBuilder.get();
+
+        if (builder == null) {
+            builder = newFactory().newDocumentBuilder();
+            documentBuilder.set(builder);
+        }
+        else {
+            builder.reset();
+        }
+
+        return builder;
+    }
+
+    private static DocumentBuilderFactory newFactory() throws ParserConfigurationException {
         var factory = DocumentBuilderFactory.newInstance();
         factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
         factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        // a deferred DOM builds its nodes while it is being read; a document is not shared between threads either way (see BagValidationContext)
+        factory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
         factory.setNamespaceAware(true);
         return factory;
     }
@@ -19,12 +19,24 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface XmlSchemaValidator {
 
     List<SAXParseException> validateDocument(Node node, String schema) throws IOException, SAXException;
 
+    /**
+     * Validates the file against the schema while it is being read, so that no DOM of it has to be built.
+     *
+     * @param file   the XML file
+     * @param schema the name of the schema
+     * @return the errors and warnings found
+     * @throws SAXParseException if the file is not well-formed XML
+     */
+    List<SAXParseException> validateFile(Path file, String schema) throws IOException, SAXException, ParserConfigurationException;
+
     void loadSchemaInstances() throws Exception;
 }
@@ -19,20 +19,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Node;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
 
@@ -40,12 +53,29 @@ public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
 
     private final Map<String, URI> filenameToSchemaLocation;
 
-    protected final Map<String, Schema> filenameToSchemaInstance = new HashMap<>();
-    private final SchemaFactory schemaFactory;
+    // schemas are looked up by the validations while the health check may still be loading the ones that failed before
+    protected final Map<String, Schema> filenameToSchemaInstance = new ConcurrentHashMap<>();
+
+    // null if the schema documents are read from their locations every time
+    private final SchemaDocumentCache schemaDocumentCache;
+    private final int loadThreads;
+
+    // like a DocumentBuilder in XmlReaderImpl, a parser is created once per thread and reset before each file
+    private final ThreadLocal<SAXParser> parser = new ThreadLocal<>();
 
     public XmlSchemaValidatorImpl(Map<String, URI> filenameToSchemaLocation) {
+        this(filenameToSchemaLocation, null, 1);
+    }
+
+    /**
+     * @param filenameToSchemaLocation the location of the schema for each kind of file
+     * @param cacheDirectory           the directory in which schema documents fetched over HTTP are kept, or null to fetch them every time they are loaded
+     * @param loadThreads              the number of schemas that are loaded at the same time
+     */
+    public XmlSchemaValidatorImpl(Map<String, URI> filenameToSchemaLocation, Path cacheDirectory, int loadThreads) {
         this.filenameToSchemaLocation = filenameToSchemaLocation;
-        this.schemaFactory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
+        this.schemaDocumentCache = cacheDirectory == null ? null : new SchemaDocumentCache(cacheDirectory);
+        this.loadThreads = loadThreads;
 
         try {
             this.loadSchemaInstances();
@@ -57,6 +87,23 @@ public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
 
     @Override
     public List<SAXParseException> validateDocument(Node node, String schema) throws IOException, SAXException {
+        return validate(new DOMSource(node), schema);
+    }
+
+    @Override
+    public List<SAXParseException> validateFile(Path file, String schema) throws IOException, SAXException, ParserConfigurationException {
+        var xmlReader = getParser().getXMLReader();
+
+        // read through the file system of the path, which is not necessarily the default one
+        try (var input = Files.newInputStream(file)) {
+            var source = new InputSource(input);
+            source.setSystemId(file.toUri().toString());
+
+            return validate(new SAXSource(xmlReader, source), schema);
+        }
+    }
+
+    private List<SAXParseException> validate(Source source, String schema) throws IOException, SAXException {
         var schemaInstance = getSchemaInstanceFor(schema);
 
         if (schemaInstance == null) {
@@ -85,34 +132,104 @@ public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
             }
         });
 
-        validator.validate(new DOMSource(node));
+        validator.validate(source);
 
         return exceptions;
     }
 
+    private SAXParser getParser() throws ParserConfigurationException, SAXException {
+        var saxParser = parser.get();
+
+        if (saxParser == null) {
+            // the same restrictions as the DocumentBuilder in XmlReaderImpl, so that a file is refused for the same reasons as before
+            var factory = SAXParserFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setNamespaceAware(true);
+            saxParser = factory.newSAXParser();
+            parser.set(saxParser);
+        }
+        else {
+            saxParser.reset();
+        }
+
+        return saxParser;
+    }
+
     @Override
     public void loadSchemaInstances() {
-        for (var filename : filenameToSchemaLocation.keySet()) {
-            log.trace("Start loading of schema instance for {}", filename);
-            if (filenameToSchemaInstance.get(filename) != null) {
-                log.trace("Schema instance {} already loaded, skipping", filename);
-                continue;
+        var filenames = filenameToSchemaLocation.keySet().stream()
+            .filter(filename -> {
+                log.trace("Start loading of schema instance for {}", filename);
+
+                if (filenameToSchemaInstance.get(filename) != null) {
+                    log.trace("Schema instance {} already loaded, skipping", filename);
+                    return false;
+                }
+
+                return true;
+            })
+            .collect(Collectors.toList());
+
+        if (loadThreads <= 1 || filenames.size() <= 1) {
+            filenames.forEach(this::loadSchemaInstance);
+            return;
+        }
+
+        // compiling a schema mostly waits for its documents to be read, so they are loaded side by side; all of them are tried, even if one fails
+        var executor = Executors.newFixedThreadPool(Math.min(loadThreads, filenames.size()));
+
+        try {
+            var futures = new ArrayList<Future<?>>();
+
+            for (var filename : filenames) {
+                futures.add(executor.submit(() -> loadSchemaInstance(filename)));
             }
 
-            try {
-                log.info("Loading validator for {}...", filename);
-                getSchemaInstanceFor(filename);
-                log.info("Validator for {} loaded.", filename);
+            RuntimeException failure = null;
+
+            for (var future : futures) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+
+                    if (failure == null) {
+                        failure = (RuntimeException) e.getCause();
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while loading XML schemas", e);
+                }
             }
-            catch (MalformedURLException | SAXException e) {
-                log.error("Unable to load validator for filename {}", filename, e);
-                var url = filenameToSchemaLocation.get(filename);
-                throw new RuntimeException(String.format("Unable to load XSD '%s'", url), e);
+
+            if (failure != null) {
+                throw failure;
             }
         }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void loadSchemaInstance(String filename) {
+        try {
+            log.info("Loading validator for {}...", filename);
+            getSchemaInstanceFor(filename);
+            log.info("Validator for {} loaded.", filename);
+        }
+        catch (IOException | SAXException e) {
+            log.error("Unable to load validator for filename {}", filename, e);
+            var url = filenameToSchemaLocation.get(filename);
+            throw new RuntimeException(String.format("Unable to load XSD '%s'", url), e);
+        }
     }
 
-    private Schema getSchemaInstanceFor(String filename) throws MalformedURLException, SAXException {
+    private Schema getSchemaInstanceFor(String filename) throws IOException, SAXException {
         log.debug("Looking up validator schema for file {}", filename);
         var schemaInstance = filenameToSchemaInstance.get(filename);
         log.debug("Found validator schema {}", schemaInstance);
@@ -123,7 +240,7 @@ public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
 
             if (schemaLocation != null) {
                 log.debug("Found schema location: {}", schemaLocation);
-                schemaInstance = schemaFactory.newSchema(new URL(schemaLocation.toASCIIString()));
+                schemaInstance = newSchema(schemaLocation);
                 log.debug("Caching schema instance for {}", schemaLocation);
                 filenameToSchemaInstance.put(filename, schemaInstance);
             }
@@ -134,4 +251,25 @@ public class XmlSchemaValidatorImpl implements XmlSchemaValidator {
 
         return schemaInstance;
     }
+
+    private Schema newSchema(URI schemaLocation) throws IOException, SAXException {
+        // a schema factory is not thread-safe, and schemas may be loaded in parallel
+        var schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+        if (schemaDocumentCache == null) {
+            return schemaFactory.newSchema(new URL(schemaLocation.toASCIIString()));
+        }
+
+        schemaFactory.setResourceResolver(schemaDocumentCache);
+        var file = schemaDocumentCache.getFile(schemaLocation);
+
+        if (file == null) {
+            return schemaFactory.newSchema(new URL(schemaLocation.toASCIIString()));
+        }
+
+        // the documents it imports are resolved against the original location, and thereby also read through the cache
+        try (var input = Files.newInputStream(file)) {
+            return schemaFactory.newSchema(new StreamSource(input, schemaLocation.toASCIIString()));
+        }
+    }
 }
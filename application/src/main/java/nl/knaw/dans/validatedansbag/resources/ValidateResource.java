@@ -15,12 +15,22 @@
  */
 package nl.knaw.dans.validatedansbag.resources;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.annotation.Timed;
 import nl.knaw.dans.validatedansbag.api.ValidateCommand;
 import nl.knaw.dans.validatedansbag.api.ValidateOk;
 import nl.knaw.dans.validatedansbag.api.ValidateOkRuleViolations;
 import nl.knaw.dans.validatedansbag.core.BagNotFoundException;
+import nl.knaw.dans.validatedansbag.core.ExtractionCancelledException;
+import nl.knaw.dans.validatedansbag.core.InsufficientTempSpaceException;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
 import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
+import nl.knaw.dans.validatedansbag.core.service.BagInventory;
+import nl.knaw.dans.validatedansbag.core.service.ExtractionListener;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 import nl.knaw.dans.validatedansbag.core.service.RuleEngineService;
 import org.glassfish.jersey.media.multipart.FormDataParam;
@@ -31,13 +41,17 @@ import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Path("/validate")
@@ -49,12 +63,44 @@ public class ValidateResource {
 
     private final FileService fileService;
 
+    private final Timer extractionTimer;
+
+    private final Timer rulesTimer;
+
+    private final Histogram bagSizes;
+
+    private final Histogram fileCounts;
+
+    private final boolean pipelineRules;
+
     public ValidateResource(RuleEngineService ruleEngineService, FileService fileService) {
+        this(ruleEngineService, fileService, new MetricRegistry());
+    }
+
+    public ValidateResource(RuleEngineService ruleEngineService, FileService fileService, MetricRegistry metricRegistry) {
+        this(ruleEngineService, fileService, metricRegistry, false);
+    }
+
+    /**
+     * @param ruleEngineService the service that validates the bags
+     * @param fileService       the service that extracts the uploaded zips
+     * @param metricRegistry    the registry to register the metrics in
+     * @param pipelineRules     whether rules that only read a few files of an uploaded bag are started as soon as those files have been extracted, instead of after the
+     *                          whole zip has been extracted
+     */
+    public ValidateResource(RuleEngineService ruleEngineService, FileService fileService, MetricRegistry metricRegistry, boolean pipelineRules) {
         this.ruleEngineService = ruleEngineService;
         this.fileService = fileService;
+        this.pipelineRules = pipelineRules;
+        // the end-to-end latency is measured by the timers of the resource methods themselves
+        this.extractionTimer = metricRegistry.timer(MetricRegistry.name(ValidateResource.class, "extraction"));
+        this.rulesTimer = metricRegistry.timer(MetricRegistry.name(ValidateResource.class, "rules"));
+        this.bagSizes = metricRegistry.histogram(MetricRegistry.name(ValidateResource.class, "bag-size"));
+        this.fileCounts = metricRegistry.histogram(MetricRegistry.name(ValidateResource.class, "file-count"));
     }
 
     @POST
+    @Timed
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
     public ValidateOk validateFormData(
@@ -63,6 +109,8 @@ public class ValidateResource {
     ) {
         var location = command.getBagLocation();
         var depositType = toDepositType(command.getPackageType());
+        var failFast = Boolean.TRUE.equals(command.getFailFast());
+        var forceFullVerification = Boolean.TRUE.equals(command.getForceFullVerification());
 
         log.info("Received request to validate bag: {}", command);
 
@@ -70,11 +118,17 @@ public class ValidateResource {
             ValidateOk validateResult;
 
             if (location == null) {
-                validateResult = validateInputStream(zipInputStream, depositType);
+                validateResult = validateInputStream(zipInputStream, depositType, failFast);
             }
             else {
                 var locationPath = java.nio.file.Path.of(location);
-                validateResult = validatePath(locationPath, depositType);
+
+                if (fileService.isArchive(locationPath)) {
+                    validateResult = validateArchive(locationPath, depositType, failFast);
+                }
+                else {
+                    validateResult = validatePath(locationPath, depositType, failFast, !forceFullVerification);
+                }
             }
 
             // this information is lost during the validation, so set it again here
@@ -86,6 +140,9 @@ public class ValidateResource {
             log.error("Bag not found", e);
             throw new BadRequestException("Request could not be processed: " + e.getMessage(), e);
         }
+        catch (InsufficientTempSpaceException e) {
+            throw serviceUnavailable(e);
+        }
         catch (Exception e) {
             log.error("Internal server error", e);
             throw new InternalServerErrorException("Internal server error", e);
@@ -93,55 +150,153 @@ public class ValidateResource {
     }
 
     @POST
+    @Timed
     @Consumes({ "application/zip" })
     @Produces({ MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
-    public ValidateOk validateZip(InputStream inputStream) {
+    public ValidateOk validateZip(InputStream inputStream, @QueryParam("failFast") @DefaultValue("false") boolean failFast) {
         try {
-            log.info("Received request to validate zip file");
-            return validateInputStream(inputStream, DepositType.DEPOSIT);
+            log.info("Received request to validate zip file (fail fast: {})", failFast);
+            return validateInputStream(inputStream, DepositType.DEPOSIT, failFast);
         }
         catch (BagNotFoundException e) {
             log.error("Bag not found", e);
             throw new BadRequestException("Request could not be processed: " + e.getMessage(), e);
         }
+        catch (InsufficientTempSpaceException e) {
+            throw serviceUnavailable(e);
+        }
         catch (Exception e) {
             log.error("Internal server error", e);
             throw new InternalServerErrorException("Internal server error", e);
         }
     }
 
-    ValidateOk validateInputStream(InputStream inputStream, DepositType depositType) throws Exception {
-        var tempPath = fileService.extractZipFile(inputStream);
+    private ServiceUnavailableException serviceUnavailable(InsufficientTempSpaceException e) {
+        log.warn("Refusing validation: {}", e.getMessage());
+        return new ServiceUnavailableException(e.getMessage());
+    }
+
+    ValidateOk validateInputStream(InputStream inputStream, DepositType depositType, boolean failFast) throws Exception {
+        if (pipelineRules) {
+            return validateInputStreamPipelined(inputStream, depositType, failFast);
+        }
+
+        java.nio.file.Path tempPath;
+
+        try (var ignored = extractionTimer.time()) {
+            tempPath = fileService.openZipFile(inputStream);
+        }
 
         try {
-            var bagDir = fileService.getFirstDirectory(tempPath)
-                .orElseThrow(() -> new BagNotFoundException("Extracted zip does not contain a directory"));
+            var bagDir = getBagDir(tempPath);
 
-            return validatePath(bagDir, depositType);
+            // an uploaded bag is only validated once, so there is no point in caching its checksums
+            return validatePath(bagDir, depositType, failFast, false);
         }
         finally {
+            closeZipFile(tempPath);
+        }
+
+    }
+
+    // starts rules while the zip is being extracted, so that they are done, or nearly done, by the time the last file has been written; in fail-fast mode, the rest of the
+    // upload is not read once one of them has made the bag non-compliant
+    private ValidateOk validateInputStreamPipelined(InputStream inputStream, DepositType depositType, boolean failFast) throws Exception {
+        try (var speculation = new SpeculatingListener(depositType, failFast)) {
+            java.nio.file.Path tempPath;
+
+            try (var ignored = extractionTimer.time()) {
+                tempPath = fileService.openZipFile(inputStream, speculation);
+            }
+            catch (ExtractionCancelledException e) {
+                // in fail-fast mode, a rule has already made the bag non-compliant, so the rest of the upload is not needed; the partial extraction has been removed
+                log.info("Stopped reading the upload of {}, because it is not compliant", speculation.getContext().getBagDir().getFileName());
+                return toValidateOk(speculation.getContext().getBagDir(), depositType, speculation.getFailedResults());
+            }
+
             try {
-                fileService.deleteDirectoryAndContents(tempPath);
+                var bagDir = getBagDir(tempPath);
+                var context = speculation.getContext();
+
+                // the rules were started for another directory than the one that is validated, so their results cannot be used
+                if (context == null || !context.getBagDir().equals(bagDir)) {
+                    return validatePath(bagDir, depositType, failFast, false);
+                }
+
+                return validate(context, depositType);
             }
-            catch (IOException e) {
-                log.error("Error cleaning up temporary directory");
+            finally {
+                closeZipFile(tempPath);
             }
         }
+    }
+
+    // a zip is read in place and a tar is read once, as a stream; the archive itself is left where it is
+    ValidateOk validateArchive(java.nio.file.Path archive, DepositType depositType, boolean failFast) throws Exception {
+        java.nio.file.Path tempPath;
 
+        try (var ignored = extractionTimer.time()) {
+            tempPath = fileService.openArchive(archive);
+        }
+
+        try {
+            // the contents of an archive get new paths on every request, so their checksums are not cached
+            return validatePath(getBagDir(tempPath), depositType, failFast, false);
+        }
+        finally {
+            closeZipFile(tempPath);
+        }
     }
 
-    ValidateOk validatePath(java.nio.file.Path bagDir, DepositType depositType) throws Exception {
-        var results = ruleEngineService.validateBag(bagDir, depositType);
-        var isValid = results.stream().noneMatch(r -> r.getStatus().equals(RuleValidationResult.RuleValidationResultStatus.FAILURE));
+    private java.nio.file.Path getBagDir(java.nio.file.Path tempPath) throws IOException, BagNotFoundException {
+        return fileService.getFirstDirectory(tempPath)
+            .orElseThrow(() -> new BagNotFoundException("Extracted zip does not contain a directory"));
+    }
+
+    private void closeZipFile(java.nio.file.Path tempPath) {
+        try {
+            fileService.closeZipFile(tempPath);
+        }
+        catch (IOException e) {
+            log.error("Error cleaning up temporary directory");
+        }
+    }
+
+    ValidateOk validatePath(java.nio.file.Path bagDir, DepositType depositType, boolean failFast, boolean useChecksumCache) throws Exception {
+        return validate(new BagValidationContext(bagDir, failFast, useChecksumCache), depositType);
+    }
+
+    private ValidateOk validate(BagValidationContext context, DepositType depositType) throws Exception {
+        List<RuleValidationResult> results;
+
+        try (var ignored = rulesTimer.time()) {
+            results = ruleEngineService.validateBag(context, depositType);
+        }
+
+        recordBagSize(context);
+
+        var result = toValidateOk(context.getBagDir(), depositType, results);
+        log.debug("Validation result: {}", result);
+
+        return result;
+    }
+
+    // also used for the results of asynchronous validation jobs
+    static ValidateOk toValidateOk(java.nio.file.Path bagDir, DepositType depositType, List<RuleValidationResult> results) {
+        // a rule that timed out could not confirm that the bag is compliant, so it is reported as a violation
+        var isValid = results.stream().noneMatch(r -> isViolation(r.getStatus()));
+        var isPartial = results.stream().anyMatch(r -> r.getStatus().equals(RuleValidationResult.RuleValidationResultStatus.CANCELLED)
+            || r.getStatus().equals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT));
 
         var result = new ValidateOk();
         result.setBagLocation(null);
         result.setIsCompliant(isValid);
+        result.setIsPartial(isPartial);
         result.setName(bagDir.getFileName().toString());
         result.setProfileVersion("1.0.0");
         result.setInformationPackageType(toInfoPackageType(depositType));
         result.setRuleViolations(results.stream()
-            .filter(r -> r.getStatus().equals(RuleValidationResult.RuleValidationResultStatus.FAILURE))
+            .filter(r -> isViolation(r.getStatus()))
             .map(rule -> {
                 var ret = new ValidateOkRuleViolations();
                 ret.setRule(rule.getNumber());
@@ -157,19 +312,84 @@ public class ValidateResource {
             })
             .collect(Collectors.toList()));
 
-        log.debug("Validation result: {}", result);
-
         return result;
     }
 
-    DepositType toDepositType(ValidateCommand.PackageTypeEnum value) {
+    // the inventory that the rules have built is reused, so that the bag is not walked once more; it is missing if validation stopped before any rule needed it
+    private void recordBagSize(BagValidationContext context) {
+        context.findLoaded(BagInventory.class).ifPresent(inventory -> {
+            bagSizes.update(inventory.getTotalSize());
+            fileCounts.update(inventory.getFileCount());
+        });
+    }
+
+    // starts the speculative rules for the first directory in the zip, which is normally the bag
+    private class SpeculatingListener implements ExtractionListener, AutoCloseable {
+        private final DepositType depositType;
+        private final boolean failFast;
+        private BagValidationContext context;
+        private RuleSpeculation rules;
+
+        SpeculatingListener(DepositType depositType, boolean failFast) {
+            this.depositType = depositType;
+            this.failFast = failFast;
+        }
+
+        @Override
+        public void fileExtracted(java.nio.file.Path root, java.nio.file.Path file) {
+            var relative = root.relativize(file);
+
+            if (context == null && relative.getNameCount() > 1) {
+                // an uploaded bag is only validated once, so there is no point in caching its checksums
+                context = new BagValidationContext(root.resolve(relative.getName(0).toString()), failFast, false);
+
+                try {
+                    rules = ruleEngineService.speculate(context, depositType);
+                }
+                catch (Exception e) {
+                    log.warn("Unable to start rules before the zip has been extracted", e);
+                }
+            }
+
+            if (rules != null && file.startsWith(context.getBagDir())) {
+                rules.fileArrived(context.getBagDir().relativize(file));
+            }
+        }
+
+        @Override
+        public boolean isExtractionCancelled() {
+            return rules != null && rules.isFailed();
+        }
+
+        // null if the zip had no files in a directory
+        BagValidationContext getContext() {
+            return context;
+        }
+
+        List<RuleValidationResult> getFailedResults() {
+            return rules.getFailedResults();
+        }
+
+        @Override
+        public void close() {
+            if (rules != null) {
+                rules.close();
+            }
+        }
+    }
+
+    private static boolean isViolation(RuleValidationResult.RuleValidationResultStatus status) {
+        return status.equals(RuleValidationResult.RuleValidationResultStatus.FAILURE) || status.equals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT);
+    }
+
+    static DepositType toDepositType(ValidateCommand.PackageTypeEnum value) {
         if (ValidateCommand.PackageTypeEnum.MIGRATION.equals(value)) {
             return DepositType.MIGRATION;
         }
         return DepositType.DEPOSIT;
     }
 
-    ValidateOk.InformationPackageTypeEnum toInfoPackageType(DepositType value) {
+    static ValidateOk.InformationPackageTypeEnum toInfoPackageType(DepositType value) {
         if (DepositType.MIGRATION.equals(value)) {
             return ValidateOk.InformationPackageTypeEnum.MIGRATION;
         }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.resources;
+
+import nl.knaw.dans.validatedansbag.api.ValidateCommand;
+import nl.knaw.dans.validatedansbag.api.ValidationJobStatus;
+import nl.knaw.dans.validatedansbag.core.BagNotFoundException;
+import nl.knaw.dans.validatedansbag.core.InsufficientTempSpaceException;
+import nl.knaw.dans.validatedansbag.core.ValidationQueueFullException;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.service.FileService;
+import nl.knaw.dans.validatedansbag.core.service.ValidationJob;
+import nl.knaw.dans.validatedansbag.core.service.ValidationJobService;
+import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+@Path("/jobs")
+public class ValidationJobResource {
+
+    private static final Logger log = LoggerFactory.getLogger(ValidationJobResource.class);
+
+    private final ValidationJobService validationJobService;
+
+    private final FileService fileService;
+
+    private final Duration retryAfter;
+
+    public ValidationJobResource(ValidationJobService validationJobService, FileService fileService, Duration retryAfter) {
+        this.validationJobService = validationJobService;
+        this.fileService = fileService;
+        this.retryAfter = retryAfter;
+    }
+
+    @POST
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitFormData(
+        @Valid @NotNull @FormDataParam(value = "command") ValidateCommand command,
+        @FormDataParam(value = "zip") InputStream zipInputStream,
+        @Context UriInfo uriInfo
+    ) {
+        var location = command.getBagLocation();
+        var depositType = ValidateResource.toDepositType(command.getPackageType());
+        var failFast = Boolean.TRUE.equals(command.getFailFast());
+        var forceFullVerification = Boolean.TRUE.equals(command.getForceFullVerification());
+
+        log.info("Received request to queue validation of bag: {}", command);
+
+        try {
+            if (location == null) {
+                return accepted(submitInputStream(zipInputStream, depositType, failFast), uriInfo);
+            }
+
+            var bagDir = java.nio.file.Path.of(location);
+
+            // checked here, so that the client gets an immediate response instead of a failed job
+            if (!fileService.isReadable(bagDir)) {
+                throw new BagNotFoundException(String.format("Bag on path '%s' could not be found or read", bagDir));
+            }
+
+            if (fileService.isArchive(bagDir)) {
+                // a tar is extracted before the job is queued, so a full queue is reported before that is done
+                try (var reservation = validationJobService.reserve()) {
+                    return accepted(submitExtracted(reservation, fileService.openArchive(bagDir), location, depositType, failFast), uriInfo);
+                }
+            }
+
+            return accepted(validationJobService.submit(bagDir, location, depositType, failFast, !forceFullVerification, () -> {}), uriInfo);
+        }
+        catch (BagNotFoundException e) {
+            log.error("Bag not found", e);
+            throw new BadRequestException("Request could not be processed: " + e.getMessage(), e);
+        }
+        catch (ValidationQueueFullException e) {
+            throw tooManyRequests(e);
+        }
+        catch (InsufficientTempSpaceException e) {
+            throw serviceUnavailable(e);
+        }
+        catch (Exception e) {
+            log.error("Internal server error", e);
+            throw new InternalServerErrorException("Internal server error", e);
+        }
+    }
+
+    @POST
+    @Consumes({ "application/zip" })
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response submitZip(InputStream inputStream, @QueryParam("failFast") @DefaultValue("false") boolean failFast, @Context UriInfo uriInfo) {
+        try {
+            log.info("Received request to queue validation of zip file (fail fast: {})", failFast);
+            return accepted(submitInputStream(inputStream, DepositType.DEPOSIT, failFast), uriInfo);
+        }
+        catch (BagNotFoundException e) {
+            log.error("Bag not found", e);
+            throw new BadRequestException("Request could not be processed: " + e.getMessage(), e);
+        }
+        catch (ValidationQueueFullException e) {
+            throw tooManyRequests(e);
+        }
+        catch (InsufficientTempSpaceException e) {
+            throw serviceUnavailable(e);
+        }
+        catch (Exception e) {
+            log.error("Internal server error", e);
+            throw new InternalServerErrorException("Internal server error", e);
+        }
+    }
+
+    @GET
+    @Path("/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ValidationJobStatus getJob(@PathParam("id") UUID id) {
+        return validationJobService.getJob(id)
+            .map(this::toValidationJobStatus)
+            .orElseThrow(() -> new NotFoundException(String.format("No validation job with id %s", id)));
+    }
+
+    // the upload is stored while the client is still connected; it is removed when the job has completed. The place in the queue is taken before the upload is read, so that a
+    // client is told that the queue is full before it has sent the whole bag
+    ValidationJob submitInputStream(InputStream inputStream, DepositType depositType, boolean failFast) throws Exception {
+        try (var reservation = validationJobService.reserve()) {
+            return submitExtracted(reservation, fileService.openZipFile(inputStream), null, depositType, failFast);
+        }
+    }
+
+    // the job owns the opened archive and closes it when it has completed
+    private ValidationJob submitExtracted(ValidationJobService.Reservation reservation, java.nio.file.Path tempPath, String location, DepositType depositType, boolean failFast)
+        throws Exception {
+        try {
+            var bagDir = fileService.getFirstDirectory(tempPath)
+                .orElseThrow(() -> new BagNotFoundException("Extracted zip does not contain a directory"));
+
+            return validationJobService.submit(reservation, bagDir, location, depositType, failFast, false, () -> deleteTempDirectory(tempPath));
+        }
+        catch (Exception e) {
+            deleteTempDirectory(tempPath);
+            throw e;
+        }
+    }
+
+    private void deleteTempDirectory(java.nio.file.Path tempPath) {
+        try {
+            fileService.closeZipFile(tempPath);
+        }
+        catch (IOException e) {
+            log.error("Error cleaning up temporary directory");
+        }
+    }
+
+    private Response accepted(ValidationJob job, UriInfo uriInfo) {
+        return Response.accepted(toValidationJobStatus(job))
+            .location(uriInfo.getAbsolutePathBuilder().path(job.getId().toString()).build())
+            .build();
+    }
+
+    private WebApplicationException tooManyRequests(ValidationQueueFullException e) {
+        log.warn("Refusing validation job: {}", e.getMessage());
+        return new WebApplicationException(e.getMessage(), Response.status(Response.Status.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, retryAfter.toSeconds())
+            .build());
+    }
+
+    private WebApplicationException serviceUnavailable(InsufficientTempSpaceException e) {
+        log.warn("Refusing validation job: {}", e.getMessage());
+        return new WebApplicationException(e.getMessage(), Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, retryAfter.toSeconds())
+            .build());
+    }
+
+    ValidationJobStatus toValidationJobStatus(ValidationJob job) {
+        var status = new ValidationJobStatus();
+        status.setId(job.getId());
+        status.setStatus(ValidationJobStatus.StatusEnum.valueOf(job.getStatus().name()));
+        status.setSubmitted(OffsetDateTime.ofInstant(job.getSubmitted(), ZoneOffset.UTC));
+
+        if (job.getCompleted() != null) {
+            status.setCompleted(OffsetDateTime.ofInstant(job.getCompleted(), ZoneOffset.UTC));
+        }
+
+        if (job.getStatus() == ValidationJob.Status.DONE) {
+            var result = ValidateResource.toValidateOk(job.getBagDir(), job.getDepositType(), job.getResults());
+            result.setBagLocation(job.getBagLocation());
+            status.setResult(result);
+        }
+
+        if (job.getStatus() == ValidationJob.Status.FAILED) {
+            status.setError(job.getErrorMessage());
+        }
+
+        return status;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import org.junit.jupiter.api.Test;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BagValidationContextTest {
+
+    @Test
+    void get_should_load_artifact_only_once() throws Exception {
+        var context = new BagValidationContext(Path.of("bagdir"));
+        var calls = new AtomicInteger();
+
+        var first = context.get("artifact", bagDir -> bagDir.resolve("file-" + calls.incrementAndGet()));
+        var second = context.get("artifact", bagDir -> bagDir.resolve("file-" + calls.incrementAndGet()));
+
+        assertEquals(Path.of("bagdir/file-1"), first);
+        assertEquals(Path.of("bagdir/file-1"), second);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void get_should_not_cache_failures() throws Exception {
+        var context = new BagValidationContext(Path.of("bagdir"));
+
+        assertThrows(IOException.class, () -> context.get("artifact", bagDir -> {
+            throw new IOException("broken");
+        }));
+
+        assertEquals("ok", context.get("artifact", bagDir -> "ok"));
+    }
+
+    @Test
+    void get_should_refuse_a_DOM_as_artifact() {
+        var context = new BagValidationContext(Path.of("bagdir"));
+
+        assertThrows(IllegalStateException.class, () -> context.get("xml", bagDir -> DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument()));
+    }
+
+    @Test
+    void findLoaded_should_return_only_artifacts_that_were_loaded() throws Exception {
+        var context = new BagValidationContext(Path.of("bagdir"));
+
+        assertEquals(Optional.empty(), context.findLoaded(String.class));
+        assertThrows(IOException.class, () -> context.get("failing", bagDir -> {
+            throw new IOException("not readable");
+        }));
+        context.get("count", bagDir -> 42);
+
+        assertEquals(Optional.of(42), context.findLoaded(Integer.class));
+        assertEquals(Optional.empty(), context.findLoaded(String.class));
+    }
+}
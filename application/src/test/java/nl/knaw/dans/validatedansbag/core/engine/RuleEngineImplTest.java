@@ -15,16 +15,31 @@
  */
 package nl.knaw.dans.validatedansbag.core.engine;
 
+import com.codahale.metrics.MetricRegistry;
 import nl.knaw.dans.validatedansbag.core.rules.BagValidatorRule;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class RuleEngineImplTest {
 
@@ -42,7 +57,7 @@ class RuleEngineImplTest {
 
         var engine = new RuleEngineImpl();
         assertDoesNotThrow(() -> engine.validateRuleConfiguration(rules));
-        assertDoesNotThrow(() -> engine.validateRules(Path.of("somedir"), rules, DepositType.DEPOSIT));
+        assertDoesNotThrow(() -> engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT));
 
         Mockito.verify(fakeRule, Mockito.times(4)).validate(Mockito.any());
     }
@@ -65,7 +80,7 @@ class RuleEngineImplTest {
 
         var engine = new RuleEngineImpl();
         assertDoesNotThrow(() -> engine.validateRuleConfiguration(rules));
-        assertDoesNotThrow(() -> engine.validateRules(Path.of("somedir"), rules, DepositType.DEPOSIT));
+        assertDoesNotThrow(() -> engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT));
 
         Mockito.verify(fakeRule, Mockito.times(2)).validate(Mockito.any());
         Mockito.verify(fakeRuleSkipped).validate(Mockito.any());
@@ -87,7 +102,7 @@ class RuleEngineImplTest {
 
         var engine = new RuleEngineImpl();
         assertDoesNotThrow(() -> engine.validateRuleConfiguration(rules));
-        assertDoesNotThrow(() -> engine.validateRules(Path.of("somedir"), rules, DepositType.DEPOSIT));
+        assertDoesNotThrow(() -> engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT));
 
         Mockito.verify(fakeRule, Mockito.times(4)).validate(Mockito.any());
     }
@@ -225,6 +240,58 @@ class RuleEngineImplTest {
 
     }
 
+    @Test
+    void validateRuleConfiguration_should_throw_when_rule_depends_on_itself() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule, List.of("1.1", "1.2")),
+        };
+
+        var engine = new RuleEngineImpl();
+
+        assertThrows(RuleEngineConfigurationException.class,
+            () -> engine.validateRuleConfiguration(rules));
+    }
+
+    @Test
+    void validateRuleConfiguration_should_throw_when_dependencies_are_circular() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+
+        // 1.2 -> 1.4 -> 1.3 -> 1.2
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule, List.of("1.1", "1.4")),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+            new NumberedRule("1.4", fakeRule, List.of("1.3")),
+        };
+
+        var engine = new RuleEngineImpl();
+
+        assertThrows(RuleEngineConfigurationException.class,
+            () -> engine.validateRuleConfiguration(rules));
+    }
+
+    @Test
+    void validateRules_should_return_results_in_declaration_order() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+
+        // 1.1 can only be executed after 1.3, but is declared first
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule, List.of("1.3")),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+        };
+
+        var engine = new RuleEngineImpl();
+        engine.validateRuleConfiguration(rules);
+        var result = engine.validateRules(new BagValidationContext(Path.of("bagdir")), rules, DepositType.DEPOSIT);
+
+        assertEquals(List.of("1.1", "1.2", "1.3"), result.stream().map(RuleValidationResult::getNumber).collect(Collectors.toList()));
+    }
+
     @Test
     void validateRules_should_return_exactly_3_results_when_rule_is_violated() throws Exception {
         var badResult = new RuleResult(RuleResult.Status.ERROR, List.of());
@@ -244,8 +311,551 @@ class RuleEngineImplTest {
         };
 
         var engine = new RuleEngineImpl();
-        var result = engine.validateRules(Path.of("bagdir"), rules, DepositType.DEPOSIT);
+        var result = engine.validateRules(new BagValidationContext(Path.of("bagdir")), rules, DepositType.DEPOSIT);
 
         assertEquals(3, result.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateRules_should_call_all_rules_exactly_once_on_executor() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var result = new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(result);
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule, List.of("1.1")),
+            new NumberedRule("1.3", fakeRule, List.of("1.1")),
+            new NumberedRule("1.4", fakeRule, List.of("1.2", "1.3")),
+        };
+
+        var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            var engine = new RuleEngineImpl(executor);
+            assertDoesNotThrow(() -> engine.validateRuleConfiguration(rules));
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(4, results.size());
+            assertTrue(results.stream().allMatch(r -> RuleValidationResult.RuleValidationResultStatus.SUCCESS.equals(r.getStatus())));
+            Mockito.verify(fakeRule, Mockito.times(4)).validate(Mockito.any());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_skip_dependants_of_failed_rule_on_executor() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var fakeErrorRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(fakeErrorRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.ERROR, List.of("error")));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeErrorRule, List.of("1.1")),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+            new NumberedRule("1.4", fakeRule, List.of("1.3")),
+        };
+
+        var executor = Executors.newFixedThreadPool(4);
+
+        try {
+            var engine = new RuleEngineImpl(executor);
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.FAILURE, results.get(1).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SKIPPED, results.get(2).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SKIPPED, results.get(3).getStatus());
+            Mockito.verify(fakeRule, Mockito.times(1)).validate(Mockito.any());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_propagate_exception_thrown_by_rule_on_executor() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenThrow(new IOException("broken"));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor);
+            assertThrows(IOException.class, () -> engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_stop_at_first_failure_in_fail_fast_mode() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var fakeErrorRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(fakeErrorRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.ERROR, List.of("error")));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeErrorRule),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+        };
+
+        var engine = new RuleEngineImpl();
+        var results = engine.validateRules(new BagValidationContext(Path.of("somedir"), true), rules, DepositType.DEPOSIT);
+
+        Mockito.verifyNoInteractions(fakeRule);
+        assertEquals(3, results.size());
+        assertEquals(RuleValidationResult.RuleValidationResultStatus.FAILURE, results.get(0).getStatus());
+        assertEquals(RuleValidationResult.RuleValidationResultStatus.CANCELLED, results.get(1).getStatus());
+        assertEquals(RuleValidationResult.RuleValidationResultStatus.CANCELLED, results.get(2).getStatus());
+    }
+
+    @Test
+    void validateRules_should_execute_all_rules_when_not_in_fail_fast_mode() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var fakeErrorRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(fakeErrorRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.ERROR, List.of("error")));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeErrorRule),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+        };
+
+        var engine = new RuleEngineImpl();
+        var results = engine.validateRules(new BagValidationContext(Path.of("somedir"), false), rules, DepositType.DEPOSIT);
+
+        Mockito.verify(fakeRule, Mockito.times(2)).validate(Mockito.any());
+        assertTrue(results.stream().noneMatch(r -> r.getStatus().equals(RuleValidationResult.RuleValidationResultStatus.CANCELLED)));
+    }
+
+    @Test
+    void validateRules_should_start_with_rule_that_failed_before_in_fail_fast_mode() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var fakeErrorRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(10);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+        Mockito.when(fakeErrorRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.ERROR, List.of("error")));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeErrorRule),
+        };
+
+        var engine = new RuleEngineImpl();
+
+        // the first validation runs the rules in declaration order and records their timings and results
+        engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+        Mockito.clearInvocations(fakeRule);
+
+        var results = engine.validateRules(new BagValidationContext(Path.of("somedir"), true), rules, DepositType.DEPOSIT);
+
+        Mockito.verifyNoInteractions(fakeRule);
+        assertEquals(RuleValidationResult.RuleValidationResultStatus.CANCELLED, results.get(0).getStatus());
+        assertEquals(RuleValidationResult.RuleValidationResultStatus.FAILURE, results.get(1).getStatus());
+    }
+
+    @Test
+    void validateRules_should_interrupt_rule_that_exceeds_its_timeout_and_skip_its_dependants() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var slowRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(slowRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(60_000);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", slowRule).withTimeout(Duration.ofMillis(100)),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor);
+            var start = System.nanoTime();
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(10)) < 0);
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, results.get(1).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SKIPPED, results.get(2).getStatus());
+            Mockito.verify(fakeRule, Mockito.times(1)).validate(Mockito.any());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_apply_default_rule_timeout_to_rules_without_timeout() throws Exception {
+        var slowRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(slowRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", slowRule),
+            new NumberedRule("1.2", slowRule).withTimeout(Duration.ofSeconds(30)),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor, 2, Duration.ofMillis(100), null);
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(1).getStatus());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_not_reuse_the_thread_of_a_timed_out_rule_before_it_returns() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var stubbornRule = Mockito.mock(BagValidatorRule.class);
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(stubbornRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            var end = System.nanoTime() + Duration.ofMillis(500).toNanos();
+
+            // ignores the interrupt
+            while (System.nanoTime() - end < 0) {
+                try {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e) {
+                    // keep going
+                }
+            }
+
+            running.decrementAndGet();
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+        Mockito.when(fakeRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            running.decrementAndGet();
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", stubbornRule).withTimeout(Duration.ofMillis(100)),
+            new NumberedRule("1.2", fakeRule),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor, 1, null, null);
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(1).getStatus());
+            assertEquals(1, maxRunning.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_stop_when_validation_exceeds_its_timeout() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var slowRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(slowRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(60_000);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", slowRule),
+            new NumberedRule("1.2", fakeRule, List.of("1.1")),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor, 2, null, Duration.ofMillis(100));
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.CANCELLED, results.get(1).getStatus());
+            Mockito.verifyNoInteractions(fakeRule);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_cancel_rules_that_did_not_start_before_the_validation_timed_out() throws Exception {
+        var slowRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(slowRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            Thread.sleep(60_000);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", slowRule),
+            new NumberedRule("1.2", slowRule),
+        };
+
+        // only one of the two rules gets a thread, the other one waits in the queue of the executor
+        var executor = Executors.newFixedThreadPool(1);
+
+        try {
+            var engine = new RuleEngineImpl(executor, 2, null, Duration.ofMillis(100));
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+            var statuses = results.stream().map(RuleValidationResult::getStatus).collect(Collectors.toSet());
+
+            assertEquals(Set.of(RuleValidationResult.RuleValidationResultStatus.TIMED_OUT, RuleValidationResult.RuleValidationResultStatus.CANCELLED), statuses);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_submit_rules_again_instead_of_running_them_itself_when_the_executor_rejects_them() throws Exception {
+        var threads = ConcurrentHashMap.<Thread> newKeySet();
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            Thread.sleep(20);
+            return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+        });
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule),
+            new NumberedRule("1.4", fakeRule),
+        };
+
+        // room for one running and one waiting rule, so that the third submission is rejected
+        var executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+
+        try {
+            var engine = new RuleEngineImpl(executor, 4, Duration.ofMinutes(1), null);
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(4, results.size());
+            assertTrue(results.stream().allMatch(r -> RuleValidationResult.RuleValidationResultStatus.SUCCESS.equals(r.getStatus())));
+            Mockito.verify(fakeRule, Mockito.times(4)).validate(Mockito.any());
+            assertFalse(threads.contains(Thread.currentThread()));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateRules_should_register_timers_and_result_counters_per_rule() throws Exception {
+        var fakeRule = Mockito.mock(BagValidatorRule.class);
+        var fakeErrorRule = Mockito.mock(BagValidatorRule.class);
+        Mockito.when(fakeRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.SUCCESS, List.of()));
+        Mockito.when(fakeErrorRule.validate(Mockito.any())).thenReturn(new RuleResult(RuleResult.Status.ERROR, List.of("error")));
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeErrorRule, List.of("1.1")),
+            new NumberedRule("1.3", fakeRule, List.of("1.2")),
+        };
+
+        var metricRegistry = new MetricRegistry();
+        var engine = new RuleEngineImpl(Runnable::run, 1, null, null, metricRegistry);
+        engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+        engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+        assertEquals(2, metricRegistry.timer(MetricRegistry.name(RuleEngineImpl.class, "1.1")).getCount());
+        assertEquals(2, metricRegistry.timer(MetricRegistry.name(RuleEngineImpl.class, "1.2")).getCount());
+        assertEquals(0, metricRegistry.timer(MetricRegistry.name(RuleEngineImpl.class, "1.3")).getCount());
+        assertEquals(2, metricRegistry.counter(MetricRegistry.name(RuleEngineImpl.class, "1.1", "success")).getCount());
+        assertEquals(2, metricRegistry.counter(MetricRegistry.name(RuleEngineImpl.class, "1.2", "failure")).getCount());
+        assertEquals(2, metricRegistry.counter(MetricRegistry.name(RuleEngineImpl.class, "1.3", "skipped")).getCount());
+    }
+
+    @Test
+    void validateRules_should_prefetch_inputs_of_waiting_rules_while_other_rules_are_running() throws Exception {
+        var loads = new AtomicInteger();
+        var loaded = new CountDownLatch(1);
+        var artifact = new BagArtifact<String>("artifact", context -> {
+            loads.incrementAndGet();
+            loaded.countDown();
+            return "value";
+        });
+
+        // the first rule only completes when the input of the second rule has been loaded
+        BagValidatorRule slowRule = context -> loaded.await(10, TimeUnit.SECONDS)
+            ? new RuleResult(RuleResult.Status.SUCCESS, List.of())
+            : new RuleResult(RuleResult.Status.ERROR, List.of("artifact was not prefetched"));
+
+        var dependentRule = new BagValidatorRule() {
+
+            @Override
+            public RuleResult validate(BagValidationContext context) throws Exception {
+                return "value".equals(artifact.get(context))
+                    ? new RuleResult(RuleResult.Status.SUCCESS, List.of())
+                    : new RuleResult(RuleResult.Status.ERROR, List.of("wrong value"));
+            }
+
+            @Override
+            public List<BagArtifact<?>> getInputs() {
+                return List.of(artifact);
+            }
+        };
+
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", slowRule),
+            new NumberedRule("1.2", dependentRule, List.of("1.1")),
+        };
+
+        var executor = Executors.newFixedThreadPool(2);
+
+        try {
+            var engine = new RuleEngineImpl(executor, 2);
+            var results = engine.validateRules(new BagValidationContext(Path.of("somedir")), rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(1).getStatus());
+            assertEquals(1, loads.get());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void speculate_should_start_rule_when_its_files_have_arrived_and_validateRules_should_use_its_result() throws Exception {
+        var runs = new AtomicInteger();
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", context -> new RuleResult(RuleResult.Status.SUCCESS, List.of())),
+            new NumberedRule("1.2", ruleReading(Path.of("metadata/dataset.xml"), () -> {
+                runs.incrementAndGet();
+                return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+            }), List.of("1.1")),
+        };
+
+        var engine = new RuleEngineImpl();
+        var context = new BagValidationContext(Path.of("somedir"));
+
+        try (var speculation = engine.speculate(context, rules, DepositType.DEPOSIT)) {
+            speculation.fileArrived(Path.of("bag-info.txt"));
+            assertEquals(0, runs.get());
+
+            speculation.fileArrived(Path.of("metadata/dataset.xml"));
+            assertEquals(1, runs.get());
+
+            var results = engine.validateRules(context, rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SUCCESS, results.get(1).getStatus());
+            assertEquals(1, runs.get());
+        }
+    }
+
+    @Test
+    void validateRules_should_ignore_speculative_result_of_rule_whose_dependency_failed() throws Exception {
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", context -> new RuleResult(RuleResult.Status.ERROR, List.of("failed"))),
+            new NumberedRule("1.2", ruleReading(Path.of("metadata/dataset.xml"), () -> {
+                throw new IOException("not a valid dataset.xml");
+            }), List.of("1.1")),
+        };
+
+        var engine = new RuleEngineImpl();
+        var context = new BagValidationContext(Path.of("somedir"));
+
+        try (var speculation = engine.speculate(context, rules, DepositType.DEPOSIT)) {
+            speculation.fileArrived(Path.of("metadata/dataset.xml"));
+            assertEquals(1, speculation.getSpeculatedRuleCount());
+
+            var results = engine.validateRules(context, rules, DepositType.DEPOSIT);
+
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.FAILURE, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.SKIPPED, results.get(1).getStatus());
+        }
+    }
+
+    @Test
+    void speculate_should_report_failure_in_fail_fast_mode_when_no_dependency_can_skip_the_failed_rule() throws Exception {
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", new BagValidatorRule() {
+
+                @Override
+                public RuleResult validate(BagValidationContext context) {
+                    return new RuleResult(RuleResult.Status.SUCCESS, List.of());
+                }
+
+                @Override
+                public boolean canSkipDependants() {
+                    return false;
+                }
+            }),
+            new NumberedRule("1.2", ruleReading(Path.of("metadata/dataset.xml"), () -> new RuleResult(RuleResult.Status.ERROR, List.of("invalid"))), List.of("1.1")),
+        };
+
+        var engine = new RuleEngineImpl();
+
+        try (var speculation = engine.speculate(new BagValidationContext(Path.of("somedir"), true), rules, DepositType.DEPOSIT)) {
+            speculation.fileArrived(Path.of("metadata/dataset.xml"));
+            assertTrue(speculation.isFailed());
+
+            var results = speculation.getFailedResults();
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.CANCELLED, results.get(0).getStatus());
+            assertEquals(RuleValidationResult.RuleValidationResultStatus.FAILURE, results.get(1).getStatus());
+            assertEquals("invalid", results.get(1).getErrorMessage());
+        }
+    }
+
+    @Test
+    void speculate_should_not_report_failure_when_a_dependency_may_skip_the_failed_rule() throws Exception {
+        var rules = new NumberedRule[] {
+            new NumberedRule("1.1", context -> RuleResult.skipDependencies()),
+            new NumberedRule("1.2", ruleReading(Path.of("metadata/dataset.xml"), () -> new RuleResult(RuleResult.Status.ERROR, List.of("invalid"))), List.of("1.1")),
+        };
+
+        var engine = new RuleEngineImpl();
+
+        try (var speculation = engine.speculate(new BagValidationContext(Path.of("somedir"), true), rules, DepositType.DEPOSIT)) {
+            speculation.fileArrived(Path.of("metadata/dataset.xml"));
+            assertFalse(speculation.isFailed());
+        }
+    }
+
+    // a rule that only reads the given file of the bag
+    private BagValidatorRule ruleReading(Path file, Callable<RuleResult> validation) {
+        var artifact = new BagArtifact<>("file:" + file, List.of(file), context -> file);
+
+        return new BagValidatorRule() {
+
+            @Override
+            public RuleResult validate(BagValidationContext context) throws Exception {
+                artifact.get(context);
+                return validation.call();
+            }
+
+            @Override
+            public List<BagArtifact<?>> getInputs() {
+                return List.of(artifact);
+            }
+        };
+    }
+}
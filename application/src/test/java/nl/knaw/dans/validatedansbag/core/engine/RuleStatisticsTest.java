@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.engine;
+
+import nl.knaw.dans.validatedansbag.core.rules.BagValidatorRule;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleStatisticsTest {
+    private final BagValidatorRule fakeRule = Mockito.mock(BagValidatorRule.class);
+
+    @Test
+    void getPriorities_should_prefer_cheap_rules_that_are_likely_to_fail_in_fail_fast_mode() throws Exception {
+        var plan = ExecutionPlan.compile(List.of(
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule)
+        ));
+
+        var statistics = new RuleStatistics();
+        statistics.record("1.1", 1_000_000_000L, false);
+        statistics.record("1.2", 1_000L, true);
+        statistics.record("1.3", 1_000L, false);
+
+        var priorities = statistics.getPriorities(plan, true);
+
+        assertTrue(priorities[1] < priorities[2]);
+        assertTrue(priorities[2] < priorities[0]);
+    }
+
+    @Test
+    void getPriorities_should_prefer_longest_chain_of_dependencies_in_full_mode() throws Exception {
+        // 1.1 -> 1.3 is the longest chain, even though 1.2 on its own takes longer than 1.1
+        var plan = ExecutionPlan.compile(List.of(
+            new NumberedRule("1.1", fakeRule),
+            new NumberedRule("1.2", fakeRule),
+            new NumberedRule("1.3", fakeRule, List.of("1.1"))
+        ));
+
+        var statistics = new RuleStatistics();
+        statistics.record("1.1", 1_000L, false);
+        statistics.record("1.2", 2_000L, false);
+        statistics.record("1.3", 5_000L, false);
+
+        var priorities = statistics.getPriorities(plan, false);
+
+        assertTrue(priorities[0] < priorities[1]);
+    }
+
+    @Test
+    void record_should_keep_a_moving_average() {
+        var statistics = new RuleStatistics();
+        statistics.record("1.1", 1_000L, true);
+        statistics.record("1.1", 2_000L, false);
+
+        assertEquals(1_200.0, statistics.getExpectedDurationNanos("1.1"), 0.001);
+        assertEquals(0.8, statistics.getFailureRate("1.1"), 0.001);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -29,7 +30,7 @@ public class BagContainsFileTest extends RuleTestFixture {
         Mockito.when(fileService.isFile(Mockito.any()))
                 .thenReturn(true);
 
-        var result = new BagContainsFile(Path.of("testpath"), fileService).validate(Path.of("bagdir"));
+        var result = new BagContainsFile(Path.of("testpath"), fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
 
         Mockito.verify(fileService).isFile(Path.of("bagdir/testpath"));
@@ -40,7 +41,7 @@ public class BagContainsFileTest extends RuleTestFixture {
         Mockito.when(fileService.isFile(Mockito.any()))
                 .thenReturn(false);
 
-        var result = new BagContainsFile(Path.of("testpath"), fileService).validate(Path.of("bagdir"));
+        var result = new BagContainsFile(Path.of("testpath"), fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 }
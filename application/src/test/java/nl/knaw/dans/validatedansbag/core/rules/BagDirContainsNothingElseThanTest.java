@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -29,14 +29,13 @@ public class BagDirContainsNothingElseThanTest extends RuleTestFixture {
     void should_return_SUCCESS_when_subset_of_allowed_files_found() throws Exception {
         var basePath = Path.of("bagdir/metadata");
 
-        Mockito.when(fileService.getAllFilesAndDirectories(Mockito.eq(basePath)))
-                .thenReturn(List.of(basePath.resolve("1.txt"), basePath.resolve("2.txt")));
+        mockInventory(Path.of("bagdir"), basePath.resolve("1.txt"), basePath.resolve("2.txt"));
 
         var result = new BagDirContainsNothingElseThan(Path.of("metadata"), new String[]{
                 "1.txt",
                 "2.txt",
                 "3.txt"
-        }, fileService).validate(Path.of("bagdir"));
+        }, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -44,15 +43,14 @@ public class BagDirContainsNothingElseThanTest extends RuleTestFixture {
     void should_return_SUCCESS_when_exact_set_of_allowed_files_found() throws Exception {
         var basePath = Path.of("bagdir/metadata");
 
-        Mockito.when(fileService.getAllFilesAndDirectories(Mockito.eq(basePath)))
-                .thenReturn(List.of(basePath.resolve("1.txt"),
-                        basePath.resolve("2.txt"), basePath.resolve("3.txt")));
+        mockInventory(Path.of("bagdir"), basePath.resolve("1.txt"),
+                        basePath.resolve("2.txt"), basePath.resolve("3.txt"));
 
         var result = new BagDirContainsNothingElseThan(Path.of("metadata"), new String[]{
                 "1.txt",
                 "2.txt",
                 "3.txt"
-        }, fileService).validate(Path.of("bagdir"));
+        }, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -60,15 +58,14 @@ public class BagDirContainsNothingElseThanTest extends RuleTestFixture {
     void should_return_ERROR_when_other_than_allowed_files_found() throws Exception {
         var basePath = Path.of("bagdir/metadata");
 
-        Mockito.when(fileService.getAllFilesAndDirectories(Mockito.eq(basePath)))
-                .thenReturn(List.of(basePath.resolve("1.txt"), basePath.resolve("2.txt"),
-                        basePath.resolve("oh no.txt")));
+        mockInventory(Path.of("bagdir"), basePath.resolve("1.txt"), basePath.resolve("2.txt"),
+                        basePath.resolve("oh no.txt"));
 
         var result = new BagDirContainsNothingElseThan(Path.of("metadata"), new String[]{
                 "1.txt",
                 "2.txt",
                 "3.txt"
-        }, fileService).validate(Path.of("bagdir"));
+        }, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
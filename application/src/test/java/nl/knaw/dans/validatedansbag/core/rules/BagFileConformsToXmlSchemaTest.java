@@ -15,9 +15,8 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
-import nl.knaw.dans.validatedansbag.core.service.XmlReader;
-import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.xml.sax.SAXParseException;
@@ -31,55 +30,28 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 public class BagFileConformsToXmlSchemaTest extends RuleTestFixture {
     @Test
     void should_return_SUCCESS_status_if_file_validates_with_xsd() throws Exception {
-
-        var xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
-                + "<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" xmlns:abr=\"http://www.den.nl/standaard/166/Archeologisch-Basisregister/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:dcterms=\"http://purl.org/dc/terms/\" xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\" xmlns:dcx-gml=\"http://easy.dans.knaw.nl/schemas/dcx/gml/\" xmlns:id-type=\"http://easy.dans.knaw.nl/schemas/vocab/identifier-type/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
-                + "    <ddm:profile>\n"
-                + "        <dc:title>PAN-00008136 - knobbed sickle</dc:title>\n"
-                + "    </ddm:profile>\n"
-                + "</ddm:DDM>\n";
-
-        var document = parseXmlString(xml);
-        var reader = Mockito.spy(new XmlReaderImpl());
-
-        Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
         Mockito.doReturn(new ArrayList<SAXParseException>())
-                .when(xmlSchemaValidator).validateDocument(Mockito.any(), Mockito.anyString());
+                .when(xmlSchemaValidator).validateFile(Mockito.any(), Mockito.anyString());
 
-        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), reader,"ddm", xmlSchemaValidator).validate(Path.of("bagdir"));
+        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), "ddm", xmlSchemaValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_status_when_file_does_not_validate_with_xsd() throws Exception {
-
-        var xml = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
-                + "<ddm:DDM xmlns:ddm=\"http://schemas.dans.knaw.nl/dataset/ddm-v2/\" xmlns=\"http://easy.dans.knaw.nl/schemas/bag/metadata/files/\" xmlns:abr=\"http://www.den.nl/standaard/166/Archeologisch-Basisregister/\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:dcterms=\"http://purl.org/dc/terms/\" xmlns:dcx-dai=\"http://easy.dans.knaw.nl/schemas/dcx/dai/\" xmlns:dcx-gml=\"http://easy.dans.knaw.nl/schemas/dcx/gml/\" xmlns:id-type=\"http://easy.dans.knaw.nl/schemas/vocab/identifier-type/\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"
-                + "    <ddm:profile>\n"
-                + "        <dcterms:description xml:lang=\"en\">This find is registered at Portable Antiquities of the Netherlands with number PAN-00008136</dcterms:description>\n"
-                + "    </ddm:profile>\n"
-                + "</ddm:DDM>\n";
-
-        var document = parseXmlString(xml);
-        var reader = Mockito.spy(new XmlReaderImpl());
-
-        Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
-
         Mockito.doReturn(List.of(new SAXParseException("msg", null)))
-                .when(xmlSchemaValidator).validateDocument(Mockito.any(), Mockito.anyString());
+                .when(xmlSchemaValidator).validateFile(Mockito.any(), Mockito.anyString());
 
-        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), reader,"ddm", xmlSchemaValidator).validate(Path.of("bagdir"));
+        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), "ddm", xmlSchemaValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
     @Test
-    void should_return_ERROR_status_when_xmlReader_throws_exception() throws Exception {
-        var reader = Mockito.mock(XmlReader.class);
-
+    void should_return_ERROR_status_when_file_is_not_well_formed() throws Exception {
         Mockito.doThrow(new SAXParseException("Invalid XML", null))
-                .when(reader).readXmlFile(Mockito.any());
+                .when(xmlSchemaValidator).validateFile(Mockito.any(), Mockito.anyString());
 
-        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), reader,"ddm", xmlSchemaValidator).validate(Path.of("bagdir"));
+        var result = new BagFileConformsToXmlSchema(Path.of("metadata/dataset.xml"), "ddm", xmlSchemaValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
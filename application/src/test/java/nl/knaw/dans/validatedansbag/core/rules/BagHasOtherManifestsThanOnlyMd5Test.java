@@ -18,6 +18,7 @@ package nl.knaw.dans.validatedansbag.core.rules;
 import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.domain.Manifest;
 import gov.loc.repository.bagit.hash.StandardSupportedAlgorithms;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -40,7 +41,7 @@ public class BagHasOtherManifestsThanOnlyMd5Test extends RuleTestFixture {
         Mockito.when(bagItMetadataReader.getBag(Mockito.any())).thenReturn(Optional.of(new Bag()));
         Mockito.when(bagItMetadataReader.getBagManifests(Mockito.any())).thenReturn(manifests);
 
-        var result = new BagHasOtherManifestsThanOnlyMd5(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagHasOtherManifestsThanOnlyMd5(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
@@ -54,7 +55,7 @@ public class BagHasOtherManifestsThanOnlyMd5Test extends RuleTestFixture {
         Mockito.when(bagItMetadataReader.getBag(Mockito.any())).thenReturn(Optional.of(new Bag()));
         Mockito.when(bagItMetadataReader.getBagManifests(Mockito.any())).thenReturn(manifests);
 
-        var result = new BagHasOtherManifestsThanOnlyMd5(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagHasOtherManifestsThanOnlyMd5(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -15,12 +15,12 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -28,28 +28,25 @@ public class BagInfoContainsAtMostOneOfTest extends RuleTestFixture {
 
     @Test
     void should_return_SUCCESS_when_one_value_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(List.of("value"));
+        mockBagInfoField("Key", "value");
 
-        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_SKIP_DEPENDENCIES_when_no_value_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(List.of());
+        mockBagInfoField("Key");
 
-        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SKIP_DEPENDENCIES, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_two_values_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(List.of("value1", "value2"));
+        mockBagInfoField("Key", "value1", "value2");
 
-        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsAtMostOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 }
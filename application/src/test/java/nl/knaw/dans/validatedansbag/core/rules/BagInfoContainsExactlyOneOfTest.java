@@ -15,13 +15,12 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -29,28 +28,25 @@ public class BagInfoContainsExactlyOneOfTest extends RuleTestFixture {
 
     @Test
     void should_return_SUCCESS_when_exactly_one_value_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(List.of("value"));
+        mockBagInfoField("Key", "value");
 
-        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_two_values_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(List.of("value", "secondvalue"));
+        mockBagInfoField("Key", "value", "secondvalue");
 
-        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_no_values_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Key")))
-                .thenReturn(new ArrayList<>());
+        mockBagInfoField("Key");
 
-        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoContainsExactlyOneOf("Key", bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
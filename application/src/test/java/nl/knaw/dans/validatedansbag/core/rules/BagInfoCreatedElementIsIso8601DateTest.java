@@ -15,9 +15,9 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 
 import java.nio.file.Path;
 
@@ -27,38 +27,34 @@ public class BagInfoCreatedElementIsIso8601DateTest extends RuleTestFixture {
 
     @Test
     void should_return_SUCCESS_if_a_valid_date_is_found() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.eq("Created")))
-                .thenReturn("2022-01-01T01:23:45.678+00:00");
+        mockBagInfoField("Created", "2022-01-01T01:23:45.678+00:00");
 
-        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_if_T_separator_absent() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.eq("Created")))
-                .thenReturn("2022-01-01 01:23:45.678");
+        mockBagInfoField("Created", "2022-01-01 01:23:45.678");
 
-        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_if_no_timezone_present() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.eq("Created")))
-                .thenReturn("2022-01-01T01:23:45.678");
+        mockBagInfoField("Created", "2022-01-01T01:23:45.678");
 
-        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_if_no_millisecond_precision() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.eq("Created")))
-                .thenReturn("2022-01-01T01:23:45+00:00");
+        mockBagInfoField("Created", "2022-01-01T01:23:45+00:00");
 
 
-        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoCreatedElementIsIso8601Date(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 }
@@ -16,6 +16,7 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import gov.loc.repository.bagit.domain.Bag;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -34,7 +35,7 @@ public class BagInfoExistsAndIsWellformedTest extends RuleTestFixture {
         Mockito.when(bagItMetadataReader.getBag(Mockito.any()))
                 .thenReturn(Optional.of(new Bag()));
 
-        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(Path.of("bagdir"));
+        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -43,7 +44,7 @@ public class BagInfoExistsAndIsWellformedTest extends RuleTestFixture {
         Mockito.when(fileService.isFile(Mockito.any()))
                 .thenReturn(false);
 
-        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(Path.of("bagdir"));
+        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -55,7 +56,7 @@ public class BagInfoExistsAndIsWellformedTest extends RuleTestFixture {
         Mockito.when(bagItMetadataReader.getBag(Mockito.any()))
                 .thenReturn(Optional.empty());
 
-        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(Path.of("bagdir"));
+        var result = new BagInfoExistsAndIsWellformed(bagItMetadataReader, fileService).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
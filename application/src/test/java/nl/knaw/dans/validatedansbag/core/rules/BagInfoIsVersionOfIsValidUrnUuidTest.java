@@ -15,46 +15,42 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
-import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class BagInfoIsVersionOfIsValidUrnUuidTest extends RuleTestFixture {
     @Test
     void should_return_SUCCESS_when_is_version_of_is_a_valid_urn_uuid() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Is-Version-Of")))
-                .thenReturn(List.of("urn:uuid:76cfdebf-e43d-4c56-a886-e8375c745429"));
+        mockBagInfoField("Is-Version-Of", "urn:uuid:76cfdebf-e43d-4c56-a886-e8375c745429");
 
-        var result = new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_not_a_urn() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Is-Version-Of")))
-                .thenReturn(List.of("http://google.com"));
+        mockBagInfoField("Is-Version-Of", "http://google.com");
 
-        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(Path.of("bagdir")).getStatus());
+        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir"))).getStatus());
     }
 
     @Test
     void should_return_ERROR_when_urn_but_not_subscheme_uuid() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Is-Version-Of")))
-                .thenReturn(List.of("urn:notuuid:76cfdebf-e43d-4c56-a886-e8375c745429"));
+        mockBagInfoField("Is-Version-Of", "urn:notuuid:76cfdebf-e43d-4c56-a886-e8375c745429");
 
-        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(Path.of("bagdir")).getStatus());
+        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir"))).getStatus());
     }
 
     @Test
     void should_return_ERROR_when_urn_uuid_scheme_but_not_a_uuid_value() throws Exception {
-        Mockito.when(bagItMetadataReader.getField(Mockito.any(), Mockito.eq("Is-Version-Of")))
-                .thenReturn(List.of("urn:uuid:1234"));
+        mockBagInfoField("Is-Version-Of", "urn:uuid:1234");
 
-        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(Path.of("bagdir")).getStatus());
+        assertEquals(RuleResult.Status.ERROR, new BagInfoIsVersionOfIsValidUrnUuid(bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir"))).getStatus());
     }
 }
@@ -15,9 +15,9 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 
 import java.nio.file.Path;
 
@@ -26,26 +26,24 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 public class BagInfoIsVersionOfPointsToExistingDatasetInDataverseTest extends RuleTestFixture {
     @Test
     void should_return_SUCCESS_if_bag_exists() throws Exception {
-        Mockito.doReturn("urn:uuid:is-version-of-id")
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.anyString());
+        mockBagInfoField("Is-Version-Of", "urn:uuid:is-version-of-id");
 
         var doi = "doi:10.5072/FK2/QZZSST";
         mockSearchBySwordToken(getSearchResult(doi));
         mockGetDataset(getLatestVersion(doi, null));
 
-        var result = new BagInfoIsVersionOfPointsToExistingDatasetInDataverse(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoIsVersionOfPointsToExistingDatasetInDataverse(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_search_yields_zero_results() throws Exception {
-        Mockito.doReturn("urn:uuid:is-version-of-id")
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.anyString());
+        mockBagInfoField("Is-Version-Of", "urn:uuid:is-version-of-id");
 
         String emptySearchResult = getEmptySearchResult();
         mockSearchBySwordToken(emptySearchResult);
 
-        var result = new BagInfoIsVersionOfPointsToExistingDatasetInDataverse(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoIsVersionOfPointsToExistingDatasetInDataverse(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 }
@@ -15,9 +15,9 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 
 import java.nio.file.Path;
 
@@ -31,61 +31,52 @@ public class BagInfoOrganizationalIdentifierExistsInDatasetTest extends RuleTest
         var otherId = "other-id";
         var hasOrganizationalIdentifier = "other-id";
 
-        Mockito.doReturn(isVersionOf)
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.eq("Is-Version-Of"));
-
-        Mockito.doReturn(hasOrganizationalIdentifier)
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.eq("Has-Organizational-Identifier"));
+        mockBagInfoField("Is-Version-Of", isVersionOf);
+        mockBagInfoField("Has-Organizational-Identifier", hasOrganizationalIdentifier);
 
         var doi = "doi:10.5072/FK2/QZZSST";
         mockSearchBySwordToken(getSearchResult(doi));
         mockGetDataset(getLatestVersion(doi, otherId));
 
-        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_SUCCESS_if_both_values_are_null() throws Exception {
-        Mockito.doReturn("urn:uuid:some-uuid")
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.eq("Is-Version-Of"));
-
-        Mockito.doReturn(null)
-                .when(bagItMetadataReader).getSingleField(Mockito.any(), Mockito.eq("Has-Organizational-Identifier"));
+        mockBagInfoField("Is-Version-Of", "urn:uuid:some-uuid");
 
         var doi = "doi:10.5072/FK2/QZZSST";
         mockSearchBySwordToken(getSearchResult(doi));
         mockGetDataset(getLatestVersion(doi, null));
 
-        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_when_dataset_is_null_and_metadata_is_not_null() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.anyString()))
-                .thenReturn("urn:uuid:is_version_of")
-                .thenReturn("has_organizational_identifier");
+        mockBagInfoField("Is-Version-Of", "urn:uuid:is_version_of");
+        mockBagInfoField("Has-Organizational-Identifier", "has_organizational_identifier");
 
         var doi = "doi:10.5072/FK2/QZZSST";
         mockSearchBySwordToken(getSearchResult(doi));
         mockGetDataset(getLatestVersion(doi, null));
 
-        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_if_values_do_not_match() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.anyString()))
-                .thenReturn("urn:uuid:is_version_of")
-                .thenReturn("has_organizational_identifier");
+        mockBagInfoField("Is-Version-Of", "urn:uuid:is_version_of");
+        mockBagInfoField("Has-Organizational-Identifier", "has_organizational_identifier");
 
         var doi = "doi:10.5072/FK2/QZZSST";
         mockSearchBySwordToken(getSearchResult(doi));
         mockGetDataset(getLatestVersion(doi, "some_other_organizational_identifier"));
 
-        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierExistsInDataset(dataverseService, bagItMetadataReader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
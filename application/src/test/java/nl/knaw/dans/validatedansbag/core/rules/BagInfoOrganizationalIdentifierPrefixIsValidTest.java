@@ -15,11 +15,11 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.validator.OrganizationIdentifierPrefixValidator;
 import nl.knaw.dans.validatedansbag.core.validator.OrganizationIdentifierPrefixValidatorImpl;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -33,20 +33,18 @@ public class BagInfoOrganizationalIdentifierPrefixIsValidTest extends RuleTestFi
 
     @Test
     void should_return_SUCCESS_if_prefix_is_on_configured_list() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.any()))
-                .thenReturn("USER1-organizational-identifier");
+        mockBagInfoField("Has-Organizational-Identifier", "USER1-organizational-identifier");
 
-        var result = new BagInfoOrganizationalIdentifierPrefixIsValid(bagItMetadataReader, organizationIdentifierPrefixValidator).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierPrefixIsValid(bagItMetadataReader, organizationIdentifierPrefixValidator).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
     @Test
     void should_return_ERROR_if_prefix_is_not_on_configured_list() throws Exception {
-        Mockito.when(bagItMetadataReader.getSingleField(Mockito.any(), Mockito.any()))
-                .thenReturn("WRONG-organizational-identifier");
+        mockBagInfoField("Has-Organizational-Identifier", "WRONG-organizational-identifier");
 
-        var result = new BagInfoOrganizationalIdentifierPrefixIsValid(bagItMetadataReader, organizationIdentifierPrefixValidator).validate(Path.of("bagdir"));
+        var result = new BagInfoOrganizationalIdentifierPrefixIsValid(bagItMetadataReader, organizationIdentifierPrefixValidator).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
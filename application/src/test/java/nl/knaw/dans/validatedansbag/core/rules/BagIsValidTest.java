@@ -15,30 +15,54 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import gov.loc.repository.bagit.domain.Bag;
 import gov.loc.repository.bagit.exceptions.InvalidBagitFileFormatException;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.nio.file.Path;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class BagIsValidTest extends RuleTestFixture {
     @Test
     void should_return_SUCCESS_on_valid_bag() throws Exception {
-        var result = new BagIsValid(bagItMetadataReader).validate(Path.of("testpath"));
+        var result = new BagIsValid(bagItMetadataReader).validate(new BagValidationContext(Path.of("testpath")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
 
-        Mockito.verify(bagItMetadataReader).verifyBag(Path.of("testpath"));
+        Mockito.verify(bagItMetadataReader).verifyBag(Path.of("testpath"), false);
+    }
+
+    @Test
+    void should_verify_the_bag_that_was_read_already() throws Exception {
+        var bag = new Bag();
+        Mockito.doReturn(Optional.of(bag)).when(bagItMetadataReader).getBag(Mockito.any());
+
+        var context = new BagValidationContext(Path.of("testpath"));
+        var rule = new BagIsValid(bagItMetadataReader);
+
+        // as loaded by the rule engine, or by another rule
+        for (var input : rule.getInputs()) {
+            input.get(context);
+        }
+
+        var result = rule.validate(context);
+        assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
+
+        Mockito.verify(bagItMetadataReader).verifyBag(bag, false);
+        Mockito.verify(bagItMetadataReader).getBag(Path.of("testpath"));
+        Mockito.verify(bagItMetadataReader, Mockito.never()).verifyBag(Mockito.any(Path.class), Mockito.anyBoolean());
     }
 
     @Test
     void should_return_ERROR_on_invalid_bag() throws Exception {
         Mockito.doThrow(new InvalidBagitFileFormatException("Invalid file format"))
-                .when(bagItMetadataReader).verifyBag(Mockito.any());
+                .when(bagItMetadataReader).verifyBag(Mockito.any(Path.class), Mockito.anyBoolean());
 
-        var result = new BagIsValid(bagItMetadataReader).validate(Path.of("testpath"));
+        var result = new BagIsValid(bagItMetadataReader).validate(new BagValidationContext(Path.of("testpath")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
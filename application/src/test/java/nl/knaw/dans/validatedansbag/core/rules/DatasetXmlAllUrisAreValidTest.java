@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -83,8 +84,9 @@ public class DatasetXmlAllUrisAreValidTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlAllUrlsAreValid(xmlReader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlAllUrlsAreValid(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -145,8 +147,9 @@ public class DatasetXmlAllUrisAreValidTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlAllUrlsAreValid(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlAllUrlsAreValid(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
         assertEquals(6, result.getErrorMessages().size());
     }
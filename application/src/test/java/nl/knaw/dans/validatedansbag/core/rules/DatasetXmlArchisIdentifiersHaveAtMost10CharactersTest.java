@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -45,8 +46,9 @@ public class DatasetXmlArchisIdentifiersHaveAtMost10CharactersTest extends RuleT
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlArchisIdentifiersHaveAtMost10Characters(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlArchisIdentifiersHaveAtMost10Characters(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -69,8 +71,9 @@ public class DatasetXmlArchisIdentifiersHaveAtMost10CharactersTest extends RuleT
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlArchisIdentifiersHaveAtMost10Characters(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlArchisIdentifiersHaveAtMost10Characters(reader).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
         assertEquals(2, result.getErrorMessages().size());
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -43,8 +44,9 @@ public class DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoiTest extends Rule
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SKIP_DEPENDENCIES, result.getStatus());
     }
 
@@ -66,8 +68,9 @@ public class DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoiTest extends Rule
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -90,8 +93,9 @@ public class DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoiTest extends Rule
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsAtMostOneIdentifierWithIdTypeDoi(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 }
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -43,8 +44,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -67,8 +69,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -90,8 +93,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -115,8 +119,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -140,8 +145,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -163,8 +169,9 @@ public class DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUriTest extend
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlContainsExactlyOneDctermsLicenseWithXsiTypeUri(reader, licenseValidator).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -52,8 +53,9 @@ public class DatasetXmlDaisAreValidTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        assertEquals(RuleResult.Status.SUCCESS, new DatasetXmlDaisAreValid(reader, identifierValidator).validate(Path.of("bagdir")).getStatus());
+        assertEquals(RuleResult.Status.SUCCESS, new DatasetXmlDaisAreValid(reader, identifierValidator).validate(new BagValidationContext(Path.of("bagdir"))).getStatus());
     }
 
     @Test
@@ -81,8 +83,9 @@ public class DatasetXmlDaisAreValidTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlDaisAreValid(reader, identifierValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlDaisAreValid(reader, identifierValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -16,6 +16,7 @@
 package nl.knaw.dans.validatedansbag.core.rules;
 
 import nl.knaw.dans.lib.dataverse.model.DataMessage;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import nl.knaw.dans.validatedansbag.resources.util.MockedDataverseResponse;
@@ -50,6 +51,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
         var embargoResultJson = "{\n"
                 + "  \"status\": \"OK\",\n"
@@ -61,7 +63,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         Mockito.when(dataverseService.getMaxEmbargoDurationInMonths())
                 .thenReturn(maxEmbargoDurationResult);
 
-        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -85,6 +87,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
         var embargoResultJson = "{\n"
                 + "  \"status\": \"OK\",\n"
@@ -96,7 +99,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         Mockito.when(dataverseService.getMaxEmbargoDurationInMonths())
                 .thenReturn(maxEmbargoDurationResult);
 
-        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -120,6 +123,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
         var embargoResultJson = "{\n"
                 + "  \"status\": \"OK\",\n"
@@ -131,7 +135,7 @@ public class DatasetXmlEmbargoPeriodWithinLimitsTest extends RuleTestFixture {
         Mockito.when(dataverseService.getMaxEmbargoDurationInMonths())
                 .thenReturn(maxEmbargoDurationResult);
 
-        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlEmbargoPeriodWithinLimits(dataverseService, reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 }
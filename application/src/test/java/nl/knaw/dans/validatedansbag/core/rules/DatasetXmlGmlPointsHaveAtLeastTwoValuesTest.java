@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -78,8 +79,9 @@ public class DatasetXmlGmlPointsHaveAtLeastTwoValuesTest extends RuleTestFixture
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPointsHaveAtLeastTwoValues(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPointsHaveAtLeastTwoValues(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertThat(result.getException()).isNull();
         assertThat(result.getStatus()).isEqualTo(RuleResult.Status.ERROR);
         assertThat(result.getErrorMessages())
@@ -116,8 +118,9 @@ public class DatasetXmlGmlPointsHaveAtLeastTwoValuesTest extends RuleTestFixture
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPointsHaveAtLeastTwoValues(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPointsHaveAtLeastTwoValues(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertThat(result.getException()).isNull();
         assertThat(result.getStatus()).isEqualTo(RuleResult.Status.SUCCESS);
     }
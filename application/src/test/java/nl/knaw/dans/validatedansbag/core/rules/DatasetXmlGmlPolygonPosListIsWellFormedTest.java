@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -69,8 +70,9 @@ public class DatasetXmlGmlPolygonPosListIsWellFormedTest extends RuleTestFixture
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPolygonPosListIsWellFormed(reader, polygonListValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPolygonPosListIsWellFormed(reader, polygonListValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -117,8 +119,9 @@ public class DatasetXmlGmlPolygonPosListIsWellFormedTest extends RuleTestFixture
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPolygonPosListIsWellFormed(reader, polygonListValidator).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPolygonPosListIsWellFormed(reader, polygonListValidator).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
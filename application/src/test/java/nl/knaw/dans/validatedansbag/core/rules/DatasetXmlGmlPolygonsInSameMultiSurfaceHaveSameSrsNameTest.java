@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -59,8 +60,9 @@ public class DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsNameTest extends
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -97,8 +99,9 @@ public class DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsNameTest extends
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
@@ -137,8 +140,9 @@ public class DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsNameTest extends
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlGmlPolygonsInSameMultiSurfaceHaveSameSrsName(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.XmlReaderImpl;
 import org.junit.jupiter.api.Test;
@@ -50,8 +51,9 @@ public class DatasetXmlHasRightsHolderInElementOrInAuthorRoleTest extends RuleTe
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlHasRightsHolderInElementOrInAuthorRole(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlHasRightsHolderInElementOrInAuthorRole(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
 
@@ -79,8 +81,9 @@ public class DatasetXmlHasRightsHolderInElementOrInAuthorRoleTest extends RuleTe
         var reader = Mockito.spy(new XmlReaderImpl());
 
         Mockito.doReturn(document).when(reader).readXmlFile(Mockito.any());
+        Mockito.doReturn(reader.readDatasetXmlSummaryString(xml)).when(reader).readDatasetXmlSummary(Mockito.any());
 
-        var result = new DatasetXmlHasRightsHolderInElementOrInAuthorRole(reader).validate(Path.of("bagdir"));
+        var result = new DatasetXmlHasRightsHolderInElementOrInAuthorRole(reader).validate(new BagValidationContext(Path.of("bagdir")));
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
 
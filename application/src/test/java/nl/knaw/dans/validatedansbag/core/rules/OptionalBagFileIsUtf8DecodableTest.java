@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -32,7 +33,7 @@ public class OptionalBagFileIsUtf8DecodableTest extends RuleTestFixture {
         Mockito.when(fileService.exists(Mockito.any())).thenReturn(true);
         Mockito.when(fileService.readFileContents(Mockito.any(), Mockito.any())).thenReturn(CharBuffer.allocate(1));
 
-        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(Path.of("bagdir"));
+        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
@@ -41,7 +42,7 @@ public class OptionalBagFileIsUtf8DecodableTest extends RuleTestFixture {
     void should_return_SUCCESS_when_file_does_not_exist() throws Exception {
         Mockito.when(fileService.exists(Mockito.any())).thenReturn(false);
 
-        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(Path.of("bagdir"));
+        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SKIP_DEPENDENCIES, result.getStatus());
     }
@@ -52,7 +53,7 @@ public class OptionalBagFileIsUtf8DecodableTest extends RuleTestFixture {
         Mockito.when(fileService.readFileContents(Mockito.any(), Mockito.any()))
                 .thenThrow(new CharacterCodingException());
 
-        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(Path.of("bagdir"));
+        var result = new OptionalBagFileIsUtf8Decodable(Path.of("somefile.txt"), fileService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
 import nl.knaw.dans.validatedansbag.core.engine.RuleResult;
 import nl.knaw.dans.validatedansbag.core.service.OriginalFilepathsService;
 import org.junit.jupiter.api.Test;
@@ -37,11 +38,10 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         Path.of("data/2.txt")
                 ));
 
-        Mockito.when(fileService.getAllFiles(Mockito.any()))
-                .thenReturn(List.of(
-                        Path.of("bagdir/data/a.txt"),
-                        Path.of("bagdir/data/b.txt")
-                ));
+        mockInventory(Path.of("bagdir"),
+            Path.of("bagdir/data/a.txt"),
+            Path.of("bagdir/data/b.txt")
+        );
 
         Mockito.when(originalFilepathsService.getMapping(Mockito.any()))
                 .thenReturn(List.of(
@@ -49,7 +49,7 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         new OriginalFilepathsService.OriginalFilePathItem(Path.of("data/2.txt"), Path.of("data/b.txt"))
                 ));
 
-        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(Path.of("bagdir"));
+        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SUCCESS, result.getStatus());
     }
@@ -63,11 +63,10 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         Path.of("data/2.txt")
                 ));
 
-        Mockito.when(fileService.getAllFiles(Mockito.any()))
-                .thenReturn(List.of(
-                        Path.of("bagdir/data/a.txt"),
-                        Path.of("bagdir/data/b.txt")
-                ));
+        mockInventory(Path.of("bagdir"),
+            Path.of("bagdir/data/a.txt"),
+            Path.of("bagdir/data/b.txt")
+        );
 
         Mockito.when(originalFilepathsService.getMapping(Mockito.any()))
                 .thenReturn(List.of(
@@ -75,7 +74,7 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         new OriginalFilepathsService.OriginalFilePathItem(Path.of("data/2.txt"), Path.of("data/c.txt")) // this one is wrong
                 ));
 
-        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(Path.of("bagdir"));
+        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -89,11 +88,10 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         Path.of("data/2.txt")
                 ));
 
-        Mockito.when(fileService.getAllFiles(Mockito.any()))
-                .thenReturn(List.of(
-                        Path.of("bagdir/data/a.txt"),
-                        Path.of("bagdir/data/b.txt")
-                ));
+        mockInventory(Path.of("bagdir"),
+            Path.of("bagdir/data/a.txt"),
+            Path.of("bagdir/data/b.txt")
+        );
 
         Mockito.when(originalFilepathsService.getMapping(Mockito.any()))
                 .thenReturn(List.of(
@@ -101,7 +99,7 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         new OriginalFilepathsService.OriginalFilePathItem(Path.of("data/2.txt"), Path.of("data/b.txt"))
                 ));
 
-        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(Path.of("bagdir"));
+        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -114,10 +112,9 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         Path.of("data/1.txt")
                 ));
 
-        Mockito.when(fileService.getAllFiles(Mockito.any()))
-                .thenReturn(List.of(
-                        Path.of("bagdir/data/a.txt")
-                ));
+        mockInventory(Path.of("bagdir"),
+            Path.of("bagdir/data/a.txt")
+        );
 
         Mockito.when(originalFilepathsService.getMapping(Mockito.any()))
                 .thenReturn(List.of(
@@ -125,7 +122,7 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
                         new OriginalFilepathsService.OriginalFilePathItem(Path.of("data/2.txt"), Path.of("data/b.txt"))
                 ));
 
-        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(Path.of("bagdir"));
+        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.ERROR, result.getStatus());
     }
@@ -133,7 +130,7 @@ public class OptionalOriginalFilePathsIsCompleteTest extends RuleTestFixture {
     @Test
     void should_return_SKIP_DEPENDENCIES_when_no_original_filepaths_present() throws Exception {
         Mockito.when(originalFilepathsService.exists(Mockito.any())).thenReturn(false);
-        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(Path.of("bagdir"));
+        var result = new OptionalOriginalFilePathsIsComplete(originalFilepathsService, fileService, filesXmlService).validate(new BagValidationContext(Path.of("bagdir")));
 
         assertEquals(RuleResult.Status.SKIP_DEPENDENCIES, result.getStatus());
     }
@@ -15,9 +15,11 @@
  */
 package nl.knaw.dans.validatedansbag.core.rules;
 
+import gov.loc.repository.bagit.domain.Bag;
 import nl.knaw.dans.lib.dataverse.DataverseException;
 import nl.knaw.dans.lib.dataverse.model.dataset.DatasetLatestVersion;
 import nl.knaw.dans.lib.dataverse.model.search.SearchResult;
+import nl.knaw.dans.validatedansbag.core.service.BagInventory;
 import nl.knaw.dans.validatedansbag.core.service.BagItMetadataReader;
 import nl.knaw.dans.validatedansbag.core.service.DataverseService;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
@@ -40,6 +42,10 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Optional;
 
 public class RuleTestFixture {
     protected final FileService fileService = Mockito.mock(FileService.class);
@@ -53,6 +59,7 @@ public class RuleTestFixture {
     protected final LicenseValidator licenseValidator = new LicenseValidatorImpl(dataverseService);
     protected final FilesXmlService filesXmlService = Mockito.mock(FilesXmlService.class);
     protected final XmlSchemaValidator xmlSchemaValidator = Mockito.mock(XmlSchemaValidator.class);
+    private final Bag bag = new Bag();
 
     @AfterEach
     void afterEach() {
@@ -64,6 +71,32 @@ public class RuleTestFixture {
         Mockito.reset(filesXmlService);
     }
 
+    // adds the values to the bag-info of the bag, and to the bag-info fields, returned by bagItMetadataReader
+    protected void mockBagInfoField(String key, String... values) throws Exception {
+        for (var value : values) {
+            bag.getMetadata().add(key, value);
+        }
+
+        Mockito.when(bagItMetadataReader.getBag(Mockito.any())).thenReturn(Optional.of(bag));
+        Mockito.when(bagItMetadataReader.getBagInfo(Mockito.any())).thenReturn(bag.getMetadata());
+    }
+
+    // lets fileService list the given files, and the directories they are in, as the contents of the bag
+    protected void mockInventory(Path bagDir, Path... files) throws IOException {
+        var entries = new LinkedHashMap<Path, BagInventory.Entry>();
+        entries.put(bagDir, new BagInventory.Entry(bagDir, false, 0, FileTime.fromMillis(0)));
+
+        for (var file : files) {
+            for (var dir = file.getParent(); dir != null && dir.startsWith(bagDir); dir = dir.getParent()) {
+                entries.putIfAbsent(dir, new BagInventory.Entry(dir, false, 0, FileTime.fromMillis(0)));
+            }
+
+            entries.put(file, new BagInventory.Entry(file, true, 0, FileTime.fromMillis(0)));
+        }
+
+        Mockito.when(fileService.getInventory(Mockito.any())).thenReturn(new BagInventory(bagDir, entries.values()));
+    }
+
     protected Document parseXmlString(String str) throws ParserConfigurationException, IOException, SAXException {
         return new XmlReaderImpl().readXmlString(str);
     }
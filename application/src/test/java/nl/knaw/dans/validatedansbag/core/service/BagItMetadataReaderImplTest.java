@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import gov.loc.repository.bagit.exceptions.CorruptChecksumException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BagItMetadataReaderImplTest {
+
+    private final Path validBag = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("bags/valid-bag")).getFile());
+
+    @Test
+    void verifyBag_should_accept_a_valid_bag() {
+        var reader = new BagItMetadataReaderImpl();
+        assertDoesNotThrow(() -> reader.verifyBag(validBag, false));
+    }
+
+    @Test
+    void verifyBag_should_accept_a_bag_that_was_read_already() {
+        var reader = new BagItMetadataReaderImpl();
+        var bag = reader.getBag(validBag).orElseThrow();
+        assertDoesNotThrow(() -> reader.verifyBag(bag, false));
+    }
+
+    @Test
+    void verifyBag_should_use_the_computed_digest_instead_of_reading_the_file() {
+        var computedDigests = new ComputedDigests();
+        computedDigests.put(validBag, validBag.resolve("data/leeg.txt"), Map.of("SHA-1", "0000000000000000000000000000000000000000"));
+
+        var reader = new BagItMetadataReaderImpl(new ChecksumVerifier(computedDigests));
+        assertThrows(CorruptChecksumException.class, () -> reader.verifyBag(validBag, false));
+    }
+
+    @Test
+    void getBagInfo_should_return_the_same_fields_as_getBag() throws Exception {
+        var reader = new BagItMetadataReaderImpl();
+        var bagInfo = reader.getBagInfo(validBag);
+
+        assertEquals(List.of("2018-11-16T00:00:00.000+02:00"), bagInfo.get("Created"));
+        assertEquals(reader.getBag(validBag).orElseThrow().getMetadata().getAll(), bagInfo.getAll());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChecksumCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void open_should_restore_the_checksums_of_files_that_have_not_changed() throws Exception {
+        var cacheFile = tempDir.resolve("cache.tsv");
+        var unchanged = Files.writeString(tempDir.resolve("unchanged\twith tab.txt"), "a");
+        var changed = Files.writeString(tempDir.resolve("changed.txt"), "b");
+
+        var cache = new ChecksumCache(cacheFile);
+        cache.open();
+        cache.put(unchanged, attributes(unchanged), "SHA-1", "1111");
+        cache.put(changed, attributes(changed), "SHA-1", "2222");
+        cache.close();
+
+        Files.setLastModifiedTime(changed, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+
+        var reopened = new ChecksumCache(cacheFile);
+        reopened.open();
+
+        try {
+            assertEquals(Optional.of("1111"), reopened.get(unchanged, attributes(unchanged), "SHA-1"));
+            assertEquals(Optional.empty(), reopened.get(unchanged, attributes(unchanged), "MD5"));
+            assertEquals(Optional.empty(), reopened.get(changed, attributes(changed), "SHA-1"));
+        }
+        finally {
+            reopened.close();
+        }
+
+        // the entry of the changed file was dropped when the cache was compacted
+        assertEquals(1, Files.readAllLines(cacheFile).size());
+    }
+
+    @Test
+    void get_should_not_return_a_checksum_when_the_file_was_changed() throws Exception {
+        var file = Files.writeString(tempDir.resolve("file.txt"), "a");
+        var cache = new ChecksumCache(tempDir.resolve("cache.tsv"));
+        cache.put(file, attributes(file), "SHA-1", "1111");
+
+        Files.writeString(file, "longer");
+
+        assertEquals(Optional.empty(), cache.get(file, attributes(file), "SHA-1"));
+    }
+
+    @Test
+    void put_should_drop_the_least_recently_used_files_when_the_cache_is_full() throws Exception {
+        var first = Files.writeString(tempDir.resolve("first.txt"), "a");
+        var second = Files.writeString(tempDir.resolve("second.txt"), "b");
+        var third = Files.writeString(tempDir.resolve("third.txt"), "c");
+        var cache = new ChecksumCache(tempDir.resolve("cache.tsv"), 2);
+
+        cache.put(first, attributes(first), "SHA-1", "1111");
+        cache.put(second, attributes(second), "SHA-1", "2222");
+        cache.get(first, attributes(first), "SHA-1");
+        cache.put(third, attributes(third), "SHA-1", "3333");
+
+        assertEquals(Optional.of("1111"), cache.get(first, attributes(first), "SHA-1"));
+        assertEquals(Optional.empty(), cache.get(second, attributes(second), "SHA-1"));
+        assertEquals(Optional.of("3333"), cache.get(third, attributes(third), "SHA-1"));
+    }
+
+    @Test
+    void put_should_compact_the_cache_file_while_it_is_open() throws Exception {
+        var cacheFile = tempDir.resolve("cache.tsv");
+        var cache = new ChecksumCache(cacheFile, 2);
+        cache.open();
+
+        try {
+            for (var i = 0; i < 20; ++i) {
+                var file = Files.writeString(tempDir.resolve("file" + i + ".txt"), "content " + i);
+                cache.put(file, attributes(file), "SHA-1", Integer.toString(i));
+            }
+        }
+        finally {
+            cache.close();
+        }
+
+        // never more than twice the lines of the files in memory
+        assertTrue(Files.readAllLines(cacheFile).size() <= 4);
+    }
+
+    private BasicFileAttributes attributes(Path file) throws Exception {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import gov.loc.repository.bagit.exceptions.CorruptChecksumException;
+import gov.loc.repository.bagit.reader.BagReader;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChecksumVerifierTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void verify_should_accept_a_valid_bag_with_several_workers() throws Exception {
+        var bag = new BagReader().read(copyValidBag());
+        var verifier = new ChecksumVerifier(new ComputedDigests(), executor, 3, 16);
+
+        assertDoesNotThrow(() -> verifier.verify(bag, false));
+    }
+
+    @Test
+    void verify_should_report_a_payload_file_that_was_changed() throws Exception {
+        var bagDir = copyValidBag();
+        Files.writeString(bagDir.resolve("data/sub/leeg2.txt"), "not empty anymore");
+
+        var bag = new BagReader().read(bagDir);
+        var verifier = new ChecksumVerifier(new ComputedDigests(), executor, 3, 16);
+
+        assertThrows(CorruptChecksumException.class, () -> verifier.verify(bag, false));
+    }
+
+    @Test
+    void verify_should_take_checksums_from_the_cache_only_when_allowed() throws Exception {
+        var bagDir = copyValidBag();
+        var file = bagDir.resolve("data/leeg.txt");
+        var checksumCache = new ChecksumCache(tempDir.resolve("cache.tsv"));
+        checksumCache.put(file, Files.readAttributes(file, BasicFileAttributes.class), "SHA-1", "0000000000000000000000000000000000000000");
+
+        var bag = new BagReader().read(bagDir);
+        var verifier = new ChecksumVerifier(new ComputedDigests(), checksumCache, executor, 3, 16);
+
+        assertThrows(CorruptChecksumException.class, () -> verifier.verify(bag, true));
+        assertDoesNotThrow(() -> verifier.verify(bag, false));
+    }
+
+    @Test
+    void verify_should_store_the_computed_checksums_in_the_cache() throws Exception {
+        var bagDir = copyValidBag();
+        var file = bagDir.resolve("data/leeg.txt");
+        var checksumCache = new ChecksumCache(tempDir.resolve("cache.tsv"));
+
+        var bag = new BagReader().read(bagDir);
+        new ChecksumVerifier(new ComputedDigests(), checksumCache, executor, 3, 16).verify(bag, true);
+
+        assertEquals(Optional.of("da39a3ee5e6b4b0d3255bfef95601890afd80709"),
+            checksumCache.get(file, Files.readAttributes(file, BasicFileAttributes.class), "SHA-1"));
+    }
+
+    private Path copyValidBag() throws Exception {
+        var source = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("bags/valid-bag")).getFile());
+        var target = tempDir.resolve("valid-bag");
+        FileUtils.copyDirectory(source.toFile(), target.toFile());
+        return target;
+    }
+}
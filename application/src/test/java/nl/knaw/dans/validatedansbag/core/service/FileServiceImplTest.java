@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.ExtractionCancelledException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileServiceImplTest {
+
+    @Test
+    void openZipFile_should_read_the_zip_in_place_when_configured() throws Exception {
+        var service = new FileServiceImpl(true);
+        var zip = Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip"));
+
+        Path root;
+
+        try (var input = zip.openStream()) {
+            root = service.openZipFile(input);
+        }
+
+        try {
+            assertNotEquals(FileSystems.getDefault(), root.getFileSystem());
+
+            var bagDir = service.getFirstDirectory(root).orElseThrow();
+            assertEquals("invalid-sha1", bagDir.getFileName().toString());
+            assertTrue(service.isFile(bagDir.resolve("metadata/dataset.xml")));
+            assertEquals(27, service.readFileContents(bagDir.resolve("data/a/deeper/path/With some file.txt")).length);
+        }
+        finally {
+            service.closeZipFile(root);
+        }
+
+        assertFalse(root.getFileSystem().isOpen());
+    }
+
+    @Test
+    void openZipFile_should_list_the_same_files_in_place_as_when_extracted() throws Exception {
+        var zip = Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip"));
+        var extracting = new FileServiceImpl(false);
+        var inPlace = new FileServiceImpl(true);
+
+        Path extracted;
+        Path opened;
+
+        try (var input = zip.openStream()) {
+            extracted = extracting.openZipFile(input);
+        }
+
+        try (var input = zip.openStream()) {
+            opened = inPlace.openZipFile(input);
+        }
+
+        try {
+            assertEquals(relativeFiles(extracting, extracted), relativeFiles(inPlace, opened));
+        }
+        finally {
+            extracting.closeZipFile(extracted);
+            inPlace.closeZipFile(opened);
+        }
+
+        assertFalse(Files.exists(extracted));
+    }
+
+    @Test
+    void openZipFile_should_compute_the_digests_of_the_extracted_files() throws Exception {
+        var computedDigests = new ComputedDigests();
+        var service = new FileServiceImpl(false, computedDigests, List.of("md5"));
+        var zip = Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip"));
+
+        Path root;
+
+        try (var input = zip.openStream()) {
+            root = service.openZipFile(input);
+        }
+
+        var file = root.resolve("invalid-sha1/data/a/deeper/path/With some file.txt");
+
+        try {
+            var sha1 = FileServiceImpl.toHex(MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file)));
+            var md5 = FileServiceImpl.toHex(MessageDigest.getInstance("MD5").digest(Files.readAllBytes(file)));
+
+            // SHA-1 because of the manifest that precedes the file in the zip, MD5 because it was configured
+            assertEquals(Optional.of(sha1), computedDigests.get(file, "SHA-1"));
+            assertEquals(Optional.of(md5), computedDigests.get(file, "MD5"));
+        }
+        finally {
+            service.closeZipFile(root);
+        }
+
+        assertEquals(Optional.empty(), computedDigests.get(file, "SHA-1"));
+    }
+
+    @Test
+    void openZipFile_should_stop_reading_and_remove_the_extracted_files_when_the_listener_cancels() throws Exception {
+        var service = new FileServiceImpl(false);
+        var zip = Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip"));
+        var roots = new ArrayList<Path>();
+
+        var listener = new ExtractionListener() {
+
+            @Override
+            public void fileExtracted(Path root, Path file) {
+                roots.add(root);
+            }
+
+            @Override
+            public boolean isExtractionCancelled() {
+                return !roots.isEmpty();
+            }
+        };
+
+        try (var input = zip.openStream()) {
+            assertThrows(ExtractionCancelledException.class, () -> service.openZipFile(input, listener));
+        }
+
+        assertEquals(1, roots.size());
+        assertFalse(Files.exists(roots.get(0)));
+    }
+
+    @Test
+    void openZipFile_should_extract_while_reading_when_there_is_a_listener_also_with_extraction_threads() throws Exception {
+        var executor = Executors.newFixedThreadPool(2);
+        var service = new FileServiceImpl(false, new ComputedDigests(), List.of(), executor, 2, new TempDirectoryReaper());
+        var zip = Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip"));
+        var bytesRead = new AtomicLong();
+
+        var listener = new ExtractionListener() {
+
+            @Override
+            public void fileExtracted(Path root, Path file) {
+            }
+
+            @Override
+            public boolean isExtractionCancelled() {
+                return true;
+            }
+        };
+
+        try (var input = new FilterInputStream(zip.openStream()) {
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                var n = super.read(b, off, len);
+                bytesRead.addAndGet(Math.max(n, 0));
+                return n;
+            }
+        }) {
+            assertThrows(ExtractionCancelledException.class, () -> service.openZipFile(input, listener));
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(0, bytesRead.get());
+    }
+
+    @Test
+    void extractZipFile_should_extract_a_zip_on_disk_in_parallel_and_leave_the_zip_alone() throws Exception {
+        var zipFile = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip")).toURI());
+        var computedDigests = new ComputedDigests();
+        var executor = Executors.newFixedThreadPool(4);
+        var parallel = new FileServiceImpl(false, computedDigests, List.of("md5"), executor, 4, new TempDirectoryReaper());
+        var sequential = new FileServiceImpl(false);
+
+        Path extracted;
+        Path streamed;
+
+        try (var input = Files.newInputStream(zipFile)) {
+            streamed = sequential.openZipFile(input);
+        }
+
+        try {
+            extracted = parallel.extractZipFile(zipFile, (root, f) -> {
+            });
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        var file = extracted.resolve("invalid-sha1/data/a/deeper/path/With some file.txt");
+
+        try {
+            assertEquals(relativeFiles(sequential, streamed), relativeFiles(parallel, extracted));
+            assertEquals(Optional.of(FileServiceImpl.toHex(MessageDigest.getInstance("SHA-1").digest(Files.readAllBytes(file)))), computedDigests.get(file, "SHA-1"));
+            assertTrue(computedDigests.get(file, "MD5").isPresent());
+        }
+        finally {
+            sequential.closeZipFile(streamed);
+            parallel.closeZipFile(extracted);
+        }
+
+        assertFalse(Files.exists(extracted));
+        assertEquals(Optional.empty(), computedDigests.get(file, "SHA-1"));
+        assertTrue(Files.exists(zipFile));
+    }
+
+    @Test
+    void openZipFile_should_refuse_entries_outside_of_the_bag() throws Exception {
+        var escaped = "escaped-" + System.nanoTime();
+        var bytes = new ByteArrayOutputStream();
+
+        try (var zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("bag/file.txt"));
+            zip.write("inside".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("../" + escaped + "/file.txt"));
+            zip.write("outside".getBytes(StandardCharsets.UTF_8));
+        }
+
+        var zipFile = Files.write(Files.createTempFile("slip-", ".zip"), bytes.toByteArray());
+        var executor = Executors.newFixedThreadPool(2);
+        var parallel = new FileServiceImpl(false, new ComputedDigests(), List.of(), executor, 2, new TempDirectoryReaper());
+
+        try {
+            assertThrows(IOException.class, () -> new FileServiceImpl(false).openZipFile(new ByteArrayInputStream(bytes.toByteArray())));
+            assertThrows(IOException.class, () -> parallel.extractZipFile(zipFile, (root, f) -> {
+            }));
+        }
+        finally {
+            executor.shutdown();
+            Files.delete(zipFile);
+        }
+
+        assertFalse(Files.exists(Path.of(System.getProperty("java.io.tmpdir"), escaped)));
+    }
+
+    @Test
+    void openArchive_should_refuse_writes_to_the_zip() throws Exception {
+        var zipFile = Files.createTempFile("archive-", ".zip");
+        Files.copy(Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream("zips/invalid-sha1.zip")), zipFile, StandardCopyOption.REPLACE_EXISTING);
+        var before = Files.readAllBytes(zipFile);
+        var service = new FileServiceImpl(false);
+        var root = service.openArchive(zipFile);
+
+        try {
+            var dataset = root.resolve("invalid-sha1/metadata/dataset.xml");
+
+            assertTrue(root.getFileSystem().isReadOnly());
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.writeString(root.resolve("invalid-sha1/added.txt"), "a"));
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.newBufferedWriter(dataset, StandardOpenOption.APPEND));
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.delete(dataset));
+            assertThrows(ReadOnlyFileSystemException.class, () -> Files.createDirectory(root.resolve("invalid-sha1/new")));
+            assertTrue(Files.size(dataset) > 0);
+        }
+        finally {
+            service.closeZipFile(root);
+        }
+
+        try {
+            assertArrayEquals(before, Files.readAllBytes(zipFile));
+        }
+        finally {
+            Files.delete(zipFile);
+        }
+    }
+
+    @Test
+    void openArchive_should_read_a_zip_in_place_and_leave_it_alone() throws Exception {
+        var zipFile = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("zips/invalid-sha1.zip")).toURI());
+        var service = new FileServiceImpl(false);
+
+        assertTrue(service.isArchive(zipFile));
+
+        var root = service.openArchive(zipFile);
+
+        try {
+            assertNotEquals(FileSystems.getDefault(), root.getFileSystem());
+            assertTrue(service.isFile(root.resolve("invalid-sha1/metadata/dataset.xml")));
+        }
+        finally {
+            service.closeZipFile(root);
+        }
+
+        assertFalse(root.getFileSystem().isOpen());
+        assertTrue(Files.exists(zipFile));
+    }
+
+    @Test
+    void openArchive_should_extract_a_tar_with_the_same_files_as_the_bag_it_was_made_from() throws Exception {
+        var tarFile = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("tars/valid-bag.tar.gz")).toURI());
+        var bagDir = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("bags/valid-bag")).toURI());
+        var computedDigests = new ComputedDigests();
+        var service = new FileServiceImpl(false, computedDigests, List.of("md5"));
+
+        assertTrue(service.isArchive(tarFile));
+        assertFalse(service.isArchive(bagDir));
+
+        var root = service.openArchive(tarFile);
+        var file = root.resolve("valid-bag/metadata/dataset.xml");
+
+        try {
+            assertEquals(relativeFiles(service, bagDir), relativeFiles(service, root.resolve("valid-bag")));
+            assertEquals(Files.readString(bagDir.resolve("metadata/dataset.xml")), Files.readString(file));
+            assertTrue(computedDigests.get(file, "MD5").isPresent());
+        }
+        finally {
+            service.closeZipFile(root);
+        }
+
+        assertFalse(Files.exists(root));
+        assertTrue(Files.exists(tarFile));
+    }
+
+    @Test
+    void getInventory_should_list_the_files_below_a_directory() throws Exception {
+        var bagDir = Path.of(Objects.requireNonNull(getClass().getClassLoader().getResource("bags/valid-bag")).toURI());
+        var inventory = new FileServiceImpl().getInventory(bagDir);
+
+        assertEquals(Set.of("data/sub/leeg2.txt", "data/sub/sub/sine-md5.txt", "data/sub/sub/vacio.txt"), inventory.getFiles(Path.of("data/sub")).stream()
+            .map(p -> bagDir.relativize(p).toString().replace('\\', '/'))
+            .collect(Collectors.toSet()));
+        assertEquals(4, inventory.getFilesAndDirectories(Path.of("data/sub/sub")).size());
+        assertFalse(inventory.get(Path.of("data/sub")).orElseThrow().isRegularFile());
+        assertEquals(Files.size(bagDir.resolve("data/sine-md5.txt")), inventory.get(Path.of("data/sine-md5.txt")).orElseThrow().getSize());
+        assertThrows(NoSuchFileException.class, () -> inventory.getFiles(Path.of("data/missing")));
+    }
+
+    private Set<String> relativeFiles(FileService service, Path root) throws Exception {
+        return service.getAllFiles(root).stream()
+            .map(p -> root.relativize(p).toString())
+            .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrioritizingRuleEngineServiceTest {
+
+    private final RuleEngineService ruleEngineService = Mockito.mock(RuleEngineService.class);
+
+    @Test
+    void validateBag_should_give_waiting_deposits_precedence_over_waiting_migrations_according_to_weights() throws Exception {
+        var first = new CountDownLatch(1);
+        var order = Collections.synchronizedList(new ArrayList<String>());
+
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(invocation -> {
+            Path path = invocation.getArgument(0);
+            order.add(path.toString());
+
+            if (path.equals(Path.of("m0"))) {
+                first.await();
+            }
+
+            return List.of();
+        });
+
+        var service = new PrioritizingRuleEngineService(ruleEngineService, 1,
+            Map.of(DepositType.DEPOSIT, 4, DepositType.MIGRATION, 1),
+            Map.of(DepositType.DEPOSIT, 1, DepositType.MIGRATION, 1));
+
+        var executor = Executors.newCachedThreadPool();
+
+        try {
+            executor.submit(() -> service.validateBag(Path.of("m0"), DepositType.MIGRATION, false, false));
+            waitUntil(() -> order.size() == 1);
+
+            // queued while the first migration holds the only slot
+            executor.submit(() -> service.validateBag(Path.of("m1"), DepositType.MIGRATION, false, false));
+            waitUntil(() -> service.getWaitingValidations() == 1);
+            executor.submit(() -> service.validateBag(Path.of("m2"), DepositType.MIGRATION, false, false));
+            waitUntil(() -> service.getWaitingValidations() == 2);
+            executor.submit(() -> service.validateBag(Path.of("d1"), DepositType.DEPOSIT, false, false));
+            waitUntil(() -> service.getWaitingValidations() == 3);
+            executor.submit(() -> service.validateBag(Path.of("d2"), DepositType.DEPOSIT, false, false));
+            waitUntil(() -> service.getWaitingValidations() == 4);
+
+            first.countDown();
+            waitUntil(() -> order.size() == 5);
+
+            assertEquals(List.of("m0", "d1", "d2", "m1", "m2"), order);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void validateBag_should_keep_slots_free_for_deposits_when_migrations_reach_their_limit() throws Exception {
+        var release = new CountDownLatch(1);
+        var running = new AtomicInteger();
+
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(invocation -> {
+            running.incrementAndGet();
+
+            if (DepositType.MIGRATION.equals(invocation.getArgument(1))) {
+                release.await();
+            }
+
+            return List.of();
+        });
+
+        var service = new PrioritizingRuleEngineService(ruleEngineService, 3,
+            Map.of(DepositType.DEPOSIT, 1, DepositType.MIGRATION, 1),
+            Map.of(DepositType.DEPOSIT, 3, DepositType.MIGRATION, 2));
+
+        var executor = Executors.newCachedThreadPool();
+
+        try {
+            for (var i = 0; i < 3; ++i) {
+                var path = Path.of("m" + i);
+                executor.submit(() -> service.validateBag(path, DepositType.MIGRATION, false, false));
+            }
+
+            waitUntil(() -> running.get() == 2 && service.getWaitingValidations() == 1);
+
+            // the third slot is not available for migrations, so a deposit does not have to wait
+            service.validateBag(Path.of("d"), DepositType.DEPOSIT, false, false);
+            assertEquals(3, running.get());
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void speculate_should_take_a_slot_that_the_validation_of_the_bag_runs_in() throws Exception {
+        var speculation = Mockito.mock(RuleSpeculation.class);
+        var closeAction = new AtomicReference<Runnable>();
+        var running = new AtomicInteger();
+
+        Mockito.doReturn(speculation).when(ruleEngineService).speculate(Mockito.any(), Mockito.any());
+        Mockito.doAnswer(invocation -> {
+            closeAction.set(invocation.getArgument(0));
+            return null;
+        }).when(speculation).onClose(Mockito.any());
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(invocation -> {
+            running.incrementAndGet();
+            return List.of();
+        });
+
+        var service = new PrioritizingRuleEngineService(ruleEngineService, 1,
+            Map.of(DepositType.DEPOSIT, 1, DepositType.MIGRATION, 1),
+            Map.of(DepositType.DEPOSIT, 1, DepositType.MIGRATION, 1));
+
+        var context = new BagValidationContext(Path.of("bag"));
+        assertEquals(speculation, service.speculate(context, DepositType.DEPOSIT));
+
+        // the only slot is taken, so the second speculation is not started
+        assertNull(service.speculate(new BagValidationContext(Path.of("other")), DepositType.DEPOSIT));
+
+        var executor = Executors.newCachedThreadPool();
+
+        try {
+            executor.submit(() -> service.validateBag(Path.of("waiting"), DepositType.DEPOSIT, false, false));
+            waitUntil(() -> service.getWaitingValidations() == 1);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> service.validateBag(context, DepositType.DEPOSIT));
+            assertEquals(0, running.get());
+
+            closeAction.get().run();
+            waitUntil(() -> running.get() == 1);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void waitUntil(Condition condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        while (!condition.isMet()) {
+            assertTrue(System.nanoTime() < deadline, "condition was not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean isMet();
+    }
+}
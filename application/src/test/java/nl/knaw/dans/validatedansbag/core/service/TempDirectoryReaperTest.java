@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.InsufficientTempSpaceException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TempDirectoryReaperTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void open_should_delete_the_paths_that_were_created_but_not_deleted_before() throws Exception {
+        var directory = tempDir.resolve("uploads");
+        var journalFile = tempDir.resolve("temp-files.journal");
+
+        var reaper = new TempDirectoryReaper(directory, journalFile, Runnable::run, 0);
+        reaper.open();
+        var deleted = reaper.createTempDirectory("bag-");
+        var orphan = reaper.createTempDirectory("bag-");
+        Files.writeString(orphan.resolve("file.txt"), "a");
+        reaper.delete(deleted);
+        // the service stops without deleting the orphan
+        reaper.close();
+
+        assertTrue(Files.exists(orphan));
+
+        var reopened = new TempDirectoryReaper(directory, journalFile, Runnable::run, 0);
+        reopened.open();
+
+        try {
+            assertFalse(Files.exists(orphan));
+            assertEquals(0, reopened.getTempPathCount());
+        }
+        finally {
+            reopened.close();
+        }
+
+        // the journal was compacted to the orphan, and then the deletion of the orphan was appended
+        assertEquals(2, Files.readAllLines(journalFile).size());
+    }
+
+    @Test
+    void delete_should_compact_the_journal_while_the_reaper_is_open() throws Exception {
+        var journalFile = tempDir.resolve("temp-files.journal");
+        var reaper = new TempDirectoryReaper(tempDir.resolve("uploads"), journalFile, Runnable::run, 0, 3);
+        reaper.open();
+
+        try {
+            var kept = reaper.createTempFile("bag-", ".zip");
+
+            for (var i = 0; i < 3; ++i) {
+                reaper.delete(reaper.createTempDirectory("bag-"));
+            }
+
+            // only the path that still exists is left after the third deletion
+            assertEquals(List.of("+\t" + kept.toAbsolutePath()), Files.readAllLines(journalFile));
+        }
+        finally {
+            reaper.close();
+        }
+    }
+
+    @Test
+    void delete_should_not_delete_on_the_calling_thread() throws Exception {
+        var tasks = new ArrayList<Runnable>();
+        var reaper = new TempDirectoryReaper(tempDir, null, tasks::add, 0);
+        var directory = reaper.createTempDirectory("bag-");
+
+        reaper.delete(directory);
+
+        assertTrue(Files.exists(directory));
+        assertEquals(1, reaper.getPendingDeletions());
+
+        tasks.forEach(Runnable::run);
+
+        assertFalse(Files.exists(directory));
+        assertEquals(0, reaper.getPendingDeletions());
+    }
+
+    @Test
+    void createTempDirectory_should_refuse_when_there_is_not_enough_free_space() {
+        var reaper = new TempDirectoryReaper(tempDir, null, Runnable::run, Long.MAX_VALUE);
+
+        assertThrows(InsufficientTempSpaceException.class, () -> reaper.createTempDirectory("bag-"));
+        assertEquals(0, reaper.getTempPathCount());
+    }
+}
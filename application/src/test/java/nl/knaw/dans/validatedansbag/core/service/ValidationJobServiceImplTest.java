@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import nl.knaw.dans.validatedansbag.core.ValidationQueueFullException;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleValidationResult;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidationJobServiceImplTest {
+
+    private final RuleEngineService ruleEngineService = Mockito.mock(RuleEngineService.class);
+
+    @Test
+    void submit_should_complete_job_with_results_and_run_onCompletion() throws Exception {
+        var results = List.of(new RuleValidationResult("1.1", RuleValidationResult.RuleValidationResultStatus.SUCCESS));
+        Mockito.when(ruleEngineService.validateBag(Path.of("bagdir"), DepositType.DEPOSIT, true, true)).thenReturn(results);
+
+        var completed = new AtomicBoolean();
+        var service = new ValidationJobServiceImpl(ruleEngineService, Runnable::run, Duration.ofHours(1));
+        var job = service.submit(Path.of("bagdir"), null, DepositType.DEPOSIT, true, true, () -> completed.set(true));
+
+        assertEquals(ValidationJob.Status.DONE, job.getStatus());
+        assertEquals(results, job.getResults());
+        assertTrue(completed.get());
+        assertEquals(job, service.getJob(job.getId()).orElseThrow());
+    }
+
+    @Test
+    void submit_should_mark_job_as_failed_when_validation_throws() throws Exception {
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenThrow(new IOException("broken"));
+
+        var completed = new AtomicBoolean();
+        var service = new ValidationJobServiceImpl(ruleEngineService, Runnable::run, Duration.ofHours(1));
+        var job = service.submit(Path.of("bagdir"), null, DepositType.DEPOSIT, false, false, () -> completed.set(true));
+
+        assertEquals(ValidationJob.Status.FAILED, job.getStatus());
+        assertEquals("broken", job.getErrorMessage());
+        assertTrue(completed.get());
+    }
+
+    @Test
+    void submit_should_throw_when_queue_is_full() throws Exception {
+        var latch = new CountDownLatch(1);
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenAnswer(invocation -> {
+            latch.await();
+            return List.of();
+        });
+
+        var executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1));
+
+        try {
+            var service = new ValidationJobServiceImpl(ruleEngineService, executor, Duration.ofHours(1));
+            service.submit(Path.of("bag1"), null, DepositType.DEPOSIT, false, false, () -> {});
+            service.submit(Path.of("bag2"), null, DepositType.DEPOSIT, false, false, () -> {});
+
+            assertThrows(ValidationQueueFullException.class, () -> service.submit(Path.of("bag3"), null, DepositType.DEPOSIT, false, false, () -> {}));
+        }
+        finally {
+            latch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void reserve_should_throw_when_all_places_are_taken_until_a_reservation_is_closed_or_its_job_is_done() throws Exception {
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenReturn(List.of());
+
+        var service = new ValidationJobServiceImpl(ruleEngineService, Runnable::run, Duration.ofHours(1), 1);
+        var reservation = service.reserve();
+
+        assertThrows(ValidationQueueFullException.class, service::reserve);
+        assertThrows(ValidationQueueFullException.class, () -> service.submit(Path.of("bag1"), null, DepositType.DEPOSIT, false, false, () -> {}));
+
+        reservation.close();
+
+        try (var next = service.reserve()) {
+            service.submit(next, Path.of("bag2"), null, DepositType.DEPOSIT, false, false, () -> {});
+        }
+
+        // the job has completed, so its place is free again
+        service.reserve().close();
+    }
+
+    @Test
+    void getJob_should_not_return_jobs_completed_longer_ago_than_the_retention_period() throws Exception {
+        Mockito.when(ruleEngineService.validateBag(Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean())).thenReturn(List.of());
+
+        var service = new ValidationJobServiceImpl(ruleEngineService, Runnable::run, Duration.ZERO);
+        var job = service.submit(Path.of("bagdir"), null, DepositType.DEPOSIT, false, false, () -> {});
+        Thread.sleep(10);
+
+        assertTrue(service.getJob(job.getId()).isEmpty());
+    }
+}
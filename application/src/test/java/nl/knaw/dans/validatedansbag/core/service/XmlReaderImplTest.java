@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XmlReaderImplTest {
+
+    @Test
+    void xpathToStreamOfStrings_should_evaluate_the_same_expression_on_several_threads_at_once() throws Exception {
+        var reader = new XmlReaderImpl();
+        var document = reader.readXmlString("<ddm:DDM xmlns:ddm=\"" + XmlReader.NAMESPACE_DDM + "\" xmlns:dc=\"" + XmlReader.NAMESPACE_DC + "\">"
+            + "<ddm:profile><dc:title>first</dc:title><dc:title>second</dc:title></ddm:profile></ddm:DDM>");
+        var executor = Executors.newFixedThreadPool(8);
+        var tasks = new ArrayList<Callable<List<String>>>();
+
+        for (var i = 0; i < 200; ++i) {
+            tasks.add(() -> reader.xpathToStreamOfStrings(document, "//ddm:profile/dc:title").collect(Collectors.toList()));
+        }
+
+        try {
+            for (var result : executor.invokeAll(tasks)) {
+                assertEquals(List.of("first", "second"), result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void readDatasetXmlSummaryString_should_keep_document_order_and_include_the_text_of_descendants() throws Exception {
+        var reader = new XmlReaderImpl();
+        var summary = reader.readDatasetXmlSummaryString("<ddm:DDM xmlns:ddm=\"" + XmlReader.NAMESPACE_DDM + "\" xmlns:dcterms=\"" + XmlReader.NAMESPACE_DCTERMS + "\""
+            + " xmlns:dcx-dai=\"" + XmlReader.NAMESPACE_DCX_DAI + "\" xmlns:gml=\"" + XmlReader.NAMESPACE_OPEN_GIS + "\" xmlns:xsi=\"" + XmlReader.NAMESPACE_XSI + "\""
+            + " xmlns:id-type=\"" + XmlReader.NAMESPACE_ID_TYPE + "\">"
+            + "<ddm:profile><dcx-dai:creatorDetails><dcx-dai:author><dcx-dai:DAI>first</dcx-dai:DAI><dcx-dai:role>Rights<!-- --><![CDATA[Holder]]></dcx-dai:role></dcx-dai:author></dcx-dai:creatorDetails>"
+            + "<ddm:available>2022-01-01</ddm:available></ddm:profile>"
+            + "<ddm:dcmiMetadata>"
+            + "<dcterms:identifier xsi:type=\"id-type:DOI\">10.1234/a</dcterms:identifier>"
+            + "<dcterms:rightsHolder><dcx-dai:DAI>second</dcx-dai:DAI> holder</dcterms:rightsHolder>"
+            + "<gml:MultiSurface><gml:surfaceMember><gml:Polygon srsName=\"a\"/></gml:surfaceMember>"
+            + "<gml:MultiSurface><gml:Polygon srsName=\"b\"/></gml:MultiSurface></gml:MultiSurface>"
+            + "</ddm:dcmiMetadata></ddm:DDM>");
+
+        assertEquals(List.of("first", "second"), summary.getDais());
+        assertEquals(List.of("RightsHolder"), summary.getAuthorRoles());
+        assertEquals(List.of("second holder"), summary.getRightsHolders());
+        assertEquals(List.of("2022-01-01"), summary.getAvailable());
+        assertEquals(List.of(new DatasetXmlSummary.TypedElement("id-type:DOI", null, "10.1234/a")), summary.getIdentifiers());
+        assertEquals(List.of(Set.of("a", "b"), Set.of("b")), summary.getMultiSurfaceSrsNames());
+        assertEquals("id-type", summary.lookupPrefix(XmlReader.NAMESPACE_ID_TYPE));
+    }
+
+    @Test
+    void readXmlString_should_parse_again_after_a_document_that_was_refused() throws Exception {
+        var reader = new XmlReaderImpl();
+        var first = reader.readXmlString("<a>first</a>");
+
+        assertThrows(SAXException.class, () -> reader.readXmlString("<a>not closed"));
+        assertThrows(SAXException.class, () -> reader.readXmlString("<!DOCTYPE a [<!ENTITY b \"c\">]><a>&b;</a>"));
+
+        var second = reader.readXmlString("<a>second</a>");
+
+        assertNotSame(first, second);
+        assertEquals("first", first.getDocumentElement().getTextContent());
+        assertEquals("second", second.getDocumentElement().getTextContent());
+    }
+}
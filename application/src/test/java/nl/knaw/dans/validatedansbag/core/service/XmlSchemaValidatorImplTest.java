@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.core.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXParseException;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlSchemaValidatorImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final String LIST_XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:include schemaLocation=\"types.xsd\"/>"
+        + "<xs:element name=\"list\"><xs:complexType><xs:sequence>"
+        + "<xs:element name=\"item\" type=\"itemType\" maxOccurs=\"unbounded\"/>"
+        + "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+
+    private static final String TYPES_XSD = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:simpleType name=\"itemType\">"
+        + "<xs:restriction base=\"xs:int\"/></xs:simpleType></xs:schema>";
+
+    private XmlSchemaValidatorImpl createValidator() throws Exception {
+        var xsd = tempDir.resolve("list.xsd");
+        Files.writeString(xsd, "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+            + "<xs:element name=\"list\"><xs:complexType><xs:sequence>"
+            + "<xs:element name=\"item\" type=\"xs:int\" maxOccurs=\"unbounded\"/>"
+            + "</xs:sequence></xs:complexType></xs:element></xs:schema>");
+
+        return new XmlSchemaValidatorImpl(Map.of("list.xml", xsd.toUri()));
+    }
+
+    @Test
+    void validateFile_should_report_the_errors_in_a_file_as_it_reads_it() throws Exception {
+        var validator = createValidator();
+        var valid = Files.writeString(tempDir.resolve("valid.xml"), "<list><item>1</item><item>2</item></list>");
+        var invalid = Files.writeString(tempDir.resolve("invalid.xml"), "<list><item>1</item><item>two</item></list>");
+
+        assertEquals(0, validator.validateFile(valid, "list.xml").size());
+        // the value is not an int, so the element is not valid either
+        assertEquals(2, validator.validateFile(invalid, "list.xml").size());
+    }
+
+    @Test
+    void validateFile_should_refuse_a_file_that_is_not_well_formed_or_has_a_doctype() throws Exception {
+        var validator = createValidator();
+        var notClosed = Files.writeString(tempDir.resolve("not-closed.xml"), "<list><item>1</item>");
+        var doctype = Files.writeString(tempDir.resolve("doctype.xml"), "<!DOCTYPE list [<!ENTITY one \"1\">]><list><item>&one;</item></list>");
+
+        assertThrows(SAXParseException.class, () -> validator.validateFile(notClosed, "list.xml"));
+        assertThrows(SAXParseException.class, () -> validator.validateFile(doctype, "list.xml"));
+    }
+
+    @Test
+    void validateFile_should_use_schemas_from_the_cache_directory_without_fetching_them() throws Exception {
+        // the .invalid top-level domain never resolves, so the documents can only come from the cache
+        var cacheDirectory = tempDir.resolve("xml-schemas");
+        Files.createDirectories(cacheDirectory.resolve("schemas.invalid/list"));
+        Files.writeString(cacheDirectory.resolve("schemas.invalid/list/list.xsd"), LIST_XSD);
+        Files.writeString(cacheDirectory.resolve("schemas.invalid/list/types.xsd"), TYPES_XSD);
+
+        var location = URI.create("https://schemas.invalid/list/list.xsd");
+        var validator = new XmlSchemaValidatorImpl(Map.of("list.xml", location, "other-list.xml", location), cacheDirectory, 2);
+        var valid = Files.writeString(tempDir.resolve("valid.xml"), "<list><item>1</item></list>");
+        var invalid = Files.writeString(tempDir.resolve("invalid.xml"), "<list><item>one</item></list>");
+
+        assertEquals(0, validator.validateFile(valid, "list.xml").size());
+        assertEquals(2, validator.validateFile(invalid, "other-list.xml").size());
+    }
+
+    @Test
+    void loadSchemaInstances_should_fetch_every_document_once_and_keep_it_for_later_starts() throws Exception {
+        var requests = new AtomicInteger();
+        var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/schemas/", exchange -> {
+            requests.incrementAndGet();
+            var body = (exchange.getRequestURI().getPath().endsWith("types.xsd") ? TYPES_XSD : LIST_XSD).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (var output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        });
+        server.start();
+
+        var cacheDirectory = tempDir.resolve("xml-schemas");
+        var location = URI.create(String.format("http://localhost:%d/schemas/list.xsd", server.getAddress().getPort()));
+
+        try {
+            new XmlSchemaValidatorImpl(Map.of("list.xml", location), cacheDirectory, 1);
+        }
+        finally {
+            server.stop(0);
+        }
+
+        var validator = new XmlSchemaValidatorImpl(Map.of("list.xml", location), cacheDirectory, 1);
+        var valid = Files.writeString(tempDir.resolve("valid.xml"), "<list><item>1</item></list>");
+
+        assertEquals(0, validator.validateFile(valid, "list.xml").size());
+        assertEquals(2, requests.get());
+        assertTrue(Files.isRegularFile(cacheDirectory.resolve("localhost/schemas/types.xsd")));
+    }
+}
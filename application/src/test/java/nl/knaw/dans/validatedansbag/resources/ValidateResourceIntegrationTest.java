@@ -173,7 +173,7 @@ class ValidateResourceIntegrationTest {
         var multipart = new FormDataMultiPart()
                 .field("command", data, MediaType.APPLICATION_JSON_TYPE);
 
-        Mockito.when(xmlSchemaValidator.validateDocument(Mockito.any(), Mockito.anyString()))
+        Mockito.when(xmlSchemaValidator.validateFile(Mockito.any(), Mockito.anyString()))
                 .thenThrow(new SAXException("Something is broken"));
 
         try (var response = EXT.target("/validate")
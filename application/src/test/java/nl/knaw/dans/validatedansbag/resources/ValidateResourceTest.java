@@ -15,6 +15,7 @@
  */
 package nl.knaw.dans.validatedansbag.resources;
 
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import io.dropwizard.testing.junit5.ResourceExtension;
@@ -23,6 +24,10 @@ import nl.knaw.dans.validatedansbag.api.ValidateOk;
 import nl.knaw.dans.validatedansbag.api.ValidateOk.InformationPackageTypeEnum;
 import nl.knaw.dans.validatedansbag.core.BagNotFoundException;
 import nl.knaw.dans.validatedansbag.core.auth.SwordUser;
+import nl.knaw.dans.validatedansbag.core.engine.BagValidationContext;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.engine.RuleSpeculation;
+import nl.knaw.dans.validatedansbag.core.service.ExtractionListener;
 import nl.knaw.dans.validatedansbag.core.service.FileService;
 import nl.knaw.dans.validatedansbag.core.service.RuleEngineService;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
@@ -92,7 +97,7 @@ class ValidateResourceTest {
 
         Mockito.doReturn(Path.of("/tmp/bag-1"))
             .when(fileService)
-            .extractZipFile(Mockito.any(InputStream.class));
+            .openZipFile(Mockito.any(InputStream.class));
 
         Mockito.doReturn(Optional.of(Path.of("bagdir")))
             .when(fileService)
@@ -103,7 +108,7 @@ class ValidateResourceTest {
             .request()
             .post(Entity.entity(multipart, multipart.getMediaType()), ValidateOk.class);
 
-        Mockito.verify(fileService).extractZipFile(Mockito.any(InputStream.class));
+        Mockito.verify(fileService).openZipFile(Mockito.any(InputStream.class));
 
         assertEquals("bagdir", response.getName());
     }
@@ -119,7 +124,7 @@ class ValidateResourceTest {
 
         Mockito.doThrow(BagNotFoundException.class)
             .when(ruleEngineService)
-            .validateBag(Mockito.any(), Mockito.any());
+            .validateBag(Mockito.any(BagValidationContext.class), Mockito.any());
 
         try (var response = EXT.target("/validate")
             .register(MultiPartFeature.class)
@@ -136,7 +141,7 @@ class ValidateResourceTest {
 
         Mockito.doReturn(Path.of("/tmp/bag-1"))
             .when(fileService)
-            .extractZipFile(Mockito.any(InputStream.class));
+            .openZipFile(Mockito.any(InputStream.class));
 
         Mockito.doReturn(Optional.of(Path.of("bagdir")))
             .when(fileService)
@@ -146,18 +151,39 @@ class ValidateResourceTest {
             .request()
             .post(zip, ValidateOk.class);
 
-        Mockito.verify(fileService).extractZipFile(Mockito.any(InputStream.class));
+        Mockito.verify(fileService).openZipFile(Mockito.any(InputStream.class));
 
         assertEquals("bagdir", response.getName());
     }
 
+    @Test
+    void validateZipFile_should_pass_failFast_to_ruleEngineService() throws Exception {
+        var zip = Entity.entity(new ByteArrayInputStream(new byte[4]), MediaType.valueOf("application/zip"));
+
+        Mockito.doReturn(Path.of("/tmp/bag-1"))
+            .when(fileService)
+            .openZipFile(Mockito.any(InputStream.class));
+
+        Mockito.doReturn(Optional.of(Path.of("bagdir")))
+            .when(fileService)
+            .getFirstDirectory(Mockito.any());
+
+        EXT.target("/validate")
+            .queryParam("failFast", true)
+            .request()
+            .post(zip, ValidateOk.class);
+
+        Mockito.verify(ruleEngineService).validateBag(Mockito.argThat((BagValidationContext c) -> c.getBagDir().equals(Path.of("bagdir")) && c.isFailFast() && !c.isUseChecksumCache()),
+            Mockito.eq(DepositType.DEPOSIT));
+    }
+
     @Test
     void validateZipFile_should_return_500_when_file_is_invalid() throws Exception {
         var zip = Entity.entity(new ByteArrayInputStream(new byte[4]), MediaType.valueOf("application/zip"));
 
         Mockito.doThrow(ZipError.class)
             .when(fileService)
-            .extractZipFile(Mockito.any(InputStream.class));
+            .openZipFile(Mockito.any(InputStream.class));
 
         try (var response = EXT.target("/validate")
             .register(MultiPartFeature.class)
@@ -167,4 +193,35 @@ class ValidateResourceTest {
             assertEquals(500, response.getStatus());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateInputStream_should_start_rules_while_the_zip_is_extracted_when_pipelined() throws Exception {
+        var root = Path.of("/tmp/bag-1");
+        var speculation = Mockito.mock(RuleSpeculation.class);
+        var resource = new ValidateResource(ruleEngineService, fileService, new MetricRegistry(), true);
+
+        Mockito.doAnswer(invocation -> {
+                ExtractionListener listener = invocation.getArgument(1);
+                listener.fileExtracted(root, root.resolve("bagdir/metadata/dataset.xml"));
+                return root;
+            })
+            .when(fileService)
+            .openZipFile(Mockito.any(InputStream.class), Mockito.any(ExtractionListener.class));
+
+        Mockito.doReturn(Optional.of(root.resolve("bagdir")))
+            .when(fileService)
+            .getFirstDirectory(Mockito.any());
+
+        Mockito.doReturn(speculation)
+            .when(ruleEngineService)
+            .speculate(Mockito.any(BagValidationContext.class), Mockito.eq(DepositType.DEPOSIT));
+
+        var result = resource.validateInputStream(new ByteArrayInputStream(new byte[4]), DepositType.DEPOSIT, false);
+
+        assertEquals("bagdir", result.getName());
+        Mockito.verify(speculation).fileArrived(Path.of("metadata/dataset.xml"));
+        Mockito.verify(ruleEngineService).validateBag(Mockito.argThat((BagValidationContext c) -> c.getBagDir().equals(root.resolve("bagdir"))), Mockito.eq(DepositType.DEPOSIT));
+        Mockito.verify(speculation).close();
+        Mockito.verify(fileService).closeZipFile(root);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2022 DANS - Data Archiving and Networked Services (info@dans.knaw.nl)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package nl.knaw.dans.validatedansbag.resources;
+
+import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
+import io.dropwizard.testing.junit5.ResourceExtension;
+import nl.knaw.dans.validatedansbag.api.ValidateCommand;
+import nl.knaw.dans.validatedansbag.api.ValidationJobStatus;
+import nl.knaw.dans.validatedansbag.core.ValidationQueueFullException;
+import nl.knaw.dans.validatedansbag.core.engine.DepositType;
+import nl.knaw.dans.validatedansbag.core.service.FileService;
+import nl.knaw.dans.validatedansbag.core.service.ValidationJob;
+import nl.knaw.dans.validatedansbag.core.service.ValidationJobService;
+import org.glassfish.jersey.media.multipart.FormDataMultiPart;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(DropwizardExtensionsSupport.class)
+class ValidationJobResourceTest {
+    private final ValidationJobService validationJobService = Mockito.mock(ValidationJobService.class);
+    private final FileService fileService = Mockito.mock(FileService.class);
+    public final ResourceExtension EXT = ResourceExtension.builder()
+        .addProvider(MultiPartFeature.class)
+        .addResource(new ValidationJobResource(validationJobService, fileService, Duration.ofSeconds(30)))
+        .build();
+
+    @BeforeEach
+    void setup() {
+        Mockito.reset(fileService);
+        Mockito.reset(validationJobService);
+    }
+
+    @Test
+    void submitFormData_should_return_202_with_location_of_job() throws Exception {
+        var data = new ValidateCommand();
+        data.setBagLocation("it/is/here");
+        data.setPackageType(ValidateCommand.PackageTypeEnum.MIGRATION);
+
+        var multipart = new FormDataMultiPart()
+            .field("command", data, MediaType.APPLICATION_JSON_TYPE);
+
+        var job = new ValidationJob(UUID.randomUUID(), Path.of("it/is/here"), "it/is/here", DepositType.MIGRATION, false, true);
+
+        Mockito.doReturn(true).when(fileService).isReadable(Mockito.any());
+        Mockito.doReturn(job)
+            .when(validationJobService)
+            .submit(Mockito.eq(Path.of("it/is/here")), Mockito.eq("it/is/here"), Mockito.eq(DepositType.MIGRATION), Mockito.eq(false), Mockito.eq(true), Mockito.any());
+
+        try (var response = EXT.target("/jobs")
+            .register(MultiPartFeature.class)
+            .request()
+            .post(Entity.entity(multipart, multipart.getMediaType()), Response.class)) {
+
+            assertEquals(202, response.getStatus());
+            assertTrue(response.getLocation().toString().endsWith("/jobs/" + job.getId()));
+            assertEquals(ValidationJobStatus.StatusEnum.QUEUED, response.readEntity(ValidationJobStatus.class).getStatus());
+        }
+    }
+
+    @Test
+    void submitFormData_should_return_400_when_bag_is_not_readable() throws Exception {
+        var data = new ValidateCommand();
+        data.setBagLocation("some/path");
+
+        var multipart = new FormDataMultiPart()
+            .field("command", data, MediaType.APPLICATION_JSON_TYPE);
+
+        Mockito.doReturn(false).when(fileService).isReadable(Mockito.any());
+
+        try (var response = EXT.target("/jobs")
+            .register(MultiPartFeature.class)
+            .request()
+            .post(Entity.entity(multipart, multipart.getMediaType()), Response.class)) {
+
+            assertEquals(400, response.getStatus());
+            Mockito.verifyNoInteractions(validationJobService);
+        }
+    }
+
+    @Test
+    void submitZip_should_return_429_with_retry_after_and_clean_up_when_queue_is_full() throws Exception {
+        var zip = Entity.entity(new ByteArrayInputStream(new byte[4]), MediaType.valueOf("application/zip"));
+
+        Mockito.doReturn(Path.of("/tmp/bag-1"))
+            .when(fileService)
+            .openZipFile(Mockito.any(InputStream.class));
+
+        Mockito.doReturn(Optional.of(Path.of("bagdir")))
+            .when(fileService)
+            .getFirstDirectory(Mockito.any());
+
+        Mockito.doThrow(new ValidationQueueFullException("full"))
+            .when(validationJobService)
+            .submit(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.any());
+
+        try (var response = EXT.target("/jobs")
+            .request()
+            .post(zip, Response.class)) {
+
+            assertEquals(429, response.getStatus());
+            assertEquals("30", response.getHeaderString("Retry-After"));
+            Mockito.verify(fileService).closeZipFile(Path.of("/tmp/bag-1"));
+        }
+    }
+
+    @Test
+    void submitZip_should_return_429_without_reading_the_upload_when_no_place_can_be_reserved() throws Exception {
+        var zip = Entity.entity(new ByteArrayInputStream(new byte[4]), MediaType.valueOf("application/zip"));
+
+        Mockito.doThrow(new ValidationQueueFullException("full"))
+            .when(validationJobService)
+            .reserve();
+
+        try (var response = EXT.target("/jobs")
+            .request()
+            .post(zip, Response.class)) {
+
+            assertEquals(429, response.getStatus());
+            assertEquals("30", response.getHeaderString("Retry-After"));
+            Mockito.verify(fileService, Mockito.never()).openZipFile(Mockito.any(InputStream.class));
+        }
+    }
+
+    @Test
+    void getJob_should_return_404_for_unknown_job() {
+        Mockito.doReturn(Optional.empty())
+            .when(validationJobService)
+            .getJob(Mockito.any());
+
+        try (var response = EXT.target("/jobs/" + UUID.randomUUID())
+            .request()
+            .get(Response.class)) {
+
+            assertEquals(404, response.getStatus());
+        }
+    }
+}